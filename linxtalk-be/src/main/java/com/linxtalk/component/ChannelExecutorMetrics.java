@@ -0,0 +1,81 @@
+package com.linxtalk.component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Instruments the executors behind the STOMP channels.
+ * Records how long a task waited before running and how long it ran, plus the number of pending tasks,
+ * all tagged with the channel name.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChannelExecutorMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Builds a decorator that times every task submitted for a channel.
+     * @param channel The channel name used as the metric tag.
+     * @return The task decorator.
+     */
+    public TaskDecorator decorator(String channel) {
+        Timer waitTimer = Timer.builder("websocket.channel.task.wait")
+                .description("Time a channel task spent queued before running")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        Timer durationTimer = Timer.builder("websocket.channel.task.duration")
+                .description("Time a channel task spent running")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        AtomicInteger pending = new AtomicInteger();
+        Gauge.builder("websocket.channel.tasks.pending", pending, AtomicInteger::get)
+                .description("Tasks submitted to the channel executor that have not completed yet")
+                .tag("channel", channel)
+                .register(meterRegistry);
+
+        return task -> {
+            long submittedAt = System.nanoTime();
+            pending.incrementAndGet();
+            return () -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    durationTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    pending.decrementAndGet();
+                }
+            };
+        };
+    }
+
+    /**
+     * Registers a queue depth gauge for a pooled channel executor.
+     * @param channel The channel name used as the metric tag.
+     * @param executor The executor to observe.
+     */
+    public void monitorQueue(String channel, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("websocket.channel.queue.depth", executor, ChannelExecutorMetrics::queueDepth)
+                .description("Tasks waiting in the channel executor queue")
+                .tag("channel", channel)
+                .register(meterRegistry);
+    }
+
+    private static double queueDepth(ThreadPoolTaskExecutor executor) {
+        try {
+            return executor.getThreadPoolExecutor().getQueue().size();
+        } catch (IllegalStateException e) {
+            // Not initialized yet
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.linxtalk.component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Lets a scheduled job that runs on every node do its work on one node per interval.
+ * The lock is never released; it expires after its TTL, which callers keep just under the job interval.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterJobLock {
+
+    private static final String LOCK_KEY_PREFIX = "job:lock:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * @param job The name of the job.
+     * @param ttl How long the other nodes skip the job.
+     * @return {@code true} if this node should run the job now.
+     */
+    public boolean tryAcquire(String job, Duration ttl) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY_PREFIX + job, "1", ttl));
+        } catch (Exception e) {
+            log.warn("Failed to acquire lock for job {}", job, e);
+            return false;
+        }
+    }
+}
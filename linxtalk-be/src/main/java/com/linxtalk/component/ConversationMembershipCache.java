@@ -0,0 +1,135 @@
+package com.linxtalk.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.linxtalk.utils.Constant.CONVERSATION_MEMBERS_INVALIDATION_CHANNEL;
+
+/**
+ * In-process cache of the active members of each conversation with their display name and avatar,
+ * used to check and fan out sends without reading conversation_members on every message.
+ * Membership and profile changes invalidate the entries on every node through the members invalidation channel;
+ * the TTL only bounds the staleness if an invalidation is lost.
+ */
+@Component
+@Slf4j
+public class ConversationMembershipCache {
+
+    private static final String USER_PREFIX = "user:";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private final StringRedisTemplate redisTemplate;
+    private final Cache<String, Map<String, MemberProfile>> cache;
+
+    public ConversationMembershipCache(ConversationMemberRepositoryCustom conversationMemberRepositoryCustom,
+                                       StringRedisTemplate redisTemplate,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${conversation.members-cache.max-size:10000}") long maxSize,
+                                       @Value("${conversation.members-cache.ttl-ms:600000}") long ttlMs) {
+        this.conversationMemberRepositoryCustom = conversationMemberRepositoryCustom;
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "conversation.members");
+    }
+
+    /**
+     * Get the IDs of the active members of a conversation, loading them on a miss.
+     * @param conversationId The ID of the conversation.
+     * @return An immutable set of user IDs.
+     */
+    public Set<String> getMemberIds(String conversationId) {
+        return members(conversationId).keySet();
+    }
+
+    /**
+     * Get an active member of a conversation, loading the members on a miss.
+     * @param conversationId The ID of the conversation.
+     * @param userId The ID of the user.
+     * @return The member's profile, or empty when the user is not an active member.
+     */
+    public Optional<MemberProfile> getMember(String conversationId, String userId) {
+        return Optional.ofNullable(members(conversationId).get(userId));
+    }
+
+    /**
+     * Drops the cached members of a conversation on every node, e.g. after a member joined or left.
+     * @param conversationId The ID of the conversation.
+     */
+    public void invalidate(String conversationId) {
+        cache.invalidate(conversationId);
+        publish(conversationId);
+    }
+
+    /**
+     * Drops the cached members of every conversation of a user on every node, e.g. after the user changed
+     * their display name or avatar.
+     * @param userId The ID of the user.
+     */
+    public void invalidateUser(String userId) {
+        invalidateLocally(userId);
+        publish(USER_PREFIX + userId);
+    }
+
+    /**
+     * Handles an invalidation published by a node.
+     * @param payload The payload in the format {@code <nodeId>:<conversationId>}, or {@code <nodeId>:user:<userId>}.
+     */
+    public void onInvalidation(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator <= 0 || payload.startsWith(nodeId + ":")) return;
+        String target = payload.substring(separator + 1);
+        if (target.startsWith(USER_PREFIX)) {
+            invalidateLocally(target.substring(USER_PREFIX.length()));
+        } else {
+            cache.invalidate(target);
+        }
+    }
+
+    private Map<String, MemberProfile> members(String conversationId) {
+        return cache.get(conversationId, key -> {
+            Map<String, MemberProfile> members = new HashMap<>();
+            for (ConversationMember member : conversationMemberRepositoryCustom.getActiveMemberProfiles(key)) {
+                members.put(member.getUserId(), new MemberProfile(member.getDisplayName(), member.getAvatarUrl()));
+            }
+            return Map.copyOf(members);
+        });
+    }
+
+    private void invalidateLocally(String userId) {
+        cache.asMap().entrySet().removeIf(entry -> entry.getValue().containsKey(userId));
+    }
+
+    private void publish(String target) {
+        try {
+            redisTemplate.convertAndSend(CONVERSATION_MEMBERS_INVALIDATION_CHANNEL, nodeId + ":" + target);
+        } catch (Exception e) {
+            log.warn("Failed to publish members invalidation for {}", target, e);
+        }
+    }
+
+    /**
+     * The profile a member's messages are sent with.
+     */
+    public record MemberProfile(String displayName, String avatarUrl) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.linxtalk.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linxtalk.utils.EncodedPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Encodes outbound payloads once with the application {@link ObjectMapper} and writes {@link EncodedPayload}
+ * bodies to STOMP frames without converting them again. Registered ahead of the default converters.
+ */
+@Component
+@Slf4j
+public class EncodedPayloadConverter extends AbstractMessageConverter {
+
+    private final ObjectMapper objectMapper;
+
+    public EncodedPayloadConverter(ObjectMapper objectMapper) {
+        super(MimeTypeUtils.APPLICATION_JSON);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Serializes a payload to JSON once, for sending to many sessions or destinations.
+     * @param payload The payload.
+     * @return The encoded payload.
+     */
+    public EncodedPayload encode(Object payload) {
+        try {
+            return new EncodedPayload(objectMapper.writeValueAsBytes(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return EncodedPayload.class == clazz;
+    }
+
+    @Override
+    protected boolean canConvertFrom(@NonNull Message<?> message, @NonNull Class<?> targetClass) {
+        // Outbound only
+        return false;
+    }
+
+    @Override
+    protected Object convertToInternal(@NonNull Object payload, MessageHeaders headers, Object conversionHint) {
+        return ((EncodedPayload) payload).bytes();
+    }
+}
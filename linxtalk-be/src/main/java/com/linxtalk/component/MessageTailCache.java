@@ -0,0 +1,341 @@
+package com.linxtalk.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linxtalk.entity.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.linxtalk.utils.Constant.MESSAGE_TAIL_INVALIDATION_CHANNEL;
+
+/**
+ * In-process cache of the newest messages of each conversation, newest first.
+ * Sends on this node are appended write-through. Once the writer has persisted them, they are published on the
+ * tail invalidation channel and the other nodes merge them into their cached tails, so a busy conversation stays
+ * cached on every node. Edits and failed sends still drop the tail on every node.
+ * A loaded tail is only cached when every message accepted on this node for the conversation is persisted
+ * (the writer's watermark) and nothing changed the conversation while it was loading.
+ * The cache is bounded by the estimated size of the cached messages in bytes.
+ */
+@Component
+@Slf4j
+public class MessageTailCache {
+
+    private static final int WRITE_STRIPES = 1024;
+    // Lower case, so it never collides with a status name
+    private static final String APPEND = "append";
+    private static final Comparator<Message> NEWEST_FIRST = Comparator
+            .comparing(Message::getCreatedAt, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+            .thenComparing(Message::getId, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .reversed();
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Tail> cache;
+    private final int tailSize;
+    // Per stripe of conversations: messages accepted on this node, and messages the writer has persisted since
+    private final AtomicLongArray accepted = new AtomicLongArray(WRITE_STRIPES);
+    private final AtomicLongArray persisted = new AtomicLongArray(WRITE_STRIPES);
+    // Per stripe of conversations: bumped by every change, so a load that raced with one is not cached
+    private final AtomicLongArray versions = new AtomicLongArray(WRITE_STRIPES);
+    private final Counter cacheReads;
+    private final Counter mongoReads;
+
+    public MessageTailCache(StringRedisTemplate redisTemplate,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${message.tail-cache.size:50}") int tailSize,
+                            @Value("${message.tail-cache.max-bytes:67108864}") long maxBytes,
+                            @Value("${message.tail-cache.ttl-ms:600000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.tailSize = tailSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String conversationId, Tail tail) -> tail.bytes())
+                .expireAfterAccess(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "message.tail");
+        Gauge.builder("message.tail.bytes", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L))
+                        .orElse(0L))
+                .description("Estimated memory held by cached message tails")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.cacheReads = Counter.builder("message.history.reads")
+                .description("First history pages served, by tier")
+                .tag("tier", "cache")
+                .register(meterRegistry);
+        this.mongoReads = Counter.builder("message.history.reads")
+                .description("First history pages served, by tier")
+                .tag("tier", "mongo")
+                .register(meterRegistry);
+    }
+
+    public int getTailSize() {
+        return tailSize;
+    }
+
+    /**
+     * Get the cached tail of a conversation, loading it with {@code loader} on a miss.
+     * The loaded tail is only cached when no message of the conversation is waiting for the writer
+     * and the conversation did not change during the load.
+     * @param conversationId The ID of the conversation.
+     * @param loader Loads up to {@code tailSize + 1} newest messages, newest first.
+     * @return The tail.
+     */
+    public Tail get(String conversationId, Supplier<List<Message>> loader) {
+        Tail cached = cache.getIfPresent(conversationId);
+        if (cached != null) {
+            cacheReads.increment();
+            return cached;
+        }
+
+        mongoReads.increment();
+        int stripe = stripe(conversationId);
+        long version = versions.get(stripe);
+        boolean settled = accepted.get(stripe) - persisted.get(stripe) <= 0;
+        List<Message> loaded = loader.get();
+        Tail tail = new Tail(loaded.subList(0, Math.min(tailSize, loaded.size())), loaded.size() > tailSize);
+        if (settled && versions.get(stripe) == version) {
+            cache.asMap().putIfAbsent(conversationId, tail);
+            // A change that landed between the check and the put must not leave the loaded tail behind
+            if (versions.get(stripe) != version) {
+                cache.asMap().remove(conversationId, tail);
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Appends a message sent on this node to the cached tail.
+     * The other nodes merge it into theirs once the writer has persisted it, see {@link #markPersisted}.
+     * @param message The accepted message.
+     */
+    public void append(Message message) {
+        String conversationId = message.getConversationId();
+        int stripe = stripe(conversationId);
+        accepted.incrementAndGet(stripe);
+        versions.incrementAndGet(stripe);
+        cache.asMap().computeIfPresent(conversationId, (key, tail) -> tail.prepend(message, tailSize));
+    }
+
+    /**
+     * Advances the persisted watermark past messages the writer is done with, persisted or dropped,
+     * and sends the persisted ones to the other nodes to merge into their tails.
+     * @param messages The messages, previously passed to {@link #append}.
+     * @param dropped The messages among them that could not be persisted.
+     */
+    public void markPersisted(List<Message> messages, Collection<Message> dropped) {
+        Set<String> droppedIds = dropped.stream().map(Message::getId).collect(Collectors.toSet());
+        Map<String, List<Message>> persistedByConversation = new LinkedHashMap<>();
+        for (Message message : messages) {
+            persisted.incrementAndGet(stripe(message.getConversationId()));
+            if (!droppedIds.contains(message.getId())) {
+                persistedByConversation.computeIfAbsent(message.getConversationId(), key -> new ArrayList<>()).add(message);
+            }
+        }
+        persistedByConversation.forEach((conversationId, persistedMessages) ->
+                // Older ones would fall off the end of the tail anyway
+                publishAppend(conversationId, persistedMessages.subList(Math.max(0, persistedMessages.size() - tailSize),
+                        persistedMessages.size())));
+    }
+
+    /**
+     * Drops the cached tail of a conversation on every node, e.g. after messages in it changed.
+     * @param conversationId The ID of the conversation.
+     */
+    public void invalidate(String conversationId) {
+        versions.incrementAndGet(stripe(conversationId));
+        cache.invalidate(conversationId);
+        publishInvalidation(conversationId);
+    }
+
+    /**
+     * Looks a message up in the cached tail of its conversation.
+     * @param conversationId The ID of the conversation.
+     * @param messageId The ID of the message.
+     * @return The message, or empty when it is not cached.
+     */
+    public Optional<Message> find(String conversationId, String messageId) {
+        Tail tail = cache.getIfPresent(conversationId);
+        if (tail == null) return Optional.empty();
+        return tail.messages().stream()
+                .filter(message -> Objects.equals(message.getId(), messageId))
+                .findFirst();
+    }
+
+    /**
+     * Moves messages of the cached tail to a new delivery status on every node, keeping the tail cached.
+     * @param conversationId The ID of the conversation.
+     * @param messageIds The IDs of the messages whose status changed.
+     * @param status The new status.
+     */
+    public void updateStatus(String conversationId, Collection<String> messageIds, Message.MessageStatus status) {
+        applyStatus(conversationId, Set.copyOf(messageIds), status);
+        try {
+            redisTemplate.convertAndSend(MESSAGE_TAIL_INVALIDATION_CHANNEL,
+                    nodeId + ":" + conversationId + ":" + status + ":" + String.join(",", messageIds));
+        } catch (Exception e) {
+            log.warn("Failed to publish tail status update for conversation {}", conversationId, e);
+        }
+    }
+
+    /**
+     * Handles an invalidation, appended messages or a status update published by a node.
+     * A payload this node cannot read, e.g. from a newer version, drops the tail instead.
+     * @param payload The payload in the format {@code <nodeId>:<conversationId>},
+     *                {@code <nodeId>:<conversationId>:append:<messages as JSON>} for appended messages,
+     *                or {@code <nodeId>:<conversationId>:<status>:<messageId>,...} for a status update.
+     */
+    public void onInvalidation(String payload) {
+        String[] parts = payload.split(":", 4);
+        if (parts.length < 2 || parts[0].isEmpty() || parts[0].equals(nodeId)) return;
+
+        String conversationId = parts[1];
+        if (parts.length == 4) {
+            try {
+                if (APPEND.equals(parts[2])) {
+                    applyAppend(conversationId, Arrays.asList(objectMapper.readValue(parts[3], Message[].class)));
+                } else {
+                    applyStatus(conversationId, Set.of(parts[3].split(",")), Message.MessageStatus.valueOf(parts[2]));
+                }
+                return;
+            } catch (Exception e) {
+                log.warn("Dropping tail of conversation {} on an unreadable update", conversationId, e);
+            }
+        }
+        versions.incrementAndGet(stripe(conversationId));
+        cache.invalidate(conversationId);
+    }
+
+    private void applyAppend(String conversationId, List<Message> messages) {
+        // A load racing with the append may miss the messages, so it must not be cached
+        versions.incrementAndGet(stripe(conversationId));
+        cache.asMap().computeIfPresent(conversationId, (key, tail) -> tail.merge(messages, tailSize));
+    }
+
+    private void applyStatus(String conversationId, Set<String> messageIds, Message.MessageStatus status) {
+        // A load racing with the update may hold the old status, so it must not be cached
+        versions.incrementAndGet(stripe(conversationId));
+        cache.asMap().computeIfPresent(conversationId, (key, tail) -> tail.withStatus(messageIds, status));
+    }
+
+    private void publishInvalidation(String conversationId) {
+        try {
+            redisTemplate.convertAndSend(MESSAGE_TAIL_INVALIDATION_CHANNEL, nodeId + ":" + conversationId);
+        } catch (Exception e) {
+            log.warn("Failed to publish tail invalidation for conversation {}", conversationId, e);
+        }
+    }
+
+    private void publishAppend(String conversationId, List<Message> messages) {
+        try {
+            redisTemplate.convertAndSend(MESSAGE_TAIL_INVALIDATION_CHANNEL,
+                    nodeId + ":" + conversationId + ":" + APPEND + ":" + objectMapper.writeValueAsString(messages));
+        } catch (Exception e) {
+            log.warn("Failed to publish appended messages for conversation {}", conversationId, e);
+            // The other nodes would keep a tail without the messages
+            publishInvalidation(conversationId);
+        }
+    }
+
+    private static int stripe(String conversationId) {
+        return Math.floorMod(conversationId.hashCode(), WRITE_STRIPES);
+    }
+
+    /**
+     * Immutable snapshot of the newest messages of a conversation, newest first.
+     * @param messages The messages.
+     * @param hasOlder Whether older messages exist beyond this tail.
+     */
+    public record Tail(List<Message> messages, boolean hasOlder) {
+
+        public Tail {
+            messages = List.copyOf(messages);
+        }
+
+        Tail withStatus(Set<String> messageIds, Message.MessageStatus status) {
+            List<Message> updated = messages.stream()
+                    .map(message -> messageIds.contains(message.getId())
+                            && message.getStatus() != null && message.getStatus().compareTo(status) < 0
+                            ? message.toBuilder().status(status).build()
+                            : message)
+                    .toList();
+            return new Tail(updated, hasOlder);
+        }
+
+        Tail prepend(Message message, int maxSize) {
+            List<Message> updated = new ArrayList<>(Math.min(maxSize, messages.size() + 1));
+            updated.add(message);
+            updated.addAll(messages.subList(0, Math.min(maxSize - 1, messages.size())));
+            return new Tail(updated, hasOlder || messages.size() >= maxSize);
+        }
+
+        /**
+         * Adds messages persisted on another node, keeping newest first order and skipping ones already in the tail.
+         * Messages older than a full tail fall off its end.
+         */
+        Tail merge(List<Message> added, int maxSize) {
+            Map<String, Message> byId = new LinkedHashMap<>();
+            messages.forEach(message -> byId.put(message.getId(), message));
+            added.forEach(message -> byId.putIfAbsent(message.getId(), message));
+            if (byId.size() == messages.size()) return this;
+
+            List<Message> merged = new ArrayList<>(byId.values());
+            merged.sort(NEWEST_FIRST);
+            boolean truncated = merged.size() > maxSize;
+            return new Tail(truncated ? merged.subList(0, maxSize) : merged, hasOlder || truncated);
+        }
+
+        int bytes() {
+            long total = 64;
+            for (Message message : messages) {
+                total += estimateBytes(message);
+            }
+            return (int) Math.min(Integer.MAX_VALUE, total);
+        }
+
+        private static long estimateBytes(Message message) {
+            // Object headers and fixed fields, plus two bytes per char of the variable length strings
+            long bytes = 256;
+            bytes += 2L * length(message.getContent());
+            bytes += 2L * length(message.getSenderName());
+            bytes += 2L * length(message.getSenderAvatarUrl());
+            if (message.getMentionedUserIds() != null) {
+                bytes += 72L * message.getMentionedUserIds().size();
+            }
+            return bytes;
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.linxtalk.component;
+
+import com.linxtalk.entity.Conversation;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.DeviceToken;
+import com.linxtalk.entity.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the missing indexes declared on the entities whose queries depend on them, since index auto-creation is off.
+ * Startup never drops an index: nodes of the previous release may still be querying with it, and concurrent starts
+ * would race on the drop. An existing index with the declared name or keys but other options or another name
+ * (e.g. refreshToken becoming sparse) is only reported.
+ * With {@code mongo.indexes.migrate} set, meant for a single one-off run, indexes replaced by a renamed one are
+ * dropped and mismatched ones are dropped and recreated as declared.
+ */
+@Component
+@Slf4j
+public class MongoIndexInitializer {
+
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(Message.class, Conversation.class, ConversationMember.class, DeviceToken.class);
+    private static final Map<Class<?>, List<String>> REPLACED_INDEXES = Map.of(
+            Message.class, List.of("conversation_timestamp"),
+            ConversationMember.class, List.of("active_last_message", "active_last_message_id", "user_updated"));
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean migrate;
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate,
+                                 @Value("${mongo.indexes.migrate:false}") boolean migrate) {
+        this.mongoTemplate = mongoTemplate;
+        this.migrate = migrate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        IndexResolver indexResolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entity : INDEXED_ENTITIES) {
+            try {
+                createIndexes(entity, indexResolver);
+            } catch (Exception e) {
+                // A missing index slows queries down but must not keep the node from starting
+                log.error("Failed to create indexes of {}", entity.getSimpleName(), e);
+            }
+        }
+    }
+
+    private void createIndexes(Class<?> entity, IndexResolver indexResolver) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(entity);
+        Map<String, IndexInfo> existing = indexOperations.getIndexInfo().stream()
+                .collect(Collectors.toMap(IndexInfo::getName, Function.identity()));
+
+        for (String replaced : REPLACED_INDEXES.getOrDefault(entity, List.of())) {
+            if (migrate && existing.remove(replaced) != null) {
+                indexOperations.dropIndex(replaced);
+                log.info("Dropped replaced index {} of {}", replaced, entity.getSimpleName());
+            }
+        }
+
+        for (IndexDefinition index : indexResolver.resolveIndexFor(entity)) {
+            Document options = index.getIndexOptions();
+            // Unnamed for plain @Indexed fields, which then take MongoDB's default name
+            String name = options.getString("name");
+            // Same name, or the same keys under another name (e.g. the default name of an index created by hand)
+            IndexInfo current = name != null && existing.containsKey(name)
+                    ? existing.get(name)
+                    : existing.values().stream().filter(info -> sameKeys(info, index.getIndexKeys())).findFirst().orElse(null);
+            if (current != null && (name == null || current.getName().equals(name)) && sameKeys(current, index.getIndexKeys())
+                    && current.isUnique() == options.getBoolean("unique", false)
+                    && current.isSparse() == options.getBoolean("sparse", false)) {
+                continue;
+            }
+            if (current != null) {
+                if (!migrate) {
+                    log.warn("Index {} of {} differs from its declaration. Run once with mongo.indexes.migrate=true to recreate it.",
+                            current.getName(), entity.getSimpleName());
+                    continue;
+                }
+                indexOperations.dropIndex(current.getName());
+                existing.remove(current.getName());
+                log.info("Dropped index {} of {} to recreate it as declared", current.getName(), entity.getSimpleName());
+            }
+            indexOperations.createIndex(index);
+        }
+    }
+
+    private static boolean sameKeys(IndexInfo info, Document keys) {
+        List<IndexField> fields = info.getIndexFields();
+        if (fields.size() != keys.size()) return false;
+        int i = 0;
+        for (Map.Entry<String, Object> key : keys.entrySet()) {
+            IndexField field = fields.get(i++);
+            Sort.Direction direction = Integer.valueOf(-1).equals(key.getValue()) ? Sort.Direction.DESC : Sort.Direction.ASC;
+            if (!field.getKey().equals(key.getKey()) || field.getDirection() != direction) return false;
+        }
+        return true;
+    }
+}
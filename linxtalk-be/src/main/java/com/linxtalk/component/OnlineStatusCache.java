@@ -0,0 +1,58 @@
+package com.linxtalk.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-process cache of online statuses in front of the Redis presence keys.
+ * Entries live for a short TTL and are invalidated early through the presence invalidation channel,
+ * which the presence scripts publish to whenever a user goes online or offline.
+ */
+@Component
+public class OnlineStatusCache {
+
+    private final Cache<String, Boolean> cache;
+    private final Timer invalidationLag;
+
+    public OnlineStatusCache(MeterRegistry meterRegistry,
+                             @Value("${presence.cache.max-size:100000}") long maxSize,
+                             @Value("${presence.cache.ttl-ms:5000}") long ttlMs) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        // Publishes cache.gets{result=hit|miss} (hit ratio), cache.evictions and cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "presence.online.status");
+        this.invalidationLag = Timer.builder("presence.online.status.invalidation.lag")
+                .description("Delay between a presence transition in Redis and the local invalidation")
+                .register(meterRegistry);
+    }
+
+    public Map<String, Boolean> getAllPresent(Iterable<String> userIds) {
+        return cache.getAllPresent(userIds);
+    }
+
+    public void putAll(Map<String, Boolean> statuses) {
+        cache.putAll(statuses);
+    }
+
+    /**
+     * Drops the cached status of a user.
+     * @param userId The ID of the user.
+     * @param publishedAtMs The time the transition was published, used for the invalidation lag metric.
+     */
+    public void invalidate(String userId, long publishedAtMs) {
+        cache.invalidate(userId);
+        invalidationLag.record(Math.max(0, System.currentTimeMillis() - publishedAtMs), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,305 @@
+package com.linxtalk.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.linxtalk.utils.Constant.BACKGROUND_JOB_SCHEDULER;
+import static com.linxtalk.utils.Constant.WEBSOCKET_RELAY_CHANNEL;
+import static com.linxtalk.utils.Constant.WEBSOCKET_USER_NODES_KEY_PREFIX;
+
+/**
+ * Relays broker traffic between nodes through Redis pub/sub.
+ * {@code /topic} messages, whether published by the server or sent by a client, are broadcast to every node.
+ * {@code /user} messages are resolved cluster-wide: every node records in Redis which users have sessions on it,
+ * and a user message is only forwarded to the nodes that own a session of that user.
+ * Receiving nodes re-inject the message into their own broker channel, where the simple broker and the user
+ * destination resolver deliver it to the local sessions only.
+ * A crashed node's ownership entries only cost a publish to a channel nobody listens to until they expire.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "redis-relay")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisBrokerRelay implements ChannelInterceptor, MessageListener {
+
+    public static final String RELAYED_HEADER = "linxtalk-relayed";
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String USER_PREFIX = "/user/";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    // userId -> IDs of the sessions of that user connected to this node
+    private final Map<String, Set<String>> localSessions = new ConcurrentHashMap<>();
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    @Value("${websocket.relay.ownership-refresh-ms:60000}")
+    private long ownershipRefreshMs;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(WEBSOCKET_RELAY_CHANNEL));
+        listenerContainer.addMessageListener(this, new ChannelTopic(nodeChannel(nodeId)));
+        log.info("WebSocket broker relay enabled on node {}", nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Relays messages published to the broker channel and messages sent by clients on the inbound channel.
+     */
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || Boolean.TRUE.equals(message.getHeaders().get(RELAYED_HEADER))) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) return message;
+
+        String targetChannel;
+        Set<String> targetNodes = null;
+        if (destination.startsWith(TOPIC_PREFIX)) {
+            targetChannel = WEBSOCKET_RELAY_CHANNEL;
+        } else if (destination.startsWith(USER_PREFIX)) {
+            String userId = extractUser(destination);
+            if (userId == null) return message;
+            targetNodes = remoteNodesOf(userId);
+            if (targetNodes.isEmpty()) return message;
+            targetChannel = null;
+        } else {
+            return message;
+        }
+
+        byte[] payload = toBytes(message.getPayload());
+        if (payload == null) {
+            log.warn("Not relaying message to {}: unsupported payload type {}", destination, message.getPayload().getClass());
+            return message;
+        }
+
+        MimeType contentType = SimpMessageHeaderAccessor.getContentType(message.getHeaders());
+        RelayEnvelope envelope = new RelayEnvelope(nodeId, destination, contentType != null ? contentType.toString() : null, payload);
+        if (targetChannel != null) {
+            publish(targetChannel, envelope);
+        } else {
+            targetNodes.forEach(targetNode -> publish(nodeChannel(targetNode), envelope));
+        }
+        return message;
+    }
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        try {
+            RelayEnvelope envelope = objectMapper.readValue(message.getBody(), RelayEnvelope.class);
+            if (nodeId.equals(envelope.origin())) return;
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            if (envelope.contentType() != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+            }
+            accessor.setHeader(RELAYED_HEADER, true);
+            accessor.setLeaveMutable(true);
+            Message<byte[]> relayed = MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders());
+            messagingTemplate.getObject().send(envelope.destination(), relayed);
+        } catch (Exception e) {
+            log.error("Failed to deliver relayed broker message", e);
+        }
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Principal user = accessor.getUser();
+        if (user != null && accessor.getSessionId() != null) {
+            registerSession(user.getName(), accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnected(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user != null) {
+            unregisterSession(user.getName(), event.getSessionId());
+        }
+    }
+
+    /**
+     * Records a session connected to this node; the first session of a user registers this node as an owner.
+     */
+    public void registerSession(String userId, String sessionId) {
+        boolean[] first = {false};
+        localSessions.compute(userId, (key, sessions) -> {
+            Set<String> updated = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+            first[0] = updated.isEmpty();
+            updated.add(sessionId);
+            return updated;
+        });
+        if (first[0]) {
+            try {
+                String key = WEBSOCKET_USER_NODES_KEY_PREFIX + userId;
+                redisTemplate.opsForSet().add(key, nodeId);
+                redisTemplate.expire(key, ownershipTtl());
+            } catch (Exception e) {
+                log.error("Failed to register node {} as owner of user {}", nodeId, userId, e);
+            }
+        }
+    }
+
+    /**
+     * Forgets a session; when the last session of a user on this node is gone the node stops owning the user.
+     */
+    public void unregisterSession(String userId, String sessionId) {
+        boolean[] last = {false};
+        localSessions.computeIfPresent(userId, (key, sessions) -> {
+            sessions.remove(sessionId);
+            last[0] = sessions.isEmpty();
+            return last[0] ? null : sessions;
+        });
+        if (last[0]) {
+            try {
+                redisTemplate.opsForSet().remove(WEBSOCKET_USER_NODES_KEY_PREFIX + userId, nodeId);
+            } catch (Exception e) {
+                log.error("Failed to unregister node {} as owner of user {}", nodeId, userId, e);
+            }
+        }
+    }
+
+    /**
+     * Re-registers every local user so ownership entries outlive their TTL only while the sessions are alive.
+     */
+    @Scheduled(fixedDelayString = "${websocket.relay.ownership-refresh-ms:60000}", scheduler = BACKGROUND_JOB_SCHEDULER)
+    public void refreshOwnership() {
+        if (localSessions.isEmpty()) return;
+
+        long ttlSeconds = ownershipTtl().toSeconds();
+        byte[] member = nodeId.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String userId : localSessions.keySet()) {
+                    byte[] key = (WEBSOCKET_USER_NODES_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+                    connection.setCommands().sAdd(key, member);
+                    connection.keyCommands().expire(key, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Failed to refresh ownership of {} users", localSessions.size(), e);
+        }
+    }
+
+    /**
+     * Groups users by the other nodes that own a session of theirs, reading every ownership set in one pipeline.
+     * @param userIds The users to resolve.
+     * @return Map of nodeId to the given users with a session on that node, without this node.
+     */
+    public Map<String, List<String>> remoteNodesOf(Collection<String> userIds) {
+        List<String> users = List.copyOf(userIds);
+        Map<String, List<String>> usersByNode = new HashMap<>();
+        try {
+            List<Object> owners = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String userId : users) {
+                    connection.setCommands().sMembers((WEBSOCKET_USER_NODES_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            for (int i = 0; i < users.size(); i++) {
+                if (!(owners.get(i) instanceof Collection<?> nodes)) continue;
+                for (Object node : nodes) {
+                    if (!nodeId.equals(node)) {
+                        usersByNode.computeIfAbsent((String) node, key -> new ArrayList<>()).add(users.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to resolve the nodes of {} users", users.size(), e);
+        }
+        return usersByNode;
+    }
+
+    private Set<String> remoteNodesOf(String userId) {
+        try {
+            Set<String> nodes = redisTemplate.opsForSet().members(WEBSOCKET_USER_NODES_KEY_PREFIX + userId);
+            if (nodes == null) return Set.of();
+            nodes.remove(nodeId);
+            return nodes;
+        } catch (Exception e) {
+            log.error("Failed to resolve the nodes of user {}", userId, e);
+            return Set.of();
+        }
+    }
+
+    private Duration ownershipTtl() {
+        return Duration.ofMillis(ownershipRefreshMs * 3);
+    }
+
+    private void publish(String channel, RelayEnvelope envelope) {
+        try {
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.error("Failed to relay broker message to {}", envelope.destination(), e);
+        }
+    }
+
+    /**
+     * @param destination A destination of the form {@code /user/{userId}/...}.
+     */
+    private static String extractUser(String destination) {
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        if (end <= USER_PREFIX.length()) return null;
+        return destination.substring(USER_PREFIX.length(), end);
+    }
+
+    private static String nodeChannel(String nodeId) {
+        return WEBSOCKET_RELAY_CHANNEL + ":" + nodeId;
+    }
+
+    private byte[] toBytes(Object payload) {
+        if (payload instanceof byte[] bytes) return bytes;
+        if (payload instanceof String text) return text.getBytes(StandardCharsets.UTF_8);
+        return null;
+    }
+
+    public record RelayEnvelope(String origin, String destination, String contentType, byte[] payload) {
+    }
+}
@@ -2,9 +2,13 @@ package com.linxtalk.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
+import java.util.List;
+
 @Configuration
 public class RedisConfig {
 
@@ -14,4 +18,45 @@ public class RedisConfig {
         container.setConnectionFactory(connectionFactory);
         return container;
     }
+
+    /**
+     * Presence scripts are executed through EVALSHA; the script is only sent with EVAL
+     * the first time a Redis node reports NOSCRIPT.
+     */
+    @Bean
+    public RedisScript<Long> presenceConnectScript() {
+        return RedisScript.of(new ClassPathResource("scripts/presence/connect.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> presenceDisconnectScript() {
+        return RedisScript.of(new ClassPathResource("scripts/presence/disconnect.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> presenceHeartbeatScript() {
+        return RedisScript.of(new ClassPathResource("scripts/presence/heartbeat.lua"), Long.class);
+    }
+
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> presenceReapScript() {
+        return RedisScript.of(new ClassPathResource("scripts/presence/reap.lua"), List.class);
+    }
+
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> onlineFriendsScript() {
+        return RedisScript.of(new ClassPathResource("scripts/friend/online_friends.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<Long> friendIndexBuildScript() {
+        return RedisScript.of(new ClassPathResource("scripts/friend/build_index.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> onlineUsersReconcileScript() {
+        return RedisScript.of(new ClassPathResource("scripts/presence/reconcile_online_users.lua"), Long.class);
+    }
 }
@@ -0,0 +1,48 @@
+package com.linxtalk.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static com.linxtalk.utils.Constant.BACKGROUND_JOB_SCHEDULER;
+
+/**
+ * Schedulers for {@code @Scheduled} jobs. The default one is declared explicitly: the broker's heartbeat scheduler
+ * would otherwise keep Boot from creating it and every job would share a single thread.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Value("${scheduling.pool-size:4}")
+    private int poolSize;
+
+    @Value("${scheduling.background-jobs.pool-size:2}")
+    private int backgroundJobsPoolSize;
+
+    /**
+     * Runs the short, frequent jobs (heartbeat and status flushes, the reaper), picked up by name for
+     * {@code @Scheduled} methods without a scheduler.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        return scheduler(poolSize, "scheduling-");
+    }
+
+    /**
+     * Runs the long jobs (reconciliations, keyspace scans, key refreshes), so a slow run does not delay the flushes.
+     */
+    @Bean(BACKGROUND_JOB_SCHEDULER)
+    public ThreadPoolTaskScheduler backgroundJobScheduler() {
+        return scheduler(backgroundJobsPoolSize, "background-job-");
+    }
+
+    private static ThreadPoolTaskScheduler scheduler(int poolSize, String threadNamePrefix) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+}
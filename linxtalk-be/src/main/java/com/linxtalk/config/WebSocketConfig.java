@@ -1,17 +1,26 @@
 package com.linxtalk.config;
 
+import com.linxtalk.component.ChannelExecutorMetrics;
+import com.linxtalk.component.EncodedPayloadConverter;
+import com.linxtalk.component.RedisBrokerRelay;
 import com.linxtalk.security.WebSocketAuthChannelInterceptor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 import java.util.List;
 
@@ -23,6 +32,42 @@ import static com.linxtalk.utils.Constant.WEBSOCKET_MAPPING;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketAuthChannelInterceptor webSocketAuthChannelInterceptor;
+    private final ObjectProvider<RedisBrokerRelay> redisBrokerRelay;
+    private final ChannelExecutorMetrics channelExecutorMetrics;
+    private final EncodedPayloadConverter encodedPayloadConverter;
+
+    @Value("${websocket.inbound.virtual-threads:false}")
+    private boolean inboundVirtualThreads;
+
+    @Value("${websocket.inbound.core-pool-size:16}")
+    private int inboundCorePoolSize;
+
+    @Value("${websocket.inbound.max-pool-size:64}")
+    private int inboundMaxPoolSize;
+
+    @Value("${websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.outbound.core-pool-size:16}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:64}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${websocket.heartbeat.pool-size:4}")
+    private int heartbeatPoolSize;
+
+    @Value("${websocket.transport.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -37,16 +82,82 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setHeartbeatValue(new long[]{0, 10000});
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
+        // Only present when websocket.broker.mode=redis-relay
+        redisBrokerRelay.ifAvailable(relay -> registry.configureBrokerChannel().interceptors(relay));
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(webSocketAuthChannelInterceptor);
+        // Client SENDs to /topic and /user never reach the broker channel, so they are relayed on the way in
+        redisBrokerRelay.ifAvailable(relay -> registration.interceptors(relay));
+        registration.executor(webSocketInboundExecutor());
     }
 
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(webSocketOutboundExecutor());
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(encodedPayloadConverter);
+        // Keep the default converters after it
+        return true;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Slow consumers are disconnected once either limit is exceeded instead of holding outbound threads
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+
+    /**
+     * Scheduler for broker heartbeats, sized so heartbeat ticks do not queue up behind each other under load.
+     */
     @Bean
     public TaskScheduler heartBeatScheduler() {
-        return new ThreadPoolTaskScheduler();
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(heartbeatPoolSize);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        return scheduler;
+    }
+
+    /**
+     * Executor for the client inbound channel, a bean so the context initializes it and shuts it down.
+     */
+    @Bean
+    public TaskExecutor webSocketInboundExecutor() {
+        if (inboundVirtualThreads) {
+            // Inbound work is mostly blocking (JWT checks, Redis calls), so one virtual thread per message is cheap
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-inbound-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(channelExecutorMetrics.decorator("inbound"));
+            return executor;
+        }
+        return channelExecutor("inbound", inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity);
     }
-}
 
+    /**
+     * Executor for the client outbound channel, a bean so the context initializes it and shuts it down.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor webSocketOutboundExecutor() {
+        return channelExecutor("outbound", outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity);
+    }
+
+    private ThreadPoolTaskExecutor channelExecutor(String channel, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("ws-" + channel + "-");
+        executor.setTaskDecorator(channelExecutorMetrics.decorator(channel));
+        // Initialized by the context; the gauge reads 0 until then
+        channelExecutorMetrics.monitorQueue(channel, executor);
+        return executor;
+    }
+}
@@ -2,6 +2,7 @@ package com.linxtalk.controller;
 
 import com.linxtalk.dto.request.CreateConversationRequest;
 import com.linxtalk.dto.response.ConversationResponse;
+import com.linxtalk.dto.response.ConversationSyncResponse;
 import com.linxtalk.service.ConversationService;
 import com.linxtalk.utils.BaseResponse;
 import com.linxtalk.utils.Constant;
@@ -42,8 +43,9 @@ public class ConversationController {
     @GetMapping
     public ResponseEntity<BaseResponse<PageResponse<ConversationResponse>>> getConversations(
             @RequestParam(required = false, defaultValue = "0") int pageNo,
-            @RequestParam(required = false, defaultValue = "10") int pageSize) {
-        PageResponse<ConversationResponse> conversations = conversationService.getConversations(pageNo, pageSize);
+            @RequestParam(required = false, defaultValue = "10") int pageSize,
+            @RequestParam(required = false, defaultValue = "false") boolean withTotal) {
+        PageResponse<ConversationResponse> conversations = conversationService.getConversations(pageNo, pageSize, withTotal);
 
         BaseResponse<PageResponse<ConversationResponse>> response = BaseResponse.<PageResponse<ConversationResponse>>builder()
                 .status(HttpStatus.OK.value())
@@ -53,4 +55,18 @@ public class ConversationController {
 
         return ResponseEntity.ok(response);
     }
+
+    @GetMapping("/sync")
+    public ResponseEntity<BaseResponse<ConversationSyncResponse>> syncConversations(
+            @RequestParam(required = false) String since) {
+        ConversationSyncResponse conversations = conversationService.syncConversations(since);
+
+        BaseResponse<ConversationSyncResponse> response = BaseResponse.<ConversationSyncResponse>builder()
+                .status(HttpStatus.OK.value())
+                .message(MessageSuccess.SYNC_CONVERSATIONS_SUCCESS)
+                .data(conversations)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
 }
@@ -1,5 +1,6 @@
 package com.linxtalk.controller;
 
+import com.linxtalk.dto.request.MarkReadRequest;
 import com.linxtalk.dto.request.UpdateConversationMemberRequest;
 import com.linxtalk.service.ConversationMemberService;
 import com.linxtalk.utils.BaseResponse;
@@ -12,6 +13,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -37,6 +39,20 @@ public class ConversationMemberController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/{conversationId}/read")
+    public ResponseEntity<BaseResponse<Void>> markAsRead(
+            @PathVariable String conversationId,
+            @RequestBody(required = false) MarkReadRequest request) {
+        conversationMemberService.markAsRead(conversationId, request);
+
+        BaseResponse<Void> response = BaseResponse.<Void>builder()
+                .status(HttpStatus.OK.value())
+                .message(MessageSuccess.MARK_CONVERSATION_READ_SUCCESS)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
     @DeleteMapping("/{conversationId}")
     public ResponseEntity<BaseResponse<Void>> deleteConversationMember(@PathVariable String conversationId) {
         conversationMemberService.deleteConversationMember(conversationId);
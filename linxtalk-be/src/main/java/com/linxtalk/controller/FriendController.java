@@ -29,8 +29,9 @@ public class FriendController {
             @RequestParam(required = false, defaultValue = "id") String sortBy,
             @RequestParam(required = false, defaultValue = "desc") String sortDir,
             @RequestParam(required = false, defaultValue = "0") int pageNo,
-            @RequestParam(required = false, defaultValue = "10") int pageSize) {
-        PageResponse<FriendResponse> friendResponse = friendService.getFriends(hasChatted, sortBy, sortDir, pageNo, pageSize);
+            @RequestParam(required = false, defaultValue = "10") int pageSize,
+            @RequestParam(required = false, defaultValue = "false") boolean withTotal) {
+        PageResponse<FriendResponse> friendResponse = friendService.getFriends(hasChatted, sortBy, sortDir, pageNo, pageSize, withTotal);
         BaseResponse<PageResponse<FriendResponse>> response = BaseResponse.<PageResponse<FriendResponse>>builder()
                 .status(HttpStatus.OK.value())
                 .message(MessageSuccess.GET_FRIENDS_SUCCESS)
@@ -41,11 +42,9 @@ public class FriendController {
 
     @GetMapping("/online")
     public ResponseEntity<BaseResponse<List<FriendResponse>>> getOnlineFriends(
-            @RequestParam(required = false, defaultValue = "0") int pageNo,
-            @RequestParam(required = false, defaultValue = "100") int pageSize,
             @RequestParam(required = false, defaultValue = "20") int pageSizeOnline
     ) {
-        List<FriendResponse> onlineFriends = friendService.getOnlineFriends(pageNo, pageSize, pageSizeOnline);
+        List<FriendResponse> onlineFriends = friendService.getOnlineFriends(pageSizeOnline);
         BaseResponse<List<FriendResponse>> response = BaseResponse.<List<FriendResponse>>builder()
                 .status(HttpStatus.OK.value())
                 .message(MessageSuccess.GET_ONLINE_FRIENDS_SUCCESS)
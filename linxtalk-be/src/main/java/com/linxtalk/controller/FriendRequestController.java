@@ -40,8 +40,9 @@ public class FriendRequestController {
     @GetMapping
     public ResponseEntity<BaseResponse<PageResponse<FriendRequestResponse>>> getFriendRequests(
             @RequestParam(required = false, defaultValue = "0") int pageNo,
-            @RequestParam(required = false, defaultValue = "10") int pageSize) {
-        PageResponse<FriendRequestResponse> friendRequests = friendRequestService.getFriendRequests(pageNo, pageSize);
+            @RequestParam(required = false, defaultValue = "10") int pageSize,
+            @RequestParam(required = false, defaultValue = "false") boolean withTotal) {
+        PageResponse<FriendRequestResponse> friendRequests = friendRequestService.getFriendRequests(pageNo, pageSize, withTotal);
 
         BaseResponse<PageResponse<FriendRequestResponse>> response = BaseResponse.<PageResponse<FriendRequestResponse>>builder()
                 .status(HttpStatus.OK.value())
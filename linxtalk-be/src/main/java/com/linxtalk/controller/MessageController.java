@@ -0,0 +1,100 @@
+package com.linxtalk.controller;
+
+import com.linxtalk.dto.request.SendMessageRequest;
+import com.linxtalk.dto.response.MessageReadCountResponse;
+import com.linxtalk.dto.response.MessageReaderResponse;
+import com.linxtalk.dto.response.MessageResponse;
+import com.linxtalk.service.MessageService;
+import com.linxtalk.utils.BaseResponse;
+import com.linxtalk.utils.Constant;
+import com.linxtalk.utils.CursorResponse;
+import com.linxtalk.utils.FnCommon;
+import com.linxtalk.utils.MessageSuccess;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(value = Constant.CONVERSATION)
+@RequiredArgsConstructor
+public class MessageController {
+
+    private final MessageService messageService;
+
+    /**
+     * REST fallback for clients that cannot send over the WebSocket connection.
+     */
+    @PostMapping("/{conversationId}/messages")
+    public ResponseEntity<BaseResponse<MessageResponse>> sendMessage(
+            @PathVariable String conversationId,
+            @Valid @RequestBody SendMessageRequest request) {
+        MessageResponse messageResponse = messageService.sendMessage(conversationId, FnCommon.getUserId(), request);
+
+        BaseResponse<MessageResponse> response = BaseResponse.<MessageResponse>builder()
+                .status(HttpStatus.ACCEPTED.value())
+                .message(MessageSuccess.SEND_MESSAGE_SUCCESS)
+                .data(messageResponse)
+                .build();
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/{conversationId}/messages")
+    public ResponseEntity<BaseResponse<CursorResponse<MessageResponse>>> getMessages(
+            @PathVariable String conversationId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String around,
+            @RequestParam(required = false, defaultValue = "30") int pageSize) {
+        CursorResponse<MessageResponse> messages = messageService.getMessages(
+                conversationId, FnCommon.getUserId(), before, after, around, pageSize);
+
+        BaseResponse<CursorResponse<MessageResponse>> response = BaseResponse.<CursorResponse<MessageResponse>>builder()
+                .status(HttpStatus.OK.value())
+                .message(MessageSuccess.GET_MESSAGES_SUCCESS)
+                .data(messages)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/{conversationId}/messages/read-counts")
+    public ResponseEntity<BaseResponse<List<MessageReadCountResponse>>> getReadCounts(
+            @PathVariable String conversationId,
+            @RequestParam List<String> messageIds) {
+        List<MessageReadCountResponse> readCounts = messageService.getReadCounts(conversationId, FnCommon.getUserId(), messageIds);
+
+        BaseResponse<List<MessageReadCountResponse>> response = BaseResponse.<List<MessageReadCountResponse>>builder()
+                .status(HttpStatus.OK.value())
+                .message(MessageSuccess.GET_MESSAGE_READ_COUNTS_SUCCESS)
+                .data(readCounts)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/{conversationId}/messages/{messageId}/readers")
+    public ResponseEntity<BaseResponse<List<MessageReaderResponse>>> getReaders(
+            @PathVariable String conversationId,
+            @PathVariable String messageId) {
+        List<MessageReaderResponse> readers = messageService.getReaders(conversationId, FnCommon.getUserId(), messageId);
+
+        BaseResponse<List<MessageReaderResponse>> response = BaseResponse.<List<MessageReaderResponse>>builder()
+                .status(HttpStatus.OK.value())
+                .message(MessageSuccess.GET_MESSAGE_READERS_SUCCESS)
+                .data(readers)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,82 @@
+package com.linxtalk.controller;
+
+import com.linxtalk.dto.request.AckMessagesRequest;
+import com.linxtalk.dto.request.SendMessageRequest;
+import com.linxtalk.dto.response.MessageResponse;
+import com.linxtalk.exception.LimitExceededException;
+import com.linxtalk.exception.ResourceNotFoundException;
+import com.linxtalk.service.MessageService;
+import com.linxtalk.utils.BaseResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.handler.annotation.support.MethodArgumentNotValidException;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.stream.Collectors;
+
+import static com.linxtalk.utils.Constant.MESSAGE_ACK_QUEUE;
+import static com.linxtalk.utils.Constant.MESSAGE_ERROR_QUEUE;
+
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+public class MessageSocketController {
+
+    private final MessageService messageService;
+    private final MessageSource messageSource;
+
+    @MessageMapping("/conversations/{conversationId}/send")
+    @SendToUser(destinations = MESSAGE_ACK_QUEUE, broadcast = false)
+    public MessageResponse sendMessage(@DestinationVariable String conversationId,
+                                       @Valid @Payload SendMessageRequest request,
+                                       Principal principal) {
+        return messageService.sendMessage(conversationId, principal.getName(), request);
+    }
+
+    @MessageMapping("/conversations/{conversationId}/ack")
+    public void acknowledge(@DestinationVariable String conversationId,
+                            @Valid @Payload AckMessagesRequest request,
+                            Principal principal) {
+        messageService.acknowledge(conversationId, principal.getName(), request);
+    }
+
+    @MessageExceptionHandler
+    @SendToUser(destinations = MESSAGE_ERROR_QUEUE, broadcast = false)
+    public BaseResponse<Void> handleException(Exception ex) {
+        return switch (ex) {
+            case MethodArgumentNotValidException e -> error(HttpStatus.BAD_REQUEST, e.getBindingResult() == null
+                    ? e.getMessage()
+                    : e.getBindingResult().getFieldErrors().stream()
+                    .map(error -> error.getField() + ": " + error.getDefaultMessage())
+                    .collect(Collectors.joining(", ")));
+            case IllegalArgumentException e -> error(HttpStatus.BAD_REQUEST, resolve(e.getMessage()));
+            case ResourceNotFoundException e -> error(HttpStatus.NOT_FOUND, resolve(e.getMessageKey(), e.getArgs()));
+            case LimitExceededException e -> error(HttpStatus.TOO_MANY_REQUESTS, resolve(e.getMessageKey(), e.getArgs()));
+            default -> {
+                log.error("Unhandled websocket message error", ex);
+                yield error(HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase());
+            }
+        };
+    }
+
+    private BaseResponse<Void> error(HttpStatus status, String message) {
+        return BaseResponse.<Void>builder()
+                .status(status.value())
+                .message(message)
+                .build();
+    }
+
+    private String resolve(String key, Object... args) {
+        return messageSource.getMessage(key, args, key, LocaleContextHolder.getLocale());
+    }
+}
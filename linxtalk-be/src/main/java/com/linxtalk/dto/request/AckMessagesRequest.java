@@ -0,0 +1,26 @@
+package com.linxtalk.dto.request;
+
+import com.linxtalk.entity.Message;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AckMessagesRequest {
+
+    @NotEmpty(message = "{message.ack.messageIds.notempty}")
+    @Size(max = 500, message = "{message.ack.messageIds.size}")
+    private List<String> messageIds;
+
+    @NotNull(message = "{message.ack.status.notnull}")
+    private Message.MessageStatus status;
+}
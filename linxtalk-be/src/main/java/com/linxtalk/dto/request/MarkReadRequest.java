@@ -0,0 +1,16 @@
+package com.linxtalk.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarkReadRequest {
+
+    // Defaults to the last message of the conversation
+    private String lastReadMessageId;
+}
@@ -0,0 +1,30 @@
+package com.linxtalk.dto.request;
+
+import com.linxtalk.entity.Message;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendMessageRequest {
+
+    // Echoed back in the ack so the client can match it with its optimistic message
+    @Size(max = 64, message = "{message.clientMessageId.size}")
+    private String clientMessageId;
+
+    private Message.MessageType type;
+
+    @NotBlank(message = "{message.content.notblank}")
+    @Size(max = 5000, message = "{message.content.size}")
+    private String content;
+
+    private List<String> mentionedUserIds;
+}
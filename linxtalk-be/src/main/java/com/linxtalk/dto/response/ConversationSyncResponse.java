@@ -0,0 +1,22 @@
+package com.linxtalk.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSyncResponse {
+    // Conversations added or changed since the previous sync
+    private List<ConversationResponse> conversations;
+    // Conversations the user left or was removed from
+    private List<String> removedConversationIds;
+    private String syncToken;
+    // More changes are pending; sync again immediately with the returned token
+    private boolean hasMore;
+}
@@ -0,0 +1,15 @@
+package com.linxtalk.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageReadCountResponse {
+    private String messageId;
+    private Integer readCount;
+}
@@ -0,0 +1,19 @@
+package com.linxtalk.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageReaderResponse {
+    private String userId;
+    private String displayName;
+    private String avatarUrl;
+    private Instant readAt;
+}
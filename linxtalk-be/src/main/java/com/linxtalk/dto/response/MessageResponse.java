@@ -0,0 +1,30 @@
+package com.linxtalk.dto.response;
+
+import com.linxtalk.entity.Message;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageResponse {
+    private String id;
+    private String clientMessageId;
+    private String conversationId;
+    private String senderId;
+    private String senderName;
+    private String senderAvatarUrl;
+    private Message.MessageType type;
+    private String content;
+    private List<String> mentionedUserIds;
+    private Message.MessageStatus status;
+    private Boolean isEdited;
+    private Boolean isDeleted;
+    private Instant createdAt;
+}
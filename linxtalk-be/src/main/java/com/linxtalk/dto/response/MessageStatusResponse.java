@@ -0,0 +1,19 @@
+package com.linxtalk.dto.response;
+
+import com.linxtalk.entity.Message;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageStatusResponse {
+    private String conversationId;
+    private Message.MessageStatus status;
+    private List<String> messageIds;
+}
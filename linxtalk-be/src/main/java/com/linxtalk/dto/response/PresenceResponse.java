@@ -0,0 +1,18 @@
+package com.linxtalk.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceResponse {
+    private String userId;
+    private Boolean isOnline;
+    private Instant lastSeenAt;
+}
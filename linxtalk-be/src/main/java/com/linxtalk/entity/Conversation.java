@@ -4,6 +4,7 @@ import com.linxtalk.enumeration.ConversationType;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -14,6 +15,7 @@ import java.time.Instant;
 import java.util.List;
 
 @Document(collection = "conversations")
+@CompoundIndex(name = "last_message_sent_id", def = "{'lastMessage.sentAt': 1, '_id': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -66,6 +68,17 @@ public class Conversation {
         private String content;
         private Message.MessageType type;
         private Instant sentAt;
+
+        public static LastMessage of(Message message) {
+            return LastMessage.builder()
+                    .messageId(message.getId())
+                    .senderId(message.getSenderId())
+                    .senderName(message.getSenderName())
+                    .content(message.getContent())
+                    .type(message.getType())
+                    .sentAt(message.getCreatedAt())
+                    .build();
+        }
     }
 
     @Data
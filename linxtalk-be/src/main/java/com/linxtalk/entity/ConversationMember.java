@@ -17,7 +17,10 @@ import java.time.Instant;
 @Document(collection = "conversation_members")
 @CompoundIndexes({
         @CompoundIndex(name = "conversation_user", def = "{'conversationId': 1, 'userId': 1}", unique = true),
-        @CompoundIndex(name = "user_conversation", def = "{'userId': 1, 'conversationId': 1}")
+        @CompoundIndex(name = "user_conversation", def = "{'userId': 1, 'conversationId': 1}"),
+        @CompoundIndex(name = "conversation_last_read", def = "{'conversationId': 1, 'lastReadAt': 1}"),
+        @CompoundIndex(name = "user_updated_id", def = "{'userId': 1, 'updatedAt': 1, '_id': 1}"),
+        @CompoundIndex(name = "user_inbox", def = "{'userId': 1, 'isActive': 1, 'isPinned': -1, 'lastMessageAt': -1}")
 })
 @Data
 @Builder
@@ -34,6 +37,11 @@ public class ConversationMember {
 
     private ConversationType conversationType;
 
+    // Only for group chat, copied from the conversation so the inbox can be listed without reading it
+    private String conversationName;
+
+    private String conversationAvatarUrl;
+
     @Indexed
     @Field(targetType = FieldType.OBJECT_ID)
     private String userId;
@@ -83,6 +91,9 @@ public class ConversationMember {
 
     private Instant lastMessageAt;
 
+    // Copy of Conversation.lastMessage, kept in sync by the message writer
+    private Conversation.LastMessage lastMessage;
+
     @Builder.Default
     private Boolean isArchived = false;
 
@@ -34,9 +34,24 @@ public class DeviceToken {
     @Indexed
     private String deviceId;
 
-    @Indexed
+    // Only set on sessions created before refresh token rotation, which are looked up by the token itself
+    @Indexed(sparse = true)
     private String refreshToken;
 
+    // SHA-256 of the current refresh token
+    private String refreshTokenHash;
+
+    // SHA-256 of the refresh token the current one replaced, accepted again until rotatedAt plus the reuse grace
+    private String previousRefreshTokenHash;
+
+    // Rotation counter carried by the current refresh token
+    private long rotation;
+
+    // Issue time of the current refresh token
+    private Instant rotatedAt;
+
+    private Instant refreshTokenExpiresAt;
+
     private DevicePlatform platform;
 
     private String deviceName;
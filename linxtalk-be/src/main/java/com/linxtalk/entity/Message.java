@@ -16,11 +16,11 @@ import java.util.List;
 
 @Document(collection = "messages")
 @CompoundIndexes({
-        @CompoundIndex(name = "conversation_timestamp", def = "{'conversationId': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "conversation_timestamp_id", def = "{'conversationId': 1, 'createdAt': -1, '_id': -1}"),
         @CompoundIndex(name = "sender_timestamp", def = "{'senderId': 1, 'createdAt': -1}")
 })
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Message {
@@ -0,0 +1,16 @@
+package com.linxtalk.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+@AllArgsConstructor
+public class PresenceChangeEvent {
+    private final String userId;
+    private final boolean online;
+    private final Instant lastSeenAt;
+}
@@ -1,6 +1,7 @@
 package com.linxtalk.exception;
 
 import com.linxtalk.utils.BaseResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -79,4 +80,17 @@ public class GlobalExceptionHandler {
 
         return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
     }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<BaseResponse<Void>> handleServiceOverloaded(ServiceOverloadedException ex) {
+        BaseResponse<Void> response = BaseResponse.<Void>builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .message(ex.getMessageKey())
+                .messageArgs(ex.getArgs())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
 }
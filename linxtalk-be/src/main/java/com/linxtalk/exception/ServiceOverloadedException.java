@@ -0,0 +1,18 @@
+package com.linxtalk.exception;
+
+import lombok.Getter;
+
+@Getter
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final String messageKey;
+    private final long retryAfterSeconds;
+    private final Object[] args;
+
+    public ServiceOverloadedException(String messageKey, long retryAfterSeconds, Object... args) {
+        super(messageKey);
+        this.messageKey = messageKey;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.args = args;
+    }
+}
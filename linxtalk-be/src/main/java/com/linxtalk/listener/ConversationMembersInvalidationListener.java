@@ -0,0 +1,30 @@
+package com.linxtalk.listener;
+
+import com.linxtalk.component.ConversationMembershipCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import static com.linxtalk.utils.Constant.CONVERSATION_MEMBERS_INVALIDATION_CHANNEL;
+
+@Component
+@RequiredArgsConstructor
+public class ConversationMembersInvalidationListener implements MessageListener {
+
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ConversationMembershipCache conversationMembershipCache;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CONVERSATION_MEMBERS_INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        conversationMembershipCache.onInvalidation(message.toString());
+    }
+}
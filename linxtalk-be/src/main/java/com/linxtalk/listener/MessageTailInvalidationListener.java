@@ -0,0 +1,30 @@
+package com.linxtalk.listener;
+
+import com.linxtalk.component.MessageTailCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import static com.linxtalk.utils.Constant.MESSAGE_TAIL_INVALIDATION_CHANNEL;
+
+@Component
+@RequiredArgsConstructor
+public class MessageTailInvalidationListener implements MessageListener {
+
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MessageTailCache messageTailCache;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(MESSAGE_TAIL_INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        messageTailCache.onInvalidation(message.toString());
+    }
+}
@@ -0,0 +1,19 @@
+package com.linxtalk.listener;
+
+import com.linxtalk.event.PresenceChangeEvent;
+import com.linxtalk.service.PresenceFanoutService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class PresenceEventListener {
+
+    private final PresenceFanoutService presenceFanoutService;
+
+    @EventListener
+    public void handlePresenceChangeEvent(PresenceChangeEvent event) {
+        presenceFanoutService.record(event);
+    }
+}
@@ -0,0 +1,43 @@
+package com.linxtalk.listener;
+
+import com.linxtalk.component.OnlineStatusCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import static com.linxtalk.utils.Constant.PRESENCE_INVALIDATION_CHANNEL;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceInvalidationListener implements MessageListener {
+
+    private final RedisMessageListenerContainer listenerContainer;
+    private final OnlineStatusCache onlineStatusCache;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(PRESENCE_INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // Payload format: <userId>:<publishedAtMs>
+        String payload = message.toString();
+        int separator = payload.lastIndexOf(':');
+        if (separator <= 0) return;
+
+        try {
+            String userId = payload.substring(0, separator);
+            long publishedAtMs = Long.parseLong(payload.substring(separator + 1));
+            onlineStatusCache.invalidate(userId, publishedAtMs);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed presence invalidation: {}", payload);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.linxtalk.listener;
 
 import com.linxtalk.service.PresenceService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.listener.KeyExpirationEventMessageListener;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
@@ -11,6 +12,7 @@ import static com.linxtalk.utils.Constant.PRESENCE_OFFLINE_KEY;
 import static com.linxtalk.utils.Constant.PRESENCE_SESSION_KEY_PREFIX;
 
 @Component
+@ConditionalOnProperty(name = "presence.expiry.mode", havingValue = "keyspace", matchIfMissing = true)
 @Slf4j
 public class RedisKeyExpirationListener extends KeyExpirationEventMessageListener {
 
@@ -29,6 +31,8 @@ public class RedisKeyExpirationListener extends KeyExpirationEventMessageListene
         // Case 1: Pending Offline Update Expired
         if (expiredKey.startsWith(PRESENCE_OFFLINE_KEY)) {
             String userId = expiredKey.replace(PRESENCE_OFFLINE_KEY, "");
+            // Every node receives the notification; only the one that claims it finalizes the transition
+            if (!presenceService.claimOfflineTransition(userId)) return;
             log.info("Received offline expiration event for user: {}. Finalizing DB update.", userId);
             presenceService.performOfflineDatabaseUpdate(userId);
         } 
@@ -0,0 +1,38 @@
+package com.linxtalk.listener;
+
+import com.linxtalk.service.TokenBlacklistService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import static com.linxtalk.utils.Constant.TOKEN_BLACKLIST_CHANNEL;
+
+@Component
+@RequiredArgsConstructor
+public class TokenBlacklistListener implements MessageListener, SubscriptionListener {
+
+    private final RedisMessageListenerContainer listenerContainer;
+    private final TokenBlacklistService tokenBlacklistService;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(TOKEN_BLACKLIST_CHANNEL));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // Payload: the ID of the revoked token
+        tokenBlacklistService.onRevoked(message.toString());
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        // Also called when the container resubscribes after a lost connection: revocations published meanwhile were missed
+        tokenBlacklistService.requestRebuild();
+    }
+}
@@ -1,5 +1,6 @@
 package com.linxtalk.listener;
 
+import com.linxtalk.component.ConversationMembershipCache;
 import com.linxtalk.enumeration.ConversationType;
 import com.linxtalk.event.UserUpdateEvent;
 import com.linxtalk.repository.ConversationMemberRepository;
@@ -19,6 +20,7 @@ public class UserEventListener {
 
     private final FriendRepository friendRepository;
     private final ConversationMemberRepository conversationMemberRepository;
+    private final ConversationMembershipCache conversationMembershipCache;
 
     @Async
     @EventListener
@@ -46,6 +48,8 @@ public class UserEventListener {
                 }
             }
 
+            // Messages are sent with the profile cached per conversation
+            conversationMembershipCache.invalidateUser(event.getUserId());
             log.info("Successfully synced profile updates for userId: {}", event.getUserId());
         } catch (Exception e) {
             log.error("Failed to update records via repository for userId: {}", event.getUserId(), e);
@@ -1,5 +1,6 @@
 package com.linxtalk.listener;
 
+import com.linxtalk.service.PresenceHeartbeatService;
 import com.linxtalk.service.PresenceService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.event.EventListener;
@@ -15,6 +16,7 @@ import java.security.Principal;
 public class WebSocketEventListener {
 
     private final PresenceService presenceService;
+    private final PresenceHeartbeatService presenceHeartbeatService;
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
@@ -36,6 +38,7 @@ public class WebSocketEventListener {
         
         if (user != null && sessionId != null) {
             String userId = user.getName();
+            presenceHeartbeatService.forget(sessionId);
             presenceService.removeUserPresence(userId, sessionId);
         }
     }
@@ -24,6 +24,24 @@ public class ConversationMapper {
                 .build();
     }
 
+    /**
+     * Maps a member row that carries its own copy of the conversation's last message.
+     */
+    public ConversationResponse toResponse(ConversationMember member, String name, String avatarUrl) {
+        if (member == null) return null;
+        return ConversationResponse.builder()
+                .id(member.getConversationId())
+                .type(member.getConversationType())
+                .name(name)
+                .avatarUrl(avatarUrl)
+                .lastMessage(mapLastMessage(member.getLastMessage()))
+                .unreadCount(member.getUnreadCount())
+                .isPinned(member.getIsPinned())
+                .isMuted(member.getIsMuted())
+                .updatedAt(member.getLastMessageAt() != null ? member.getLastMessageAt() : member.getJoinedAt())
+                .build();
+    }
+
     private ConversationResponse.LastMessageResponse mapLastMessage(Conversation.LastMessage lastMessage) {
         if (lastMessage == null) return null;
 
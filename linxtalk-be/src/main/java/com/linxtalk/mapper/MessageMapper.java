@@ -0,0 +1,32 @@
+package com.linxtalk.mapper;
+
+import com.linxtalk.dto.response.MessageResponse;
+import com.linxtalk.entity.Message;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MessageMapper {
+
+    public MessageResponse toResponse(Message message) {
+        return toResponse(message, null);
+    }
+
+    public MessageResponse toResponse(Message message, String clientMessageId) {
+        if (message == null) return null;
+        return MessageResponse.builder()
+                .id(message.getId())
+                .clientMessageId(clientMessageId)
+                .conversationId(message.getConversationId())
+                .senderId(message.getSenderId())
+                .senderName(message.getSenderName())
+                .senderAvatarUrl(message.getSenderAvatarUrl())
+                .type(message.getType())
+                .content(message.getContent())
+                .mentionedUserIds(message.getMentionedUserIds())
+                .status(message.getStatus())
+                .isEdited(message.getIsEdited())
+                .isDeleted(message.getIsDeleted())
+                .createdAt(message.getCreatedAt())
+                .build();
+    }
+}
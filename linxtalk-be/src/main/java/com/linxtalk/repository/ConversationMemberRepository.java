@@ -2,8 +2,8 @@ package com.linxtalk.repository;
 
 import com.linxtalk.entity.ConversationMember;
 import com.linxtalk.enumeration.ConversationType;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.Update;
@@ -14,7 +14,9 @@ import java.util.Optional;
 
 @Repository
 public interface ConversationMemberRepository extends MongoRepository<ConversationMember, String> {
-    Page<ConversationMember> findByUserIdAndIsActiveTrue(String userId, Pageable pageable);
+    Slice<ConversationMember> findByUserIdAndIsActiveTrue(String userId, Pageable pageable);
+
+    long countByUserIdAndIsActiveTrue(String userId);
 
     Optional<ConversationMember> findByConversationIdAndUserIdAndIsActiveTrue(String conversationId, String userId);
 
@@ -31,15 +33,15 @@ public interface ConversationMemberRepository extends MongoRepository<Conversati
     void updateAvatarByUserId(String userId, String avatarUrl);
 
     @Query("{ 'conversationType' : ?0 , 'otherUserId' :  ?1  }")
-    @Update("{ '$set' : { 'otherDisplayName' : ?2, 'otherAvatarUrl' : ?3 } }")
+    @Update("{ '$set' : { 'otherDisplayName' : ?2, 'otherAvatarUrl' : ?3 }, '$currentDate' : { 'updatedAt' : true } }")
     void updateOtherProfileByUserId(ConversationType conversationType, String excludeUserId, String displayName, String avatarUrl);
 
    @Query("{ 'conversationType' : ?0 , 'otherUserId' :  ?1  }")
-    @Update("{ '$set' : { 'otherDisplayName' : ?2 } }")
+    @Update("{ '$set' : { 'otherDisplayName' : ?2 }, '$currentDate' : { 'updatedAt' : true } }")
     void updateOtherDisplayNameByUserId(ConversationType conversationType, String excludeUserId, String displayName);
 
    @Query("{ 'conversationType' : ?0 , 'otherUserId' :  ?1  }")
-    @Update("{ '$set' : { 'otherAvatarUrl' : ?2 } }")
+    @Update("{ '$set' : { 'otherAvatarUrl' : ?2 }, '$currentDate' : { 'updatedAt' : true } }")
     void updateOtherAvatarByUserId(ConversationType conversationType, String excludeUserId, String avatarUrl);
 
 
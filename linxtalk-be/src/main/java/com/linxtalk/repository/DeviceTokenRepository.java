@@ -2,8 +2,11 @@ package com.linxtalk.repository;
 
 import com.linxtalk.entity.DeviceToken;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
@@ -13,6 +16,12 @@ public interface DeviceTokenRepository extends MongoRepository<DeviceToken, Stri
 
     Optional<DeviceToken> findByRefreshToken(String refreshToken);
 
+    // Compare-and-set: only the holder of the current refresh token can rotate it, and only once
+    @Query("{ '_id' : ?0, 'rotation' : ?1, 'refreshTokenHash' : ?2 }")
+    @Update("{ '$set' : { 'rotation' : ?3, 'refreshTokenHash' : ?4, 'previousRefreshTokenHash' : ?2, 'rotatedAt' : ?5, 'refreshTokenExpiresAt' : ?6, 'lastActiveAt' : ?5 } }")
+    long rotateRefreshToken(String id, long currentRotation, String currentRefreshTokenHash,
+                            long newRotation, String newRefreshTokenHash, Instant rotatedAt, Instant refreshTokenExpiresAt);
+
     void deleteByUserIdAndDeviceId(String userId, String deviceId);
 
 
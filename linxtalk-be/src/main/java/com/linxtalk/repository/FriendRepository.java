@@ -8,6 +8,9 @@ import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 
 @Repository
 public interface FriendRepository extends MongoRepository<Friend, String> {
@@ -25,4 +28,6 @@ public interface FriendRepository extends MongoRepository<Friend, String> {
     void updateAvatarByFriendId(String friendId, String avatarUrl);
 
     void deleteAllByFriendId(String friendId);
+
+    List<Friend> findByUserIdAndFriendIdIn(String userId, Collection<String> friendIds);
 }
@@ -2,8 +2,8 @@ package com.linxtalk.repository;
 
 import com.linxtalk.entity.FriendRequest;
 import com.linxtalk.enumeration.FriendRequestStatus;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
@@ -14,5 +14,7 @@ public interface FriendRequestRepository extends MongoRepository<FriendRequest,
 
     Optional<FriendRequest> findBySenderIdAndReceiverId(String id, String currentUserId);
 
-    Page<FriendRequest> findByReceiverIdAndStatus(String receiverId, FriendRequestStatus status, Pageable pageable);
+    Slice<FriendRequest> findByReceiverIdAndStatus(String receiverId, FriendRequestStatus status, Pageable pageable);
+
+    long countByReceiverIdAndStatus(String receiverId, FriendRequestStatus status);
 }
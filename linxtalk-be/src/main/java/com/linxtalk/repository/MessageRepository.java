@@ -0,0 +1,9 @@
+package com.linxtalk.repository;
+
+import com.linxtalk.entity.Message;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MessageRepository extends MongoRepository<Message, String> {
+}
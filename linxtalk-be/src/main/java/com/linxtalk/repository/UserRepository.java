@@ -16,6 +16,11 @@ public interface UserRepository extends MongoRepository<User, String> {
     @Update("{ '$set' : { 'lastSeenAt' : ?1 } }")
     void updateLastSeenAt(String userId, Instant lastSeenAt);
 
+    // Only replaces the hash it was computed from, so a concurrent password change is never overwritten
+    @Query("{ '_id' : ?0, 'password' : ?1 }")
+    @Update("{ '$set' : { 'password' : ?2 } }")
+    void updatePassword(String userId, String currentPassword, String newPassword);
+
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
@@ -1,24 +1,39 @@
 package com.linxtalk.repository.custom;
 
+import com.linxtalk.entity.Conversation;
 import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.Message;
 import com.linxtalk.enumeration.ConversationType;
+import com.linxtalk.utils.FnCommon;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 @RequiredArgsConstructor
 public class ConversationMemberRepositoryCustom {
     private final MongoTemplate mongoTemplate;
 
-    public Page<ConversationMember> getConversations(String userId, ConversationType conversationType, Boolean isActive, Pageable pageable) {
+    /**
+     * Get a page of conversation members without counting them: one extra row is fetched to tell whether a next page exists.
+     */
+    public Slice<ConversationMember> getConversations(String userId, ConversationType conversationType, Boolean isActive, Pageable pageable) {
         Query query = new Query();
         if (userId != null) {
             query.addCriteria(Criteria.where("userId").is(userId));
@@ -29,9 +44,201 @@ public class ConversationMemberRepositoryCustom {
         if (isActive != null) {
             query.addCriteria(Criteria.where("isActive").is(isActive));
         }
-        long totalElements = mongoTemplate.count(query, ConversationMember.class);
-        query.with(pageable);
+        query.with(pageable).limit(pageable.getPageSize() + 1);
         List<ConversationMember> conversationMembers = mongoTemplate.find(query, ConversationMember.class);
-        return new PageImpl<>(conversationMembers, pageable, totalElements);
+        return FnCommon.toSlice(conversationMembers, pageable);
+    }
+
+    /**
+     * Moves lastMessageAt and the lastMessage preview forward for every active member of many conversations
+     * with a single unordered bulk write, so the inbox can be listed from member rows alone.
+     * @param lastMessageByConversationId Map of conversationId to its newest message.
+     */
+    public void bulkUpdateLastMessage(Map<String, Message> lastMessageByConversationId) {
+        if (lastMessageByConversationId.isEmpty()) return;
+
+        Instant now = Instant.now();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConversationMember.class);
+        lastMessageByConversationId.forEach((conversationId, message) -> bulkOperations.updateMulti(
+                // lte: the unread increment may already have moved lastMessageAt to this message
+                new Query(Criteria.where("conversationId").is(conversationId)
+                        .and("isActive").is(true)
+                        .orOperator(
+                                Criteria.where("lastMessageAt").is(null),
+                                Criteria.where("lastMessageAt").lte(message.getCreatedAt()))),
+                new Update()
+                        .set("lastMessageAt", message.getCreatedAt())
+                        .set("lastMessage", Conversation.LastMessage.of(message))
+                        .set("updatedAt", now)));
+        bulkOperations.execute();
+    }
+
+    /**
+     * Increments unreadCount of the active members of many conversations with a single unordered bulk write.
+     * Members who sent some of the new messages are only incremented by the messages sent by others.
+     * lastMessageAt is raised in the same update, so a member row always counts exactly the messages
+     * up to its lastMessageAt; UnreadCountReconciliationService relies on that.
+     * @param sentCountBySenderByConversationId Map of conversationId to the number of new messages per sender.
+     * @param lastMessageByConversationId Map of conversationId to its newest message.
+     */
+    public void bulkIncrementUnreadCount(Map<String, Map<String, Integer>> sentCountBySenderByConversationId,
+                                         Map<String, Message> lastMessageByConversationId) {
+        if (sentCountBySenderByConversationId.isEmpty()) return;
+
+        Instant now = Instant.now();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConversationMember.class);
+        sentCountBySenderByConversationId.forEach((conversationId, sentCountBySender) -> {
+            int total = sentCountBySender.values().stream().mapToInt(Integer::intValue).sum();
+            Instant lastMessageAt = lastMessageByConversationId.get(conversationId).getCreatedAt();
+            bulkOperations.updateMulti(
+                    new Query(Criteria.where("conversationId").is(conversationId)
+                            .and("isActive").is(true)
+                            .and("userId").nin(sentCountBySender.keySet())),
+                    new Update().inc("unreadCount", total).max("lastMessageAt", lastMessageAt).set("updatedAt", now));
+            sentCountBySender.forEach((senderId, sent) -> {
+                if (total > sent) {
+                    bulkOperations.updateOne(
+                            new Query(Criteria.where("conversationId").is(conversationId)
+                                    .and("userId").is(senderId)
+                                    .and("isActive").is(true)),
+                            new Update().inc("unreadCount", total - sent).max("lastMessageAt", lastMessageAt).set("updatedAt", now));
+                }
+            });
+        });
+        bulkOperations.execute();
+    }
+
+    /**
+     * Get the unread state of every active member of a conversation: only the fields needed to recount
+     * unread messages are read.
+     */
+    public List<ConversationMember> getUnreadStates(String conversationId) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId).and("isActive").is(true));
+        query.fields().include("userId", "unreadCount", "lastReadAt", "joinedAt", "lastMessageAt");
+        return mongoTemplate.find(query, ConversationMember.class);
+    }
+
+    /**
+     * Get the member rows of a user changed after the given position, including inactive ones,
+     * in (updatedAt, _id) order so a sync can resume exactly after the last row it returned.
+     * Served by the user_updated_id index.
+     * @param since updatedAt of the last row seen, or {@code null} for every active row.
+     * @param afterId ID of the last row seen, or {@code null} to include every row at {@code since}.
+     */
+    public List<ConversationMember> getChangedSince(String userId, Instant since, String afterId, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (since == null) {
+            criteria.and("isActive").is(true);
+        } else if (afterId == null) {
+            criteria.and("updatedAt").gte(since);
+        } else {
+            criteria.orOperator(
+                    Criteria.where("updatedAt").gt(since),
+                    Criteria.where("updatedAt").is(since).and("_id").gt(new ObjectId(afterId)));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, ConversationMember.class);
+    }
+
+    /**
+     * Sets unreadCount only if neither it nor lastMessageAt changed since they were read,
+     * so an increment that lands after the recount is never overwritten.
+     * @return {@code true} if the counter was updated.
+     */
+    public boolean compareAndSetUnreadCount(String memberId, int expected, Instant expectedLastMessageAt, int actual) {
+        return mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(memberId)
+                        .and("unreadCount").is(expected)
+                        .and("lastMessageAt").is(expectedLastMessageAt)),
+                new Update().set("unreadCount", actual).set("updatedAt", Instant.now()),
+                ConversationMember.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * Get the unread counter of an active member together with the lastMessageAt it covers.
+     * Both come from the same read, so the counter is exactly the unread messages up to that lastMessageAt.
+     */
+    public ConversationMember getUnreadState(String conversationId, String userId) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId)
+                .and("userId").is(userId)
+                .and("isActive").is(true));
+        query.fields().include("unreadCount", "lastMessageAt");
+        return mongoTemplate.findOne(query, ConversationMember.class);
+    }
+
+    /**
+     * Moves read watermarks forward with a single unordered bulk write.
+     * A watermark is skipped when the stored one is already at or past it.
+     * unreadCount is adjusted relative to its current value, never overwritten, so increments
+     * that land between the recount and this write are kept.
+     * @param watermarks The new watermarks.
+     */
+    public void bulkUpdateReadWatermarks(List<ReadWatermark> watermarks) {
+        if (watermarks.isEmpty()) return;
+
+        Instant now = Instant.now();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConversationMember.class);
+        watermarks.forEach(watermark -> bulkOperations.updateOne(
+                new Query(Criteria.where("conversationId").is(watermark.conversationId())
+                        .and("userId").is(watermark.userId())
+                        .and("isActive").is(true)
+                        .orOperator(
+                                Criteria.where("lastReadAt").is(null),
+                                Criteria.where("lastReadAt").lt(watermark.lastReadAt()),
+                                Criteria.where("lastReadAt").is(watermark.lastReadAt())
+                                        .and("lastReadMessageId").lt(watermark.lastReadMessageId()))),
+                AggregationUpdate.update()
+                        .set("lastReadMessageId").toValue(new ObjectId(watermark.lastReadMessageId()))
+                        .set("lastReadAt").toValue(watermark.lastReadAt())
+                        // unreadCount = max(0, unreadCount + delta)
+                        .set("unreadCount").toValueOf(ConditionalOperators
+                                .when(ComparisonOperators.valueOf("unreadCount").greaterThanValue(-watermark.unreadDelta()))
+                                .thenValueOf(ArithmeticOperators.valueOf("unreadCount").add(watermark.unreadDelta()))
+                                .otherwise(0))
+                        .set("updatedAt").toValue(now)));
+        bulkOperations.execute();
+    }
+
+    /**
+     * Get the active members of a conversation, reading only userId, displayName and avatarUrl.
+     */
+    public List<ConversationMember> getActiveMemberProfiles(String conversationId) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId).and("isActive").is(true));
+        query.fields().include("userId", "displayName", "avatarUrl");
+        return mongoTemplate.find(query, ConversationMember.class);
+    }
+
+    /**
+     * Get the read watermark of every active member of a conversation, reading only userId and lastReadAt.
+     */
+    public List<ConversationMember> getReadWatermarks(String conversationId) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId).and("isActive").is(true));
+        query.fields().include("userId", "lastReadAt");
+        return mongoTemplate.find(query, ConversationMember.class);
+    }
+
+    /**
+     * Get active members whose watermark is at or after the given time, earliest first.
+     * Served by the conversation_last_read index.
+     */
+    public List<ConversationMember> getReaders(String conversationId, Instant readSince, int limit) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId)
+                .and("lastReadAt").gte(readSince)
+                .and("isActive").is(true))
+                .with(Sort.by(Sort.Direction.ASC, "lastReadAt"))
+                .limit(limit);
+        query.fields().include("userId", "displayName", "avatarUrl", "lastReadAt");
+        return mongoTemplate.find(query, ConversationMember.class);
+    }
+
+    /**
+     * A read watermark to store.
+     * @param unreadDelta Change of unreadCount: the unread messages after the new watermark minus the stored counter,
+     *                    both up to the same lastMessageAt.
+     */
+    public record ReadWatermark(String conversationId, String userId, String lastReadMessageId, Instant lastReadAt,
+                                int unreadDelta) {
     }
 }
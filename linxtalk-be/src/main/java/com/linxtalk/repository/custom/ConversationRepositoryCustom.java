@@ -0,0 +1,61 @@
+package com.linxtalk.repository.custom;
+
+import com.linxtalk.entity.Conversation;
+import com.linxtalk.entity.Message;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class ConversationRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Sets the last message of many conversations with a single unordered bulk write.
+     * A conversation is only updated when the message is newer than its current last message.
+     * @param lastMessageByConversationId Map of conversationId to its newest message.
+     */
+    public void bulkUpdateLastMessage(Map<String, Message> lastMessageByConversationId) {
+        if (lastMessageByConversationId.isEmpty()) return;
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        lastMessageByConversationId.forEach((conversationId, message) -> bulkOperations.updateOne(
+                new Query(Criteria.where("_id").is(conversationId).orOperator(
+                        Criteria.where("lastMessage.sentAt").is(null),
+                        Criteria.where("lastMessage.sentAt").lt(message.getCreatedAt()))),
+                new Update().set("lastMessage", Conversation.LastMessage.of(message)).set("updatedAt", message.getCreatedAt())));
+        bulkOperations.execute();
+    }
+
+    /**
+     * Get the IDs of conversations that received messages after the given position, ordered by
+     * (lastMessage.sentAt, _id) so a run can resume exactly after the last conversation it saw.
+     * Only the ID and the last message time are read. Served by the last_message_sent_id index.
+     * @param afterSentAt lastMessage.sentAt of the last conversation seen.
+     * @param afterId ID of the last conversation seen, or {@code null} to include every conversation at {@code afterSentAt}.
+     */
+    public List<Conversation> getWithMessagesAfter(Instant afterSentAt, String afterId, int limit) {
+        Criteria criteria = afterId == null
+                ? Criteria.where("lastMessage.sentAt").gte(afterSentAt)
+                : new Criteria().orOperator(
+                        Criteria.where("lastMessage.sentAt").gt(afterSentAt),
+                        Criteria.where("lastMessage.sentAt").is(afterSentAt).and("_id").gt(new ObjectId(afterId)));
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "lastMessage.sentAt", "_id"))
+                .limit(limit);
+        query.fields().include("lastMessage.sentAt");
+        return mongoTemplate.find(query, Conversation.class);
+    }
+}
@@ -1,16 +1,20 @@
 package com.linxtalk.repository.custom;
 
 import com.linxtalk.entity.Friend;
+import com.linxtalk.utils.FnCommon;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Repository
@@ -18,7 +22,21 @@ public class FriendRepositoryCustom {
 
     private final MongoTemplate mongoTemplate;
 
-    public Page<Friend> getFriends(String userId, Boolean hasChatted, Pageable pageable) {
+    /**
+     * Get a page of friends without counting them: one extra row is fetched to tell whether a next page exists.
+     */
+    public Slice<Friend> getFriends(String userId, Boolean hasChatted, Pageable pageable) {
+        Query query = friendsQuery(userId, hasChatted);
+        query.with(pageable).limit(pageable.getPageSize() + 1);
+        List<Friend> friends = mongoTemplate.find(query, Friend.class);
+        return FnCommon.toSlice(friends, pageable);
+    }
+
+    public long countFriends(String userId, Boolean hasChatted) {
+        return mongoTemplate.count(friendsQuery(userId, hasChatted), Friend.class);
+    }
+
+    private Query friendsQuery(String userId, Boolean hasChatted) {
         Query query = new Query();
         if (userId != null) {
             query.addCriteria(Criteria.where("userId").is(userId));
@@ -26,10 +44,29 @@ public class FriendRepositoryCustom {
         if (hasChatted != null) {
             query.addCriteria(Criteria.where("hasChatted").is(hasChatted));
         }
-        long totalElements = mongoTemplate.count(query, Friend.class);
+        return query;
+    }
 
-        query.with(pageable);
-        List<Friend> friends = mongoTemplate.find(query, Friend.class);
-        return new PageImpl<>(friends, pageable, totalElements);
+    /**
+     * Get the friend IDs of several users in one query, reading only the userId and friendId fields.
+     * @return The friend IDs by user ID. Users without friends are absent.
+     */
+    public Map<String, List<String>> getFriendIdsByUserIds(Collection<String> userIds) {
+        Query query = new Query(Criteria.where("userId").in(userIds));
+        query.fields().include("userId").include("friendId");
+        Map<String, List<String>> friendIdsByUserId = new HashMap<>();
+        for (Friend friend : mongoTemplate.find(query, Friend.class)) {
+            friendIdsByUserId.computeIfAbsent(friend.getUserId(), key -> new ArrayList<>()).add(friend.getFriendId());
+        }
+        return friendIdsByUserId;
+    }
+
+    /**
+     * Get every friend of a user with only the friendId and interactionScore fields.
+     */
+    public List<Friend> getFriendScores(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId));
+        query.fields().include("friendId").include("interactionScore");
+        return mongoTemplate.find(query, Friend.class);
     }
 }
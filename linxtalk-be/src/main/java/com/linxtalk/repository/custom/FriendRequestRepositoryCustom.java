@@ -2,11 +2,11 @@ package com.linxtalk.repository.custom;
 
 import com.linxtalk.entity.FriendRequest;
 import com.linxtalk.enumeration.FriendRequestStatus;
+import com.linxtalk.utils.FnCommon;
 import io.micrometer.common.util.StringUtils;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -20,7 +20,10 @@ public class FriendRequestRepositoryCustom {
 
     private final MongoTemplate mongoTemplate;
 
-    public Page<FriendRequest> getFriendRequests(String senderId, String receiverId, FriendRequestStatus friendRequestStatus, Pageable pageable) {
+    /**
+     * Get a page of friend requests without counting them: one extra row is fetched to tell whether a next page exists.
+     */
+    public Slice<FriendRequest> getFriendRequests(String senderId, String receiverId, FriendRequestStatus friendRequestStatus, Pageable pageable) {
         Query query = new Query();
         if (StringUtils.isNotBlank(senderId)) {
             query.addCriteria(Criteria.where("senderId").is(senderId));
@@ -32,12 +35,10 @@ public class FriendRequestRepositoryCustom {
             query.addCriteria(Criteria.where("status").is(friendRequestStatus));
         }
 
-        long totalElements = mongoTemplate.count(query, FriendRequest.class);
-
-        query.with(pageable);
+        query.with(pageable).limit(pageable.getPageSize() + 1);
 
         List<FriendRequest> friendRequests = mongoTemplate.find(query, FriendRequest.class);
 
-        return new PageImpl<>(friendRequests, pageable, totalElements);
+        return FnCommon.toSlice(friendRequests, pageable);
     }
 }
@@ -0,0 +1,126 @@
+package com.linxtalk.repository.custom;
+
+import com.linxtalk.entity.Message;
+import com.linxtalk.utils.MessageCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class MessageRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Inserts messages with a single ordered insertMany, preserving the given order.
+     * @param messages The messages to insert, with IDs already assigned.
+     */
+    public void insertAll(List<Message> messages) {
+        if (messages.isEmpty()) return;
+        mongoTemplate.insert(messages, Message.class);
+    }
+
+    /**
+     * Saves messages one by one. Safe to repeat after a partially applied insertMany since IDs are preassigned.
+     * @param messages The messages to save.
+     */
+    public void saveAll(List<Message> messages) {
+        messages.forEach(mongoTemplate::save);
+    }
+
+    /**
+     * Get messages older than the cursor, newest first, walking the conversation_timestamp_id index.
+     * @param conversationId The ID of the conversation.
+     * @param cursor The exclusive upper bound, or {@code null} to start from the newest message.
+     * @param limit The maximum number of messages to return.
+     */
+    public List<Message> findBefore(String conversationId, MessageCursor cursor, int limit) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        if (cursor != null) {
+            criteria.orOperator(
+                    Criteria.where("createdAt").lt(cursor.createdAt()),
+                    Criteria.where("createdAt").is(cursor.createdAt()).and("_id").lt(cursor.id()));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    /**
+     * Get messages newer than the cursor, oldest first.
+     * @param conversationId The ID of the conversation.
+     * @param cursor The exclusive lower bound.
+     * @param limit The maximum number of messages to return.
+     */
+    public List<Message> findAfter(String conversationId, MessageCursor cursor, int limit) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId).orOperator(
+                Criteria.where("createdAt").gt(cursor.createdAt()),
+                Criteria.where("createdAt").is(cursor.createdAt()).and("_id").gt(cursor.id()));
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    /**
+     * Counts messages sent by others after the given time, stopping at {@code cap}.
+     * Served by the conversation_timestamp_id index.
+     * @param after Exclusive lower bound, or {@code null} to count from the first message.
+     * @param upTo Inclusive upper bound, or {@code null} to count up to the newest message.
+     */
+    public long countUnread(String conversationId, String userId, Instant after, Instant upTo, int cap) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId).and("senderId").ne(userId);
+        if (after != null || upTo != null) {
+            Criteria createdAt = criteria.and("createdAt");
+            if (after != null) createdAt.gt(after);
+            if (upTo != null) createdAt.lte(upTo);
+        }
+        return mongoTemplate.count(new Query(criteria).limit(cap), Message.class);
+    }
+
+    /**
+     * Get the newest messages of a conversation in a time range, newest first, reading only senderId and createdAt.
+     * Served by the conversation_timestamp_id index.
+     * @param after Exclusive lower bound, or {@code null} to read from the first message.
+     * @param upTo Inclusive upper bound.
+     */
+    public List<Message> findSendersBetween(String conversationId, Instant after, Instant upTo, int limit) {
+        Criteria createdAt = Criteria.where("conversationId").is(conversationId).and("createdAt").lte(upTo);
+        if (after != null) createdAt.gt(after);
+        Query query = new Query(createdAt)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+                .limit(limit);
+        query.fields().include("senderId", "createdAt");
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    /**
+     * Get the messages with the given IDs, reading only conversationId, senderId and status.
+     */
+    public List<Message> findStatusByIdIn(Collection<String> ids) {
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("conversationId", "senderId", "status");
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    /**
+     * Moves messages to {@code status} with one updateMulti. The status guard keeps transitions monotonic
+     * when several nodes apply acknowledgements concurrently.
+     */
+    public void updateStatus(Collection<String> ids, Collection<Message.MessageStatus> fromStatuses, Message.MessageStatus status) {
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("_id").in(ids).and("status").in(fromStatuses)),
+                new Update().set("status", status),
+                Message.class);
+    }
+}
@@ -0,0 +1,35 @@
+package com.linxtalk.repository.custom;
+
+import com.linxtalk.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class UserRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Advances lastSeenAt for many users with a single unordered bulk write.
+     * A value older than the stored one is ignored, so a retried flush never moves it back.
+     * @param lastSeenByUserId Map of userId to lastSeenAt.
+     */
+    public void bulkUpdateLastSeenAt(Map<String, Instant> lastSeenByUserId) {
+        if (lastSeenByUserId.isEmpty()) return;
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        lastSeenByUserId.forEach((userId, lastSeenAt) -> bulkOperations.updateOne(
+                new Query(Criteria.where("_id").is(userId)),
+                new Update().max("lastSeenAt", lastSeenAt)));
+        bulkOperations.execute();
+    }
+}
@@ -31,12 +31,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             String token = extractTokenFromHeader(request);
-            String userId = extractUserIdFromToken(token);
+            VerifiedClaims claims = verifyAccessToken(token);
 
-            if (token != null && !jwtUtil.isTokenExpired(token) && jwtUtil.isAccessToken(token)
-                    && !tokenBlacklistService.isBlacklisted(token) && userId != null
+            if (claims != null && claims.userId() != null
+                    && !tokenBlacklistService.isBlacklisted(token, claims)
                     && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userId,
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(claims.userId(),
                         null,
                         Collections.emptyList());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -58,12 +58,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return null;
     }
 
-    private String extractUserIdFromToken(String token) {
+    /**
+     * Parses the token once and returns its claims when it is an unexpired access token, {@code null} otherwise.
+     */
+    private VerifiedClaims verifyAccessToken(String token) {
         if (token == null) {
             return null;
         }
         try {
-            return jwtUtil.extractUserId(token);
+            VerifiedClaims claims = jwtUtil.verify(token);
+            return !claims.isExpired() && claims.isAccessToken() ? claims : null;
         } catch (Exception e) {
             return null;
         }
@@ -1,36 +1,82 @@
 package com.linxtalk.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.linxtalk.enumeration.TokenType;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.Getter;
+import org.jspecify.annotations.NonNull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
+    private static final String DEVICE_TOKEN_ID_CLAIM = "did";
+    private static final String ROTATION_CLAIM = "rot";
+
     private final SecretKey secretKey;
+    private final JwtParser jwtParser;
     private final long accessTokenExpiration;
     @Getter
     private final long refreshTokenExpiration;
+    // Key: SHA-256 of the token. Entries expire with the token, so a cached token is never accepted past its exp.
+    private final Cache<String, VerifiedClaims> verifiedClaims;
 
     public JwtUtil(@Value("${jwt.secret}") String secret,
             @Value("${jwt.access-token-expiration}") long accessTokenExpiration,
-            @Value("${jwt.refresh-token-expiration}") long refreshTokenExpiration) {
+            @Value("${jwt.refresh-token-expiration}") long refreshTokenExpiration,
+            @Value("${jwt.claims-cache.max-size:100000}") long claimsCacheMaxSize,
+            MeterRegistry meterRegistry) {
         this.secretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(secretKey)
+                .build();
         this.accessTokenExpiration = accessTokenExpiration;
         this.refreshTokenExpiration = refreshTokenExpiration;
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedClaims>() {
+                    @Override
+                    public long expireAfterCreate(@NonNull String key, @NonNull VerifiedClaims claims, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), claims.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(@NonNull String key, @NonNull VerifiedClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(@NonNull String key, @NonNull VerifiedClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt.claims");
     }
 
     public String generateAccessToken(String userId) {
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(userId)
                 .claim("type", TokenType.ACCESS_TOKEN.getValue())
                 .issuedAt(new Date())
@@ -39,41 +85,66 @@ public class JwtUtil {
                 .compact();
     }
 
-    public String generateRefreshToken(String userId) {
+    /**
+     * Generate a refresh token bound to a device token. The token only depends on its arguments,
+     * so the same rotation can be issued again from what the device token stores.
+     * @param userId The ID of the user.
+     * @param deviceTokenId The ID of the device token the refresh token is stored on.
+     * @param rotation The rotation counter, which the device token must hold for the refresh token to be accepted.
+     * @param issuedAt The issue time, in whole seconds.
+     * @param expiresAt The expiration time, in whole seconds.
+     * @return The compact token.
+     */
+    public String generateRefreshToken(String userId, String deviceTokenId, long rotation, Instant issuedAt, Instant expiresAt) {
         return Jwts.builder()
+                .id(deviceTokenId + "-" + rotation)
                 .subject(userId)
                 .claim("type", TokenType.REFRESH_TOKEN.getValue())
-                .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
+                .claim(DEVICE_TOKEN_ID_CLAIM, deviceTokenId)
+                .claim(ROTATION_CLAIM, rotation)
+                .issuedAt(Date.from(issuedAt))
+                .expiration(Date.from(expiresAt))
                 .signWith(secretKey)
                 .compact();
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
+    /**
+     * Verifies a token once and returns its claims. Tokens seen before are served from the claims cache
+     * without verifying the signature again.
+     * @param token The compact token.
+     * @return The verified claims.
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, expired or its signature is invalid.
+     */
+    public VerifiedClaims verify(String token) {
+        String key = hash(token);
+        VerifiedClaims cached = verifiedClaims.getIfPresent(key);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        VerifiedClaims claims = toVerifiedClaims(jwtParser.parseSignedClaims(token).getPayload(), key);
+        verifiedClaims.put(key, claims);
+        return claims;
     }
 
     public String extractUserId(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).userId();
     }
 
     public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return verify(token).isExpired();
     }
 
     public long getRemainingExpiration(String token) {
-        Date expiration = extractExpiration(token);
-        return expiration.getTime() - System.currentTimeMillis();
+        return verify(token).expiresAt().toEpochMilli() - System.currentTimeMillis();
     }
 
     public TokenType extractTokenType(String token) {
-        String type = extractClaim(token, claims -> claims.get("type", String.class));
-        return TokenType.valueOf(type.toUpperCase() + "_TOKEN");
+        TokenType type = verify(token).type();
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown token type");
+        }
+        return type;
     }
 
     public boolean isAccessToken(String token) {
@@ -92,11 +163,34 @@ public class JwtUtil {
         }
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * SHA-256 of a token, URL-safe base64 encoded, for use as a cache or Redis key instead of the token itself.
+     */
+    public static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static VerifiedClaims toVerifiedClaims(Claims claims, String tokenHash) {
+        return new VerifiedClaims(
+                claims.getId() != null ? claims.getId() : tokenHash,
+                claims.getSubject(),
+                toTokenType(claims.get("type", String.class)),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration().toInstant(),
+                claims.get(DEVICE_TOKEN_ID_CLAIM, String.class),
+                claims.get(ROTATION_CLAIM, Long.class));
+    }
+
+    private static TokenType toTokenType(String type) {
+        if (type == null) return null;
+        for (TokenType tokenType : TokenType.values()) {
+            if (tokenType.getValue().equalsIgnoreCase(type)) return tokenType;
+        }
+        return null;
     }
 }
@@ -0,0 +1,31 @@
+package com.linxtalk.security;
+
+import com.linxtalk.enumeration.TokenType;
+
+import java.time.Instant;
+
+/**
+ * Claims of a token whose signature has been verified.
+ * @param tokenId The jti claim, or the SHA-256 of the token for tokens issued without one.
+ * @param userId The subject.
+ * @param type The token type, or {@code null} when the type claim is missing or unknown.
+ * @param issuedAt The issue time.
+ * @param expiresAt The expiration time.
+ * @param deviceTokenId The device token a refresh token belongs to, or {@code null} for access tokens and legacy refresh tokens.
+ * @param rotation The rotation counter of a refresh token, or {@code null} when {@code deviceTokenId} is.
+ */
+public record VerifiedClaims(String tokenId, String userId, TokenType type, Instant issuedAt, Instant expiresAt,
+                             String deviceTokenId, Long rotation) {
+
+    public boolean isExpired() {
+        return !expiresAt.isAfter(Instant.now());
+    }
+
+    public boolean isAccessToken() {
+        return type == TokenType.ACCESS_TOKEN;
+    }
+
+    public boolean isRefreshToken() {
+        return type == TokenType.REFRESH_TOKEN;
+    }
+}
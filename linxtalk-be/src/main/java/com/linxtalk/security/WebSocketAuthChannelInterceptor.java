@@ -1,6 +1,6 @@
 package com.linxtalk.security;
 
-import com.linxtalk.service.PresenceService;
+import com.linxtalk.service.PresenceHeartbeatService;
 import com.linxtalk.service.TokenBlacklistService;
 import lombok.RequiredArgsConstructor;
 import org.jspecify.annotations.NonNull;
@@ -25,7 +25,7 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
 
     private final JwtUtil jwtUtil;
     private final TokenBlacklistService tokenBlacklistService;
-    private final PresenceService presenceService;
+    private final PresenceHeartbeatService presenceHeartbeatService;
 
     @Override
     public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
@@ -36,18 +36,18 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
 
         if (StompCommand.CONNECT.equals(accessor.getCommand())) {
             String token = extractBearerToken(accessor);
-            if (!isValidAccessToken(token)) {
+            VerifiedClaims claims = verifyAccessToken(token);
+            if (claims == null) {
                 throw new BadCredentialsException("Invalid websocket access token");
             }
 
-            String userId = jwtUtil.extractUserId(token);
             UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(userId, null, Collections.emptyList());
+                    new UsernamePasswordAuthenticationToken(claims.userId(), null, Collections.emptyList());
             accessor.setUser(authentication);
         }
 
         if (SimpMessageType.HEARTBEAT.equals(accessor.getMessageType()) && accessor.getUser() != null) {
-            presenceService.refreshSessionHeartbeat(accessor.getUser().getName(), accessor.getSessionId());
+            presenceHeartbeatService.markSeen(accessor.getUser().getName(), accessor.getSessionId());
         }
 
         return message;
@@ -66,19 +66,19 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
         return null;
     }
 
-    private boolean isValidAccessToken(String token) {
+    private VerifiedClaims verifyAccessToken(String token) {
         if (!StringUtils.hasText(token)) {
-            return false;
+            return null;
         }
 
         try {
-            return !jwtUtil.isTokenExpired(token)
-                    && jwtUtil.isAccessToken(token)
-                    && !tokenBlacklistService.isBlacklisted(token);
+            VerifiedClaims claims = jwtUtil.verify(token);
+            return !claims.isExpired()
+                    && claims.isAccessToken()
+                    && claims.userId() != null
+                    && !tokenBlacklistService.isBlacklisted(token, claims) ? claims : null;
         } catch (Exception ignored) {
-            return false;
+            return null;
         }
     }
 }
-
-
@@ -1,9 +1,6 @@
 package com.linxtalk.service;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.gson.GsonFactory;
 import com.linxtalk.dto.request.*;
 import com.linxtalk.dto.response.AuthResponse;
 import com.linxtalk.entity.DeviceToken;
@@ -14,17 +11,18 @@ import com.linxtalk.exception.LimitExceededException;
 import com.linxtalk.repository.DeviceTokenRepository;
 import com.linxtalk.repository.UserRepository;
 import com.linxtalk.security.JwtUtil;
+import com.linxtalk.security.VerifiedClaims;
 import com.linxtalk.utils.Constant;
 import com.linxtalk.utils.FnCommon;
 import com.linxtalk.utils.MessageError;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.Collections;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Service
@@ -33,13 +31,17 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final DeviceTokenRepository deviceTokenRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtUtil jwtUtil;
     private final TokenBlacklistService tokenBlacklistService;
+    private final GoogleIdTokenService googleIdTokenService;
     private final com.linxtalk.mapper.AuthMapper authMapper;
 
-    @Value("${google.client-id}")
-    private String googleClientId;
+    @Value("${security.password.rehash-on-login:true}")
+    private boolean rehashOnLogin;
+
+    @Value("${security.refresh-token.reuse-grace-ms:10000}")
+    private long refreshTokenReuseGraceMs;
 
     public void register(RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
@@ -48,7 +50,7 @@ public class AuthService {
 
         User user = User.builder()
             .username(request.getUsername())
-            .password(passwordEncoder.encode(request.getPassword()))
+            .password(passwordHashingService.encode(request.getPassword()))
             .displayName(request.getDisplayName())
             .build();
 
@@ -59,13 +61,10 @@ public class AuthService {
         User user = userRepository.findByUsername(request.getUsername())
             .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_CREDENTIALS));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            throw new AuthenticationException(MessageError.INVALID_CREDENTIALS);
-        }
+        verifyPassword(user, request.getPassword());
 
         String accessToken = jwtUtil.generateAccessToken(user.getId());
-        String refreshToken = jwtUtil.generateRefreshToken(user.getId());
-        saveDeviceToken(user, request, refreshToken);
+        String refreshToken = saveDeviceToken(user, request);
 
         return authMapper.toAuthResponse(user, accessToken, refreshToken);
     }
@@ -74,16 +73,29 @@ public class AuthService {
         User user = userRepository.findByUsername(request.getUsername())
             .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_CREDENTIALS));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            throw new AuthenticationException(MessageError.INVALID_CREDENTIALS);
-        }
+        verifyPassword(user, request.getPassword());
 
-        String refreshToken = jwtUtil.generateRefreshToken(user.getId());
-        saveDeviceToken(user, request, refreshToken);
+        saveDeviceToken(user, request);
 
         return authMapper.toAuthResponse(user);
     }
 
+    /**
+     * Checks a password against the stored hash, and upgrades the hash in the background when it was made
+     * with a lower cost than the current encoder.
+     */
+    private void verifyPassword(User user, String rawPassword) {
+        if (user.getPassword() == null || !passwordHashingService.matches(rawPassword, user.getPassword())) {
+            throw new AuthenticationException(MessageError.INVALID_CREDENTIALS);
+        }
+
+        if (rehashOnLogin && passwordHashingService.needsRehash(user.getPassword())) {
+            String currentHash = user.getPassword();
+            passwordHashingService.rehashAsync(rawPassword,
+                    newHash -> userRepository.updatePassword(user.getId(), currentHash, newHash));
+        }
+    }
+
     public AuthResponse switchAccount(SwitchAccountRequest request) {
         User user;
 
@@ -101,22 +113,13 @@ public class AuthService {
             .findByUserIdAndDeviceId(user.getId(), request.getDeviceId())
             .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN));
 
-        String oldRefreshToken = deviceToken.getRefreshToken();
-
-        try {
-            if (jwtUtil.isTokenExpired(oldRefreshToken) || jwtUtil.isRefreshToken(oldRefreshToken)) {
-                throw new AuthenticationException(MessageError.SESSION_EXPIRED);
-            }
-        } catch (AuthenticationException e) {
-            throw e;
-        } catch (Exception e) {
+        if (isSessionExpired(deviceToken)) {
             throw new AuthenticationException(MessageError.SESSION_EXPIRED);
         }
 
         String newAccessToken = jwtUtil.generateAccessToken(user.getId());
-        String newRefreshToken = jwtUtil.generateRefreshToken(user.getId());
+        String newRefreshToken = issueRefreshToken(deviceToken);
 
-        deviceToken.setRefreshToken(newRefreshToken);
         deviceToken.setLastActiveAt(Instant.now());
         deviceTokenRepository.save(deviceToken);
 
@@ -137,37 +140,141 @@ public class AuthService {
         deviceTokenRepository.deleteByUserIdAndDeviceId(user.getId(), request.getDeviceId());
     }
 
+    /**
+     * Rotates a refresh token. The device token is found by the ID in the token's claims and rotated with a
+     * compare-and-set on its rotation counter and token hash. The token the current one replaced is still
+     * accepted for a short grace period and answered with the current token, so parallel refreshes from the
+     * same device do not sign it out. Any other token that was already rotated is treated as stolen and signs
+     * the device out.
+     */
     public AuthResponse refreshToken(RefreshTokenRequest request) {
         String refreshToken = request.getRefreshToken();
-        DeviceToken deviceToken = deviceTokenRepository.findByRefreshToken(refreshToken)
-            .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN));
-
+        VerifiedClaims claims;
         try {
-            if (jwtUtil.isTokenExpired(refreshToken) || jwtUtil.isRefreshToken(refreshToken)) {
-                deviceTokenRepository.delete(deviceToken);
-                throw new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN);
-            }
+            claims = jwtUtil.verify(refreshToken);
         } catch (Exception e) {
-            deviceTokenRepository.delete(deviceToken);
             throw new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN);
         }
+        if (claims.isExpired() || !claims.isRefreshToken()) {
+            throw new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN);
+        }
+        if (claims.deviceTokenId() == null) {
+            return refreshLegacyToken(refreshToken, claims);
+        }
 
-        String userId = jwtUtil.extractUserId(refreshToken);
+        String userId = claims.userId();
+        String refreshTokenHash = JwtUtil.hash(refreshToken);
+        long rotation = claims.rotation() + 1;
+        Instant rotatedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        Instant expiresAt = rotatedAt.plusMillis(jwtUtil.getRefreshTokenExpiration());
+        String newRefreshToken = jwtUtil.generateRefreshToken(userId, claims.deviceTokenId(), rotation, rotatedAt, expiresAt);
+        long rotated = deviceTokenRepository.rotateRefreshToken(
+            claims.deviceTokenId(),
+            claims.rotation(),
+            refreshTokenHash,
+            rotation,
+            JwtUtil.hash(newRefreshToken),
+            rotatedAt,
+            expiresAt);
+        if (rotated == 0) {
+            // The device was signed out, a parallel refresh rotated this token just now, or it is being replayed
+            newRefreshToken = reissueWithinGrace(claims, refreshTokenHash);
+        }
 
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN));
 
         String newAccessToken = jwtUtil.generateAccessToken(userId);
-        String newRefreshToken = jwtUtil.generateRefreshToken(userId);
 
-        deviceToken.setRefreshToken(newRefreshToken);
+        return authMapper.toAuthResponse(user, newAccessToken, newRefreshToken);
+    }
+
+    /**
+     * Answers a refresh with the token that was rotated out by the immediately previous rotation,
+     * within the grace period, with the current refresh token. Signs the device out otherwise.
+     * @return The current refresh token of the device.
+     */
+    private String reissueWithinGrace(VerifiedClaims claims, String refreshTokenHash) {
+        DeviceToken deviceToken = deviceTokenRepository.findById(claims.deviceTokenId())
+            .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN));
+
+        boolean previousRotation = deviceToken.getRotation() == claims.rotation() + 1
+            && refreshTokenHash.equals(deviceToken.getPreviousRefreshTokenHash())
+            && deviceToken.getRotatedAt() != null
+            && !Instant.now().isAfter(deviceToken.getRotatedAt().plusMillis(refreshTokenReuseGraceMs));
+        if (previousRotation) {
+            String currentRefreshToken = jwtUtil.generateRefreshToken(deviceToken.getUserId(), deviceToken.getId(),
+                deviceToken.getRotation(), deviceToken.getRotatedAt(), deviceToken.getRefreshTokenExpiresAt());
+            if (JwtUtil.hash(currentRefreshToken).equals(deviceToken.getRefreshTokenHash())) {
+                return currentRefreshToken;
+            }
+        }
+
+        deviceTokenRepository.deleteById(deviceToken.getId());
+        throw new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN);
+    }
+
+    /**
+     * Refreshes a token issued before rotation, which carries no device token ID, and moves its device token
+     * over to rotation.
+     */
+    private AuthResponse refreshLegacyToken(String refreshToken, VerifiedClaims claims) {
+        DeviceToken deviceToken = deviceTokenRepository.findByRefreshToken(refreshToken)
+            .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN));
+
+        User user = userRepository.findById(claims.userId())
+            .orElseThrow(() -> new AuthenticationException(MessageError.INVALID_REFRESH_TOKEN));
+
+        String newAccessToken = jwtUtil.generateAccessToken(user.getId());
+        String newRefreshToken = issueRefreshToken(deviceToken);
+
         deviceToken.setLastActiveAt(Instant.now());
         deviceTokenRepository.save(deviceToken);
 
         return authMapper.toAuthResponse(user, newAccessToken, newRefreshToken);
     }
 
-    private void saveDeviceToken(User user, LoginRequest request, String refreshToken) {
+    /**
+     * Issues the next refresh token of a device token and stores its hash on it. The caller saves the device token.
+     * @return The new refresh token.
+     */
+    private String issueRefreshToken(DeviceToken deviceToken) {
+        if (deviceToken.getId() == null) {
+            // The ID goes into the token, so it is assigned before the first save
+            deviceToken.setId(new ObjectId().toHexString());
+        }
+        long rotation = deviceToken.getRotation() + 1;
+        Instant rotatedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        Instant expiresAt = rotatedAt.plusMillis(jwtUtil.getRefreshTokenExpiration());
+        String refreshToken = jwtUtil.generateRefreshToken(deviceToken.getUserId(), deviceToken.getId(), rotation,
+            rotatedAt, expiresAt);
+
+        deviceToken.setRotation(rotation);
+        deviceToken.setRefreshTokenHash(JwtUtil.hash(refreshToken));
+        // A new session, or a legacy one moving over to rotation: there is no previous token to accept
+        deviceToken.setPreviousRefreshTokenHash(null);
+        deviceToken.setRotatedAt(rotatedAt);
+        deviceToken.setRefreshTokenExpiresAt(expiresAt);
+        deviceToken.setRefreshToken(null);
+        return refreshToken;
+    }
+
+    private boolean isSessionExpired(DeviceToken deviceToken) {
+        if (deviceToken.getRefreshTokenExpiresAt() != null) {
+            return !deviceToken.getRefreshTokenExpiresAt().isAfter(Instant.now());
+        }
+        if (deviceToken.getRefreshToken() == null) {
+            return true;
+        }
+        try {
+            VerifiedClaims claims = jwtUtil.verify(deviceToken.getRefreshToken());
+            return claims.isExpired() || !claims.isRefreshToken();
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private String saveDeviceToken(User user, LoginRequest request) {
         String userId = user.getId();
         DeviceToken deviceToken = deviceTokenRepository
             .findByUserIdAndDeviceId(userId, request.getDeviceId())
@@ -181,7 +288,7 @@ public class AuthService {
                 .build();
         }
 
-        deviceToken.setRefreshToken(refreshToken);
+        String refreshToken = issueRefreshToken(deviceToken);
         deviceToken.setPlatform(request.getPlatform());
         deviceToken.setDeviceName(request.getDeviceName());
         deviceToken.setDeviceModel(request.getDeviceModel());
@@ -190,6 +297,7 @@ public class AuthService {
         deviceToken.setLastActiveAt(Instant.now());
 
         deviceTokenRepository.save(deviceToken);
+        return refreshToken;
     }
 
     public void logout(String accessToken, LogoutRequest request) {
@@ -212,12 +320,7 @@ public class AuthService {
     }
 
     public AuthResponse loginWithGoogle(LoginWithGoogleRequest request) {
-        GoogleIdToken.Payload payload;
-        try {
-            payload = verify(request.getIdTokenString());
-        } catch (Exception e) {
-            throw new AuthenticationException(MessageError.INVALID_CREDENTIALS);
-        }
+        GoogleIdToken.Payload payload = googleIdTokenService.verify(request.getIdTokenString());
 
         String email = payload.getEmail();
         String googleId = payload.getSubject();
@@ -239,14 +342,12 @@ public class AuthService {
         });
 
         String accessToken = jwtUtil.generateAccessToken(user.getId());
-        String refreshToken = jwtUtil.generateRefreshToken(user.getId());
-
-        saveGoogleDeviceToken(user, request, refreshToken);
+        String refreshToken = saveGoogleDeviceToken(user, request);
 
         return authMapper.toAuthResponse(user, accessToken, refreshToken);
     }
 
-    private void saveGoogleDeviceToken(User user, LoginWithGoogleRequest request, String refreshToken) {
+    private String saveGoogleDeviceToken(User user, LoginWithGoogleRequest request) {
         DeviceToken deviceToken = deviceTokenRepository
             .findByUserIdAndDeviceId(user.getId(), request.getDeviceId())
             .orElse(null);
@@ -259,7 +360,7 @@ public class AuthService {
                 .build();
         }
 
-        deviceToken.setRefreshToken(refreshToken);
+        String refreshToken = issueRefreshToken(deviceToken);
         deviceToken.setPlatform(request.getPlatform());
         deviceToken.setDeviceName(request.getDeviceName());
         deviceToken.setDeviceModel(request.getDeviceModel());
@@ -268,6 +369,7 @@ public class AuthService {
         deviceToken.setLastActiveAt(Instant.now());
 
         deviceTokenRepository.save(deviceToken);
+        return refreshToken;
     }
 
     private void checkDeviceAccountLimit(String deviceId) {
@@ -276,20 +378,4 @@ public class AuthService {
             throw new LimitExceededException(MessageError.MAX_ACCOUNTS_PER_DEVICE, Constant.MAX_ACCOUNT_PER_DEVICE);
         }
     }
-
-    private GoogleIdToken.Payload verify(String idTokenString) throws Exception {
-        GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(
-            new NetHttpTransport(),
-            GsonFactory.getDefaultInstance())
-            .setAudience(Collections.singletonList(googleClientId))
-            .build();
-
-        GoogleIdToken idToken = verifier.verify(idTokenString);
-
-        if (idToken != null) {
-            return idToken.getPayload();
-        }
-
-        throw new RuntimeException(MessageError.INVALID_CREDENTIALS);
-    }
 }
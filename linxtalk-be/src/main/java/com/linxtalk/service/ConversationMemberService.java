@@ -1,13 +1,18 @@
 package com.linxtalk.service;
 
+import com.linxtalk.component.ConversationMembershipCache;
+import com.linxtalk.dto.request.MarkReadRequest;
 import com.linxtalk.dto.request.UpdateConversationMemberRequest;
+import com.linxtalk.entity.Conversation;
 import com.linxtalk.entity.ConversationMember;
 import com.linxtalk.exception.ResourceNotFoundException;
 import com.linxtalk.repository.ConversationMemberRepository;
+import com.linxtalk.repository.ConversationRepository;
 import com.linxtalk.utils.FnCommon;
 import com.linxtalk.utils.MessageError;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.time.Instant;
 
@@ -16,6 +21,10 @@ import java.time.Instant;
 public class ConversationMemberService {
 
     private final ConversationMemberRepository conversationMemberRepository;
+    private final ConversationRepository conversationRepository;
+    private final ReadStateService readStateService;
+    private final PageCountService pageCountService;
+    private final ConversationMembershipCache conversationMembershipCache;
 
     public void updateConversationMember(String conversationId, UpdateConversationMemberRequest request) {
         String currentUserId = FnCommon.getUserId();
@@ -54,6 +63,25 @@ public class ConversationMemberService {
 
         conversationMember.setIsActive(false);
         conversationMemberRepository.save(conversationMember);
+        pageCountService.evict(PageCountService.SCOPE_CONVERSATIONS, currentUserId);
+        conversationMembershipCache.invalidate(conversationId);
     }
-}
 
+    public void markAsRead(String conversationId, MarkReadRequest request) {
+        String currentUserId = FnCommon.getUserId();
+        conversationMemberRepository
+                .findByConversationIdAndUserIdAndIsActiveTrue(conversationId, currentUserId)
+                .orElseThrow(() -> new ResourceNotFoundException(MessageError.CONVERSATION_MEMBER_NOT_FOUND, conversationId));
+
+        String messageId = request != null ? request.getLastReadMessageId() : null;
+        if (!StringUtils.hasText(messageId)) {
+            messageId = conversationRepository.findById(conversationId)
+                    .map(Conversation::getLastMessage)
+                    .map(Conversation.LastMessage::getMessageId)
+                    .orElse(null);
+        }
+        if (messageId == null) return;
+
+        readStateService.markRead(conversationId, currentUserId, messageId);
+    }
+}
@@ -2,6 +2,7 @@ package com.linxtalk.service;
 
 import com.linxtalk.dto.request.CreateConversationRequest;
 import com.linxtalk.dto.response.ConversationResponse;
+import com.linxtalk.dto.response.ConversationSyncResponse;
 import com.linxtalk.entity.Conversation;
 import com.linxtalk.entity.ConversationMember;
 import com.linxtalk.entity.User;
@@ -11,13 +12,16 @@ import com.linxtalk.mapper.ConversationMapper;
 import com.linxtalk.repository.ConversationMemberRepository;
 import com.linxtalk.repository.ConversationRepository;
 import com.linxtalk.repository.UserRepository;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
 import com.linxtalk.utils.FnCommon;
 import com.linxtalk.utils.MessageError;
 import com.linxtalk.utils.PageResponse;
+import com.linxtalk.utils.SyncToken;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,6 +40,14 @@ public class ConversationService {
     private final ConversationMemberRepository conversationMemberRepository;
     private final UserRepository userRepository;
     private final ConversationMapper conversationMapper;
+    private final ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private final PageCountService pageCountService;
+
+    @Value("${conversation.sync.skew-ms:5000}")
+    private long syncSkewMs;
+
+    @Value("${conversation.sync.max-items:500}")
+    private int syncMaxItems;
 
     @Transactional
     public ConversationResponse createConversation(CreateConversationRequest request) {
@@ -84,6 +96,8 @@ public class ConversationService {
                     return ConversationMember.builder()
                             .conversationId(savedConversation.getId())
                             .conversationType(ConversationType.GROUP)
+                            .conversationName(savedConversation.getName())
+                            .conversationAvatarUrl(savedConversation.getAvatarUrl())
                             .userId(participantId)
                             .displayName(participant.getDisplayName())
                             .avatarUrl(participant.getAvatarUrl())
@@ -98,6 +112,7 @@ public class ConversationService {
                 })
                 .toList();
         conversationMemberRepository.saveAll(members);
+        pageCountService.evict(PageCountService.SCOPE_CONVERSATIONS, participantIds.toArray(String[]::new));
 
         ConversationMember currentMember = members.stream()
                 .filter(member -> Objects.equals(member.getUserId(), currentUserId))
@@ -110,30 +125,105 @@ public class ConversationService {
     /**
      * Get list conversation
      * - Sort by pinned first, then sort by last message time
+     * - Served from the member rows alone through the user_inbox index
      * - If content is empty, get list friend which don't have conversation yet, and sort by friend created time.
      * - Call other API to get list friend which don't have conversation yet
+     * - Pages are fetched without counting; the total is only counted, and cached, when {@code withTotal} is set
      * @param pageNo
      * @param pageSize
+     * @param withTotal Whether to include totalElements and totalPages
      * @return {@code PageResponse<ConversationResponse>}
      */
-    public PageResponse<ConversationResponse> getConversations(int pageNo, int pageSize) {
+    public PageResponse<ConversationResponse> getConversations(int pageNo, int pageSize, boolean withTotal) {
         String currentUserId = FnCommon.getUserId();
         Pageable pageable = PageRequest.of(pageNo, pageSize,
                 Sort.by("isPinned").descending().and(Sort.by("lastMessageAt").descending()));
 
-        Page<ConversationMember> membersPage = conversationMemberRepository
+        Slice<ConversationMember> membersPage = conversationMemberRepository
                 .findByUserIdAndIsActiveTrue(currentUserId, pageable);
+        Long totalElements = withTotal
+                ? pageCountService.getCount(PageCountService.SCOPE_CONVERSATIONS, currentUserId, null,
+                        () -> conversationMemberRepository.countByUserIdAndIsActiveTrue(currentUserId))
+                : null;
+
+        List<ConversationResponse> data = toResponses(membersPage.getContent());
+
+        return PageResponse.of(membersPage, data, totalElements);
+    }
+
+    /**
+     * Get the conversations of the current user that changed since the previous sync.
+     * Without a token every active conversation is returned. With a token only member rows updated after it
+     * are returned (a new message, unread or read state, or the other user's profile all touch updatedAt),
+     * and rows the user left or was removed from come back as tombstones.
+     * Rows are paged in (updatedAt, _id) order, so a page boundary between rows with the same updatedAt loses none.
+     * A complete sync's token is taken before querying and read back with a skew margin, so writes that were
+     * in flight during the previous sync are not missed; clients must apply changes idempotently.
+     * @param token The sync token returned by the previous call, or {@code null}.
+     * @return {@code ConversationSyncResponse}
+     */
+    public ConversationSyncResponse syncConversations(String token) {
+        String currentUserId = FnCommon.getUserId();
+        SyncToken previous = StringUtils.hasText(token) ? SyncToken.decode(token) : null;
+        Instant startedAt = Instant.now();
 
-        List<String> conversationIds = membersPage.getContent().stream()
+        List<ConversationMember> changed;
+        if (previous == null) {
+            changed = conversationMemberRepositoryCustom.getChangedSince(currentUserId, null, null, syncMaxItems + 1);
+        } else if (previous.id() != null) {
+            // Continuing a paged sync: resume right after the last row returned
+            changed = conversationMemberRepositoryCustom
+                    .getChangedSince(currentUserId, previous.syncedAt(), previous.id(), syncMaxItems + 1);
+        } else {
+            changed = conversationMemberRepositoryCustom
+                    .getChangedSince(currentUserId, previous.syncedAt().minusMillis(syncSkewMs), null, syncMaxItems + 1);
+        }
+        boolean hasMore = changed.size() > syncMaxItems;
+        if (hasMore) {
+            changed = changed.subList(0, syncMaxItems);
+        }
+
+        List<ConversationMember> active = changed.stream().filter(member -> Boolean.TRUE.equals(member.getIsActive())).toList();
+        List<String> removedConversationIds = changed.stream()
+                .filter(member -> !Boolean.TRUE.equals(member.getIsActive()))
                 .map(ConversationMember::getConversationId)
                 .toList();
 
-        List<Conversation> conversations = conversationRepository.findAllById(conversationIds);
-        Map<String, Conversation> conversationMap = conversations.stream()
-                .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+        SyncToken next = hasMore
+                ? new SyncToken(changed.getLast().getUpdatedAt(), changed.getLast().getId())
+                : new SyncToken(startedAt);
 
-        List<ConversationResponse> data = membersPage.getContent().stream()
+        return ConversationSyncResponse.builder()
+                .conversations(toResponses(active))
+                .removedConversationIds(removedConversationIds)
+                .syncToken(next.encode())
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Maps member rows to conversations. Rows written since the inbox was materialized carry the name, avatar
+     * and last message themselves; only older rows still need the conversation documents.
+     */
+    private List<ConversationResponse> toResponses(List<ConversationMember> members) {
+        List<String> legacyConversationIds = members.stream()
+                .filter(member -> !isMaterialized(member))
+                .map(ConversationMember::getConversationId)
+                .toList();
+
+        Map<String, Conversation> conversationMap = legacyConversationIds.isEmpty()
+                ? Map.of()
+                : conversationRepository.findAllById(legacyConversationIds).stream()
+                        .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+
+        return members.stream()
                 .map(member -> {
+                    if (isMaterialized(member)) {
+                        return member.getConversationType() == ConversationType.PRIVATE
+                                ? conversationMapper.toResponse(member, otherName(member), member.getOtherAvatarUrl())
+                                : conversationMapper.toResponse(member, member.getConversationName(), member.getConversationAvatarUrl());
+                    }
+
                     Conversation conversation = conversationMap.get(member.getConversationId());
                     if (conversation == null) return null;
 
@@ -141,7 +231,7 @@ public class ConversationService {
                     String avatarUrl = conversation.getAvatarUrl();
 
                     if (conversation.getType() == ConversationType.PRIVATE) {
-                        name = StringUtils.hasText(member.getOtherNickname()) ? member.getOtherNickname() : member.getOtherDisplayName();
+                        name = otherName(member);
                         avatarUrl = member.getOtherAvatarUrl();
                     }
 
@@ -149,16 +239,16 @@ public class ConversationService {
                 })
                 .filter(Objects::nonNull)
                 .toList();
+    }
 
-        return PageResponse.<ConversationResponse>builder()
-                .pageNumber(membersPage.getNumber())
-                .pageSize(membersPage.getSize())
-                .totalElements(membersPage.getTotalElements())
-                .totalPages(membersPage.getTotalPages())
-                .hasNext(membersPage.hasNext())
-                .hasPrevious(membersPage.hasPrevious())
-                .data(data)
-                .build();
+    private static boolean isMaterialized(ConversationMember member) {
+        if (member.getConversationType() == null) return false;
+        if (member.getLastMessageAt() != null && member.getLastMessage() == null) return false;
+        return member.getConversationType() == ConversationType.PRIVATE || member.getConversationName() != null;
+    }
+
+    private static String otherName(ConversationMember member) {
+        return StringUtils.hasText(member.getOtherNickname()) ? member.getOtherNickname() : member.getOtherDisplayName();
     }
 
     private ConversationResponse createPrivateConversation(List<String> participantIds,
@@ -226,6 +316,7 @@ public class ConversationService {
                 .build();
 
         conversationMemberRepository.saveAll(List.of(firstMember, secondMember));
+        pageCountService.evict(PageCountService.SCOPE_CONVERSATIONS, firstUserId, secondUserId);
 
         ConversationMember currentMember = Objects.equals(firstUserId, currentUserId) ? firstMember : secondMember;
         User otherUser = Objects.equals(firstUserId, currentUserId) ? secondUser : firstUser;
@@ -0,0 +1,242 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.MessageTailCache;
+import com.linxtalk.dto.response.MessageStatusResponse;
+import com.linxtalk.entity.Message;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.linxtalk.utils.Constant.MESSAGE_STATUS_QUEUE;
+
+/**
+ * Applies delivery acknowledgements as batched, monotonic status transitions.
+ * Acks are aggregated per message and flushed periodically: one lookup for the whole batch,
+ * one updateMulti per target status and one status frame per sender, conversation and status.
+ * A message moves to the highest status acknowledged by a member other than its sender.
+ * Ids that are not found yet (still in the write-behind queue) are retried once on the next flush.
+ */
+@Service
+@Slf4j
+public class DeliveryStatusService {
+
+    private static final Map<Message.MessageStatus, List<Message.MessageStatus>> ALLOWED_FROM = Map.of(
+            Message.MessageStatus.DELIVERED, List.of(Message.MessageStatus.SENDING, Message.MessageStatus.SENT),
+            Message.MessageStatus.READ, List.of(Message.MessageStatus.SENDING, Message.MessageStatus.SENT, Message.MessageStatus.DELIVERED));
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final MessageRepositoryCustom messageRepositoryCustom;
+    private final MessageTailCache messageTailCache;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final DistributionSummary transitionsPerFlush;
+    private final Counter framesSent;
+    private final Counter droppedAcks;
+    private final Map<AckKey, PendingAck> pending = new ConcurrentHashMap<>();
+
+    public DeliveryStatusService(MessageRepositoryCustom messageRepositoryCustom,
+                                 MessageTailCache messageTailCache,
+                                 SimpMessagingTemplate messagingTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.messageRepositoryCustom = messageRepositoryCustom;
+        this.messageTailCache = messageTailCache;
+        this.messagingTemplate = messagingTemplate;
+        this.transitionsPerFlush = DistributionSummary.builder("message.status.flush.size")
+                .description("Message status transitions applied per flush")
+                .register(meterRegistry);
+        this.framesSent = Counter.builder("message.status.frames")
+                .description("Status frames sent to message senders")
+                .register(meterRegistry);
+        this.droppedAcks = Counter.builder("message.status.dropped")
+                .description("Acks dropped because their message was not found after retrying or is in another conversation")
+                .register(meterRegistry);
+    }
+
+    public static boolean isAckStatus(Message.MessageStatus status) {
+        return ALLOWED_FROM.containsKey(status);
+    }
+
+    /**
+     * Records acknowledgements from a conversation member. Applied on the next flush.
+     * @param conversationId The ID of the conversation.
+     * @param ackerId The ID of the member acknowledging.
+     * @param messageIds The IDs of the acknowledged messages.
+     * @param status DELIVERED or READ.
+     */
+    public void acknowledge(String conversationId, String ackerId, List<String> messageIds, Message.MessageStatus status) {
+        for (String messageId : messageIds) {
+            pending.merge(new AckKey(conversationId, messageId), PendingAck.of(status, ackerId), PendingAck::merge);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${message.status.flush-interval-ms:500}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+
+        Map<AckKey, PendingAck> batch = new LinkedHashMap<>();
+        for (AckKey key : new ArrayList<>(pending.keySet())) {
+            PendingAck ack = pending.remove(key);
+            if (ack != null) batch.put(key, ack);
+        }
+
+        Set<String> messageIds = new LinkedHashSet<>();
+        batch.keySet().forEach(key -> messageIds.add(key.messageId()));
+        Map<String, Message> foundById = new HashMap<>();
+        try {
+            messageRepositoryCustom.findStatusByIdIn(messageIds).forEach(message -> foundById.put(message.getId(), message));
+        } catch (Exception e) {
+            log.error("Failed to look up {} acked messages", messageIds.size(), e);
+            batch.forEach(this::retry);
+            return;
+        }
+
+        // Acks of the same message from its own conversation, merged
+        Map<String, PendingAck> acksByMessageId = new LinkedHashMap<>();
+        batch.forEach((key, ack) -> {
+            Message message = foundById.get(key.messageId());
+            if (message == null) {
+                // Usually still in the write-behind queue, so it gets one more attempt
+                retry(key, ack);
+            } else if (!Objects.equals(message.getConversationId(), key.conversationId())) {
+                // Acked through a conversation the message does not belong to
+                droppedAcks.increment();
+            } else {
+                acksByMessageId.merge(key.messageId(), ack, PendingAck::merge);
+            }
+        });
+
+        Map<Message.MessageStatus, List<Message>> transitioningByStatus = new LinkedHashMap<>();
+        acksByMessageId.forEach((messageId, ack) -> {
+            Message message = foundById.get(messageId);
+            Message.MessageStatus status = ack.statusFor(message.getSenderId());
+            if (status != null && ALLOWED_FROM.get(status).contains(message.getStatus())) {
+                transitioningByStatus.computeIfAbsent(status, key -> new ArrayList<>()).add(message);
+            }
+        });
+
+        int applied = 0;
+        for (Map.Entry<Message.MessageStatus, List<Message>> entry : transitioningByStatus.entrySet()) {
+            applied += apply(entry.getKey(), entry.getValue(), acksByMessageId);
+        }
+        transitionsPerFlush.record(applied);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private int apply(Message.MessageStatus status, List<Message> transitioning, Map<String, PendingAck> acksByMessageId) {
+        try {
+            messageRepositoryCustom.updateStatus(transitioning.stream().map(Message::getId).toList(),
+                    ALLOWED_FROM.get(status), status);
+        } catch (Exception e) {
+            log.error("Failed to apply {} {} acks", transitioning.size(), status, e);
+            transitioning.forEach(message -> retry(new AckKey(message.getConversationId(), message.getId()),
+                    acksByMessageId.get(message.getId())));
+            return 0;
+        }
+
+        notifySenders(status, transitioning);
+        return transitioning.size();
+    }
+
+    private void retry(AckKey key, PendingAck ack) {
+        if (ack.attempts() + 1 >= MAX_ATTEMPTS) {
+            droppedAcks.increment();
+            return;
+        }
+        pending.merge(key, ack.retried(), PendingAck::merge);
+    }
+
+    private void notifySenders(Message.MessageStatus status, List<Message> transitioned) {
+        // senderId -> conversationId -> messageIds
+        Map<String, Map<String, List<String>>> idsBySender = new LinkedHashMap<>();
+        Map<String, List<String>> idsByConversation = new LinkedHashMap<>();
+        for (Message message : transitioned) {
+            idsBySender.computeIfAbsent(message.getSenderId(), key -> new LinkedHashMap<>())
+                    .computeIfAbsent(message.getConversationId(), key -> new ArrayList<>())
+                    .add(message.getId());
+            idsByConversation.computeIfAbsent(message.getConversationId(), key -> new ArrayList<>()).add(message.getId());
+        }
+
+        idsBySender.forEach((senderId, senderIdsByConversation) -> senderIdsByConversation.forEach((conversationId, messageIds) -> {
+            messagingTemplate.convertAndSendToUser(senderId, MESSAGE_STATUS_QUEUE, MessageStatusResponse.builder()
+                    .conversationId(conversationId)
+                    .status(status)
+                    .messageIds(messageIds)
+                    .build());
+            framesSent.increment();
+        }));
+        // Cached tails keep their entry and only take the new status
+        idsByConversation.forEach((conversationId, messageIds) -> messageTailCache.updateStatus(conversationId, messageIds, status));
+    }
+
+    /**
+     * A message as acknowledged through a conversation, which is checked against the message on flush.
+     */
+    private record AckKey(String conversationId, String messageId) {
+    }
+
+    /**
+     * Acks of one message waiting for the next flush.
+     * Keeps, per status, up to two distinct members who acknowledged it: that is enough to tell whether
+     * someone other than the sender did, without knowing the sender yet.
+     */
+    private record PendingAck(Map<Message.MessageStatus, Set<String>> ackerIdsByStatus, int attempts) {
+
+        private static final int MAX_TRACKED_ACKERS = 2;
+
+        static PendingAck of(Message.MessageStatus status, String ackerId) {
+            return new PendingAck(Map.of(status, Set.of(ackerId)), 0);
+        }
+
+        PendingAck merge(PendingAck next) {
+            Map<Message.MessageStatus, Set<String>> merged = new EnumMap<>(Message.MessageStatus.class);
+            merged.putAll(ackerIdsByStatus);
+            next.ackerIdsByStatus().forEach((status, ackerIds) -> merged.merge(status, ackerIds, (current, added) -> {
+                if (current.size() >= MAX_TRACKED_ACKERS) return current;
+                Set<String> union = new HashSet<>(current);
+                for (String ackerId : added) {
+                    if (union.size() >= MAX_TRACKED_ACKERS) break;
+                    union.add(ackerId);
+                }
+                return union;
+            }));
+            return new PendingAck(merged, Math.min(attempts, next.attempts()));
+        }
+
+        PendingAck retried() {
+            return new PendingAck(ackerIdsByStatus, attempts + 1);
+        }
+
+        /**
+         * @return The highest status acknowledged by a member other than the sender, or {@code null} if none.
+         */
+        Message.MessageStatus statusFor(String senderId) {
+            for (Message.MessageStatus status : List.of(Message.MessageStatus.READ, Message.MessageStatus.DELIVERED)) {
+                Set<String> ackerIds = ackerIdsByStatus.get(status);
+                // Senders acknowledging their own messages do not change the delivery state
+                if (ackerIds != null && (ackerIds.size() > 1 || !ackerIds.contains(senderId))) return status;
+            }
+            return null;
+        }
+    }
+}
@@ -18,9 +18,9 @@ import com.linxtalk.utils.FnCommon;
 import com.linxtalk.utils.MessageError;
 import com.linxtalk.utils.PageResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
@@ -40,6 +40,8 @@ public class FriendRequestService {
     private final FriendRepository friendRepository;
     private final FriendRequestMapper friendRequestMapper;
     private final ConversationRepository conversationRepository;
+    private final OnlineFriendIndexService onlineFriendIndexService;
+    private final PageCountService pageCountService;
 
     public FriendRequestResponse createFriendRequest(CreateFriendRequestRequest request) {
         String senderId = FnCommon.getUserId();
@@ -67,15 +69,24 @@ public class FriendRequestService {
                 .status(FriendRequestStatus.PENDING)
                 .build();
         friendRequestRepository.save(friendRequest);
+        pageCountService.evict(PageCountService.SCOPE_FRIEND_REQUESTS, receiver.getId());
         return friendRequestMapper.toFriendRequestResponse(friendRequest, sender);
     }
 
-    public PageResponse<FriendRequestResponse> getFriendRequests(int pageNo, int pageSize) {
+    /**
+     * Get pending friend requests of the current user
+     * - Pages are fetched without counting; the total is only counted, and cached, when {@code withTotal} is set
+     */
+    public PageResponse<FriendRequestResponse> getFriendRequests(int pageNo, int pageSize, boolean withTotal) {
         String currentUserId = FnCommon.getUserId();
         Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("updatedAt").and(Sort.by("id").descending()));
 
-        Page<FriendRequest> friendRequests = friendRequestRepository
+        Slice<FriendRequest> friendRequests = friendRequestRepository
                 .findByReceiverIdAndStatus(currentUserId, FriendRequestStatus.PENDING, pageable);
+        Long totalElements = withTotal
+                ? pageCountService.getCount(PageCountService.SCOPE_FRIEND_REQUESTS, currentUserId, null,
+                        () -> friendRequestRepository.countByReceiverIdAndStatus(currentUserId, FriendRequestStatus.PENDING))
+                : null;
         List<String> senderIds = friendRequests.stream().map(FriendRequest::getSenderId).toList();
         List<User> users = userRepository.findAllById(senderIds);
         Map<String, User> userMap = users.stream()
@@ -84,15 +95,7 @@ public class FriendRequestService {
                 .map(request -> friendRequestMapper.toFriendRequestResponse(request, userMap.get(request.getSenderId())))
                 .toList();
 
-        return PageResponse.<FriendRequestResponse>builder()
-                .pageSize(friendRequests.getSize())
-                .pageNumber(friendRequests.getNumber())
-                .totalElements(friendRequests.getTotalElements())
-                .totalPages(friendRequests.getTotalPages())
-                .hasNext(friendRequests.hasNext())
-                .hasPrevious(friendRequests.hasPrevious())
-                .data(data)
-                .build();
+        return PageResponse.of(friendRequests, data, totalElements);
     }
 
     /**
@@ -110,6 +113,7 @@ public class FriendRequestService {
 
         FriendRequestStatus newStatus = request.getStatus();
         FriendRequestStatus currentStatus = friendRequest.getStatus();
+        pageCountService.evict(PageCountService.SCOPE_FRIEND_REQUESTS, friendRequest.getReceiverId());
         switch (newStatus) {
             case UNFRIEND:
                 if (currentStatus != FriendRequestStatus.ACCEPTED) {
@@ -117,6 +121,8 @@ public class FriendRequestService {
                 }
                 friendRepository.deleteAllByFriendId(friendRequest.getId());
                 friendRequestRepository.deleteById(friendRequest.getId());
+                onlineFriendIndexService.invalidate(friendRequest.getSenderId(), friendRequest.getReceiverId());
+                pageCountService.evict(PageCountService.SCOPE_FRIENDS, friendRequest.getSenderId(), friendRequest.getReceiverId());
                 return null;
             case CANCELLED:
                 if (isReceiver || currentStatus != FriendRequestStatus.PENDING) {
@@ -153,6 +159,8 @@ public class FriendRequestService {
                         .hasChatted(alreadyChatted)
                         .build();
                 friendRepository.saveAll(List.of(senderFriend, receiverFriend));
+                onlineFriendIndexService.invalidate(friendRequest.getSenderId(), friendRequest.getReceiverId());
+                pageCountService.evict(PageCountService.SCOPE_FRIENDS, friendRequest.getSenderId(), friendRequest.getReceiverId());
                 friendRequest.setRespondedAt(Instant.now());
                 friendRequestRepository.save(friendRequest);
                 return friendRequestMapper.toFriendRequestResponse(friendRequest);
@@ -15,15 +15,16 @@ import com.linxtalk.repository.custom.FriendRepositoryCustom;
 import com.linxtalk.utils.FnCommon;
 import com.linxtalk.utils.PageResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -35,14 +36,24 @@ public class FriendService {
     private final FriendRepository friendRepository;
     private final UserRepository userRepository;
     private final PresenceService presenceService;
+    private final OnlineFriendIndexService onlineFriendIndexService;
     private final FriendMapper friendMapper;
+    private final PageCountService pageCountService;
 
-    public PageResponse<FriendResponse> getFriends(Boolean hasChatted, String sortBy, String sortDir, int pageNo, int pageSize) {
+    /**
+     * Get list friend
+     * - Pages are fetched without counting; the total is only counted, and cached, when {@code withTotal} is set
+     */
+    public PageResponse<FriendResponse> getFriends(Boolean hasChatted, String sortBy, String sortDir, int pageNo, int pageSize, boolean withTotal) {
         Sort sort = "asc".equalsIgnoreCase(sortDir) ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
         Pageable pageable = PageRequest.of(pageNo, pageSize, sort);
 
         String currentUserId = FnCommon.getUserId();
-        Page<Friend> friends = friendRepositoryCustom.getFriends(currentUserId, hasChatted, pageable);
+        Slice<Friend> friends = friendRepositoryCustom.getFriends(currentUserId, hasChatted, pageable);
+        Long totalElements = withTotal
+                ? pageCountService.getCount(PageCountService.SCOPE_FRIENDS, currentUserId, hasChatted,
+                        () -> friendRepositoryCustom.countFriends(currentUserId, hasChatted))
+                : null;
 
         List<String> friendIds = friends.map(Friend::getFriendId).getContent();
         Map<String, Boolean> onlineStatuses = presenceService.getOnlineStatuses(friendIds);
@@ -58,44 +69,30 @@ public class FriendService {
                 })
                 .toList();
 
-        return PageResponse.<FriendResponse>builder()
-                .pageSize(friends.getSize())
-                .totalElements(friends.getTotalElements())
-                .pageNumber(friends.getNumber())
-                .totalPages(friends.getTotalPages())
-                .hasNext(friends.hasNext())
-                .hasPrevious(friends.hasPrevious())
-                .data(content)
-                .build();
+        return PageResponse.of(friends, content, totalElements);
     }
 
     /**
      * Get list Online Friend
-     * @param pageNo Page which user want to get
-     * @param pageSize Amount of friend of user
+     * Online friends are resolved in Redis by walking the user's friend index in interaction score order
+     * and checking it against the global online set, so friends beyond the first page are not missed.
      * @param pageSizeOnline Amount of online friend which user want to get
      * @return {@code List<FriendResponse>}
      */
-    public List<FriendResponse> getOnlineFriends(int pageNo, int pageSize, int pageSizeOnline) {
+    public List<FriendResponse> getOnlineFriends(int pageSizeOnline) {
         String currentUserId = FnCommon.getUserId();
 
-        Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("interactionScore").descending().and(Sort.by("createdAt").descending()));
-        Page<Friend> friends = friendRepositoryCustom.getFriends(currentUserId, null, pageable);
-
-        List<String> friendIds = friends.getContent().stream().map(Friend::getFriendId).collect(Collectors.toList());
-        Map<String, Boolean> onlineStatuses = presenceService.getOnlineStatuses(friendIds);
-
-        List<Friend> onlineFriends = friends.getContent().stream()
-                .filter(friend -> onlineStatuses.getOrDefault(friend.getFriendId(), false))
-                .limit(pageSizeOnline)
-                .toList();
+        List<String> onlineFriendIds = onlineFriendIndexService.getTopOnlineFriendIds(currentUserId, pageSizeOnline);
+        if (onlineFriendIds.isEmpty()) return List.of();
 
+        Map<String, Friend> friendMap = friendRepository.findByUserIdAndFriendIdIn(currentUserId, onlineFriendIds).stream()
+                .collect(Collectors.toMap(Friend::getFriendId, Function.identity(), (a, b) -> a));
 
-        return onlineFriends.stream()
+        return onlineFriendIds.stream()
+                .map(friendMap::get)
+                .filter(Objects::nonNull)
                 .map(friend -> friendMapper.toFriendResponse(friend, true))
                 .toList();
-
     }
 
 }
-
@@ -0,0 +1,96 @@
+package com.linxtalk.service;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
+import com.linxtalk.exception.AuthenticationException;
+import com.linxtalk.utils.MessageError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import static com.linxtalk.utils.Constant.BACKGROUND_JOB_SCHEDULER;
+
+/**
+ * Verifies Google ID tokens with a shared verifier and key cache.
+ * Keys are refreshed in the background before they expire, so logins only wait for Google's certs endpoint
+ * when the background refresh keeps failing.
+ */
+@Service
+@Slf4j
+public class GoogleIdTokenService {
+
+    private final GoogleIdTokenVerifier verifier;
+    private final GooglePublicKeysManager publicKeysManager;
+    private final long refreshAheadMs;
+    private final Timer verifyDuration;
+    private final Counter refreshFailures;
+
+    public GoogleIdTokenService(GoogleIdTokenVerifier verifier,
+                                GooglePublicKeysManager publicKeysManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${google.id-token.refresh-ahead-ms:600000}") long refreshAheadMs) {
+        this.verifier = verifier;
+        this.publicKeysManager = publicKeysManager;
+        // The keys manager refreshes inline within five minutes of expiry, so refresh before that
+        this.refreshAheadMs = refreshAheadMs;
+        this.verifyDuration = Timer.builder("google.id-token.verify.duration")
+                .description("Time spent verifying Google ID tokens")
+                .register(meterRegistry);
+        this.refreshFailures = Counter.builder("google.id-token.keys.refresh.failures")
+                .description("Failed background refreshes of Google's signing keys")
+                .register(meterRegistry);
+        Gauge.builder("google.id-token.keys.expires-in", publicKeysManager,
+                        manager -> manager.getExpirationTimeMilliseconds() - System.currentTimeMillis())
+                .description("Time until the cached Google signing keys expire")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        refreshKeys();
+    }
+
+    /**
+     * Verify a Google ID token.
+     * @param idTokenString The ID token issued to the client.
+     * @return The verified payload.
+     * @throws AuthenticationException if the token is malformed, expired or not signed by Google for this client.
+     */
+    public GoogleIdToken.Payload verify(String idTokenString) {
+        GoogleIdToken idToken;
+        try {
+            idToken = verifyDuration.recordCallable(() -> verifier.verify(idTokenString));
+        } catch (Exception e) {
+            log.debug("Google ID token verification failed", e);
+            throw new AuthenticationException(MessageError.INVALID_CREDENTIALS);
+        }
+        if (idToken == null) {
+            throw new AuthenticationException(MessageError.INVALID_CREDENTIALS);
+        }
+        return idToken.getPayload();
+    }
+
+    @Scheduled(fixedDelayString = "${google.id-token.refresh-check-interval-ms:60000}", scheduler = BACKGROUND_JOB_SCHEDULER)
+    public void refreshIfExpiring() {
+        if (publicKeysManager.getExpirationTimeMilliseconds() - System.currentTimeMillis() <= refreshAheadMs) {
+            refreshKeys();
+        }
+    }
+
+    private void refreshKeys() {
+        try {
+            publicKeysManager.refresh();
+        } catch (Exception e) {
+            refreshFailures.increment();
+            log.warn("Failed to refresh Google signing keys", e);
+        }
+    }
+}
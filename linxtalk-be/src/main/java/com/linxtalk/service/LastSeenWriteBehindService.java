@@ -0,0 +1,252 @@
+package com.linxtalk.service;
+
+import com.linxtalk.repository.UserRepository;
+import com.linxtalk.repository.custom.UserRepositoryCustom;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for lastSeenAt updates.
+ * Offline transitions are queued and written to the users collection as unordered bulk updates,
+ * flushed when the batch size is reached or on every flush interval, whichever comes first.
+ * Size-triggered flushes run on a dedicated flusher thread, so producers such as the Redis listener
+ * never perform the bulk write themselves.
+ * When the queue is full producers wait up to the offer timeout before writing directly.
+ * A failed flush is kept aside, the newest lastSeenAt per user winning, and retried with exponential backoff;
+ * batches flushed in the meantime join it instead of hitting the failing database. After {@code maxRetries}
+ * failed retries the pending updates are dropped.
+ */
+@Service
+@Slf4j
+public class LastSeenWriteBehindService {
+
+    private final UserRepository userRepository;
+    private final UserRepositoryCustom userRepositoryCustom;
+    private final BlockingQueue<LastSeenUpdate> queue;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("last-seen-flusher").daemon(true).factory());
+    private final AtomicBoolean flushSignaled = new AtomicBoolean();
+    // Updates of failed flushes awaiting a retry, guarded by flushLock
+    private final Map<String, Instant> failed = new HashMap<>();
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+    private final DistributionSummary flushSize;
+    private final Timer flushLag;
+    private final Counter directWrites;
+    private final Counter droppedUpdates;
+    private int failedAttempts;
+    private long retryAtNanos;
+
+    public LastSeenWriteBehindService(UserRepository userRepository,
+                                      UserRepositoryCustom userRepositoryCustom,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${presence.last-seen.queue-capacity:50000}") int queueCapacity,
+                                      @Value("${presence.last-seen.batch-size:1000}") int batchSize,
+                                      @Value("${presence.last-seen.offer-timeout-ms:500}") long offerTimeoutMs,
+                                      @Value("${presence.last-seen.max-retries:5}") int maxRetries,
+                                      @Value("${presence.last-seen.retry-backoff-ms:1000}") long retryBackoffMs,
+                                      @Value("${presence.last-seen.max-retry-backoff-ms:30000}") long maxRetryBackoffMs) {
+        this.userRepository = userRepository;
+        this.userRepositoryCustom = userRepositoryCustom;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+        this.flushSize = DistributionSummary.builder("presence.last_seen.flush.size")
+                .description("Number of users written per lastSeenAt bulk flush")
+                .register(meterRegistry);
+        this.flushLag = Timer.builder("presence.last_seen.flush.lag")
+                .description("Time the oldest entry of a flush waited in the buffer")
+                .register(meterRegistry);
+        this.directWrites = Counter.builder("presence.last_seen.direct.writes")
+                .description("Updates written directly because the buffer stayed full")
+                .register(meterRegistry);
+        this.droppedUpdates = Counter.builder("presence.last_seen.dropped")
+                .description("Updates dropped after every retry of their flush failed")
+                .register(meterRegistry);
+        Gauge.builder("presence.last_seen.queue.size", queue, BlockingQueue::size)
+                .description("Pending lastSeenAt updates")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a lastSeenAt update. Blocks up to the offer timeout when the buffer is full.
+     * @param userId The ID of the user.
+     * @param lastSeenAt The time the user was last seen.
+     */
+    public void enqueue(String userId, Instant lastSeenAt) {
+        LastSeenUpdate update = new LastSeenUpdate(userId, lastSeenAt, System.nanoTime());
+        try {
+            if (!queue.offer(update, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("lastSeenAt buffer is full. Writing update for user {} directly.", userId);
+                directWrites.increment();
+                userRepository.updateLastSeenAt(userId, lastSeenAt);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            userRepository.updateLastSeenAt(userId, lastSeenAt);
+            return;
+        }
+
+        if (queue.size() >= batchSize && flushSignaled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushFullBatches);
+            } catch (RejectedExecutionException e) {
+                // Shutting down: the final flush drains the queue
+                flushSignaled.set(false);
+            }
+        }
+    }
+
+    private void flushFullBatches() {
+        flushSignaled.set(false);
+        flushLock.lock();
+        try {
+            drain(false);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.last-seen.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            drain(true);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        log.info("Draining {} pending lastSeenAt updates before shutdown.", queue.size());
+        flushLock.lock();
+        try {
+            drain(true);
+            if (!failed.isEmpty()) {
+                retryFailed();
+            }
+            if (!failed.isEmpty()) {
+                log.error("Dropping lastSeenAt for {} users on shutdown", failed.size());
+                droppedUpdates.increment(failed.size());
+                failed.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes full batches; a trailing partial batch is only written when {@code includePartial} is set.
+     */
+    private void drain(boolean includePartial) {
+        if (!failed.isEmpty() && System.nanoTime() - retryAtNanos >= 0) {
+            retryFailed();
+        }
+        while (queue.size() >= batchSize || (includePartial && !queue.isEmpty())) {
+            List<LastSeenUpdate> batch = new ArrayList<>(batchSize);
+            queue.drainTo(batch, batchSize);
+            if (batch.isEmpty()) return;
+            write(batch);
+        }
+    }
+
+    private void write(List<LastSeenUpdate> batch) {
+        Map<String, Instant> lastSeenByUserId = new LinkedHashMap<>();
+        for (LastSeenUpdate update : batch) {
+            lastSeenByUserId.merge(update.userId(), update.lastSeenAt(), LastSeenWriteBehindService::newest);
+        }
+        if (!failed.isEmpty()) {
+            // A retry is pending, so the database is likely still failing: join it
+            requeue(lastSeenByUserId);
+            return;
+        }
+
+        try {
+            userRepositoryCustom.bulkUpdateLastSeenAt(lastSeenByUserId);
+            flushSize.record(lastSeenByUserId.size());
+            flushLag.record(System.nanoTime() - batch.getFirst().enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+            log.debug("Flushed lastSeenAt for {} users", lastSeenByUserId.size());
+        } catch (Exception e) {
+            failedAttempts = 1;
+            log.warn("Failed to flush lastSeenAt for {} users, retrying in {} ms",
+                    lastSeenByUserId.size(), scheduleRetry(), e);
+            requeue(lastSeenByUserId);
+        }
+    }
+
+    private void retryFailed() {
+        Map<String, Instant> retry = new LinkedHashMap<>(failed);
+        failed.clear();
+        try {
+            userRepositoryCustom.bulkUpdateLastSeenAt(retry);
+            flushSize.record(retry.size());
+            log.info("Flushed lastSeenAt for {} users after {} failed attempts", retry.size(), failedAttempts);
+            failedAttempts = 0;
+        } catch (Exception e) {
+            if (failedAttempts++ >= maxRetries) {
+                log.error("Dropping lastSeenAt for {} users after {} failed attempts", retry.size(), failedAttempts, e);
+                droppedUpdates.increment(retry.size());
+                failedAttempts = 0;
+                return;
+            }
+            log.warn("Retry {} of lastSeenAt for {} users failed, retrying in {} ms",
+                    failedAttempts - 1, retry.size(), scheduleRetry(), e);
+            requeue(retry);
+        }
+    }
+
+    private void requeue(Map<String, Instant> lastSeenByUserId) {
+        lastSeenByUserId.forEach((userId, lastSeenAt) -> failed.merge(userId, lastSeenAt, LastSeenWriteBehindService::newest));
+    }
+
+    /**
+     * Sets when the failed updates are retried, doubling the backoff with every failed attempt.
+     * @return The backoff in milliseconds.
+     */
+    private long scheduleRetry() {
+        long backoffMs = Math.min(retryBackoffMs << Math.min(failedAttempts - 1, 20), maxRetryBackoffMs);
+        retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+        return backoffMs;
+    }
+
+    private static Instant newest(Instant current, Instant next) {
+        return next.isAfter(current) ? next : current;
+    }
+
+    private record LastSeenUpdate(String userId, Instant lastSeenAt, long enqueuedAtNanos) {
+    }
+}
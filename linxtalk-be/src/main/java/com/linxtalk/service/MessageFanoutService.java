@@ -0,0 +1,163 @@
+package com.linxtalk.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linxtalk.component.ConversationMembershipCache;
+import com.linxtalk.component.RedisBrokerRelay;
+import com.linxtalk.utils.EncodedPayload;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.linxtalk.utils.Constant.MESSAGE_FANOUT_CHANNEL;
+import static com.linxtalk.utils.Constant.MESSAGE_QUEUE;
+
+/**
+ * Delivers conversation messages to every connected session of every active member over {@code /user/queue/messages}.
+ * Members come from {@link ConversationMembershipCache}, and the same {@link EncodedPayload} bytes are shared
+ * by every recipient frame. In redis-relay mode the message is published only to the nodes owning a session of
+ * a member, found in the relay's ownership sets, together with those members, so a receiving node dispatches
+ * without loading the conversation's members.
+ */
+@Service
+@Slf4j
+public class MessageFanoutService implements MessageListener {
+
+    private final ConversationMembershipCache conversationMembershipCache;
+    private final SimpUserRegistry simpUserRegistry;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    // Only present when websocket.broker.mode=redis-relay
+    private final RedisBrokerRelay redisBrokerRelay;
+    private final Timer fanoutDuration;
+    private final DistributionSummary fanoutBytes;
+    private final DistributionSummary localRecipients;
+
+    public MessageFanoutService(ConversationMembershipCache conversationMembershipCache,
+                                SimpUserRegistry simpUserRegistry,
+                                SimpMessagingTemplate messagingTemplate,
+                                StringRedisTemplate redisTemplate,
+                                RedisMessageListenerContainer listenerContainer,
+                                ObjectMapper objectMapper,
+                                ObjectProvider<RedisBrokerRelay> redisBrokerRelay,
+                                MeterRegistry meterRegistry) {
+        this.conversationMembershipCache = conversationMembershipCache;
+        this.simpUserRegistry = simpUserRegistry;
+        this.messagingTemplate = messagingTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.redisBrokerRelay = redisBrokerRelay.getIfAvailable();
+        this.fanoutDuration = Timer.builder("message.fanout.duration")
+                .description("Time to dispatch a message to the members connected to this node and publish it to the nodes of the others")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.fanoutBytes = DistributionSummary.builder("message.fanout.bytes")
+                .description("Serialized payload size per fanned out message")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.localRecipients = DistributionSummary.builder("message.fanout.recipients")
+                .description("Members connected to this node per fanned out message")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (redisBrokerRelay != null) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(nodeChannel(redisBrokerRelay.getNodeId())));
+            // Nodes of the previous version still broadcast to every node during a rolling deploy
+            listenerContainer.addMessageListener(this, new ChannelTopic(MESSAGE_FANOUT_CHANNEL));
+        }
+    }
+
+    /**
+     * Sends a payload to every active member of a conversation, on every node.
+     * @param conversationId The ID of the conversation.
+     * @param payload The payload, already encoded once for every recipient.
+     */
+    public void fanout(String conversationId, EncodedPayload payload) {
+        long startedAt = System.nanoTime();
+        byte[] bytes = payload.bytes();
+        fanoutBytes.record(bytes.length);
+
+        Set<String> memberIds = conversationMembershipCache.getMemberIds(conversationId);
+        dispatchLocally(memberIds, bytes);
+        if (redisBrokerRelay != null) {
+            redisBrokerRelay.remoteNodesOf(memberIds).forEach((node, recipientIds) ->
+                    publish(node, new FanoutEnvelope(redisBrokerRelay.getNodeId(), conversationId, recipientIds, bytes)));
+        }
+        fanoutDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        try {
+            FanoutEnvelope envelope = objectMapper.readValue(message.getBody(), FanoutEnvelope.class);
+            dispatchLocally(envelope.recipientIds() != null
+                    ? envelope.recipientIds()
+                    : conversationMembershipCache.getMemberIds(envelope.conversationId()), envelope.payload());
+        } catch (Exception e) {
+            log.error("Failed to deliver fanned out message", e);
+        }
+    }
+
+    private void dispatchLocally(Collection<String> recipientIds, byte[] payload) {
+        int recipients = 0;
+        for (String recipientId : recipientIds) {
+            if (simpUserRegistry.getUser(recipientId) == null) continue;
+            messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + recipientId + MESSAGE_QUEUE,
+                    createFrame(payload));
+            recipients++;
+        }
+        localRecipients.record(recipients);
+    }
+
+    private Message<byte[]> createFrame(byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        // Other nodes already receive the message through the fan-out channel
+        accessor.setHeader(RedisBrokerRelay.RELAYED_HEADER, true);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private void publish(String node, FanoutEnvelope envelope) {
+        try {
+            redisTemplate.convertAndSend(nodeChannel(node), objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.error("Failed to publish message of conversation {} to node {}", envelope.conversationId(), node, e);
+        }
+    }
+
+    private static String nodeChannel(String nodeId) {
+        return MESSAGE_FANOUT_CHANNEL + ":" + nodeId;
+    }
+
+    /**
+     * @param recipientIds The members with a session on the receiving node, {@code null} when broadcast
+     *                     by a node of the previous version.
+     */
+    public record FanoutEnvelope(String origin, String conversationId, List<String> recipientIds, byte[] payload) {
+    }
+}
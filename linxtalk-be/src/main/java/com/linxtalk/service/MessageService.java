@@ -0,0 +1,202 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.ConversationMembershipCache;
+import com.linxtalk.component.EncodedPayloadConverter;
+import com.linxtalk.component.MessageTailCache;
+import com.linxtalk.dto.request.AckMessagesRequest;
+import com.linxtalk.dto.request.SendMessageRequest;
+import com.linxtalk.dto.response.MessageReadCountResponse;
+import com.linxtalk.dto.response.MessageReaderResponse;
+import com.linxtalk.dto.response.MessageResponse;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.Message;
+import com.linxtalk.exception.ResourceNotFoundException;
+import com.linxtalk.mapper.MessageMapper;
+import com.linxtalk.repository.ConversationMemberRepository;
+import com.linxtalk.repository.MessageRepository;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import com.linxtalk.utils.CursorResponse;
+import com.linxtalk.utils.MessageCursor;
+import com.linxtalk.utils.MessageError;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class MessageService {
+
+    private static final Set<Message.MessageType> SERVER_ONLY_TYPES = Set.of(Message.MessageType.SYSTEM, Message.MessageType.CALL);
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final MessageRepository messageRepository;
+    private final MessageRepositoryCustom messageRepositoryCustom;
+    private final MessageWriteBehindService messageWriteBehindService;
+    private final MessageMapper messageMapper;
+    private final MessageTailCache messageTailCache;
+    private final ReadStateService readStateService;
+    private final DeliveryStatusService deliveryStatusService;
+    private final MessageFanoutService messageFanoutService;
+    private final EncodedPayloadConverter encodedPayloadConverter;
+    private final ConversationMembershipCache conversationMembershipCache;
+
+    /**
+     * Accepts a message from a conversation member.
+     * The message gets its ID and server timestamp here, is fanned out to the members and queued
+     * for persistence, so the sender is acknowledged without waiting for the database write.
+     * @param conversationId The ID of the conversation.
+     * @param senderId The ID of the sender.
+     * @param request The message to send.
+     * @return The accepted message.
+     */
+    public MessageResponse sendMessage(String conversationId, String senderId, SendMessageRequest request) {
+        Message.MessageType type = request.getType() != null ? request.getType() : Message.MessageType.TEXT;
+        if (SERVER_ONLY_TYPES.contains(type)) {
+            throw new IllegalArgumentException(MessageError.MESSAGE_TYPE_INVALID);
+        }
+
+        // From the cache the fan-out reads too, so a send does not read conversation_members
+        ConversationMembershipCache.MemberProfile sender = conversationMembershipCache.getMember(conversationId, senderId)
+                .orElseThrow(() -> new ResourceNotFoundException(MessageError.CONVERSATION_MEMBER_NOT_FOUND, conversationId));
+
+        // Mongo stores milliseconds; truncating keeps cursors built from this instance equal to stored ones
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Message message = Message.builder()
+                .id(new ObjectId().toHexString())
+                .conversationId(conversationId)
+                .senderId(senderId)
+                .senderName(sender.displayName())
+                .senderAvatarUrl(sender.avatarUrl())
+                .type(type)
+                .content(request.getContent())
+                .mentionedUserIds(request.getMentionedUserIds())
+                .status(Message.MessageStatus.SENT)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+
+        messageWriteBehindService.enqueue(message);
+        messageTailCache.append(message);
+
+        MessageResponse response = messageMapper.toResponse(message, request.getClientMessageId());
+        messageFanoutService.fanout(conversationId, encodedPayloadConverter.encode(response));
+        return response;
+    }
+
+    /**
+     * Get a window of the message history, newest first, using keyset pagination on (createdAt, _id).
+     * At most one of {@code before}, {@code after} and {@code around} may be set; with none the newest page is returned.
+     * No count query is issued; hasNext/hasPrevious come from fetching one extra message.
+     * @param conversationId The ID of the conversation.
+     * @param userId The ID of the requesting member.
+     * @param before Cursor to page towards older messages.
+     * @param after Cursor to page towards newer messages.
+     * @param around ID of a message to center the window on, e.g. for jumping to a reply.
+     * @param pageSize The number of messages to return.
+     * @return {@code CursorResponse<MessageResponse>}
+     */
+    public CursorResponse<MessageResponse> getMessages(String conversationId, String userId, String before,
+                                                       String after, String around, int pageSize) {
+        if (Stream.of(before, after, around).filter(StringUtils::hasText).count() > 1) {
+            throw new IllegalArgumentException(MessageError.MESSAGE_CURSOR_INVALID);
+        }
+        getActiveMember(conversationId, userId);
+        int limit = Math.clamp(pageSize, 1, MAX_PAGE_SIZE);
+
+        if (StringUtils.hasText(around)) {
+            return getMessagesAround(conversationId, around, limit);
+        }
+
+        if (StringUtils.hasText(after)) {
+            List<Message> newer = messageRepositoryCustom.findAfter(conversationId, MessageCursor.decode(after), limit + 1);
+            boolean hasPrevious = newer.size() > limit;
+            List<Message> page = new ArrayList<>(newer.subList(0, Math.min(limit, newer.size())));
+            Collections.reverse(page);
+            return toCursorResponse(page, limit, true, hasPrevious);
+        }
+
+        if (!StringUtils.hasText(before) && limit <= messageTailCache.getTailSize()) {
+            MessageTailCache.Tail tail = messageTailCache.get(conversationId,
+                    () -> messageRepositoryCustom.findBefore(conversationId, null, messageTailCache.getTailSize() + 1));
+            List<Message> messages = tail.messages();
+            boolean hasNext = messages.size() > limit || tail.hasOlder();
+            return toCursorResponse(messages.subList(0, Math.min(limit, messages.size())), limit, hasNext, false);
+        }
+
+        MessageCursor cursor = StringUtils.hasText(before) ? MessageCursor.decode(before) : null;
+        List<Message> older = messageRepositoryCustom.findBefore(conversationId, cursor, limit + 1);
+        boolean hasNext = older.size() > limit;
+        return toCursorResponse(older.subList(0, Math.min(limit, older.size())), limit, hasNext, cursor != null);
+    }
+
+    /**
+     * Records delivery or read acknowledgements from a member; statuses are applied in batches.
+     * @param conversationId The ID of the conversation.
+     * @param userId The ID of the acknowledging member.
+     * @param request The acknowledged message IDs and status.
+     */
+    public void acknowledge(String conversationId, String userId, AckMessagesRequest request) {
+        if (!DeliveryStatusService.isAckStatus(request.getStatus())) {
+            throw new IllegalArgumentException(MessageError.MESSAGE_STATUS_INVALID);
+        }
+        getActiveMember(conversationId, userId);
+        deliveryStatusService.acknowledge(conversationId, userId, request.getMessageIds(), request.getStatus());
+    }
+
+    public List<MessageReadCountResponse> getReadCounts(String conversationId, String userId, List<String> messageIds) {
+        getActiveMember(conversationId, userId);
+        return readStateService.getReadCounts(conversationId, messageIds.subList(0, Math.min(MAX_PAGE_SIZE, messageIds.size())));
+    }
+
+    public List<MessageReaderResponse> getReaders(String conversationId, String userId, String messageId) {
+        getActiveMember(conversationId, userId);
+        return readStateService.getReaders(conversationId, messageId);
+    }
+
+    private CursorResponse<MessageResponse> getMessagesAround(String conversationId, String messageId, int limit) {
+        Message anchor = messageRepository.findById(messageId)
+                .filter(message -> Objects.equals(message.getConversationId(), conversationId))
+                .orElseThrow(() -> new ResourceNotFoundException(MessageError.MESSAGE_NOT_FOUND, messageId));
+        MessageCursor cursor = MessageCursor.of(anchor);
+        int olderLimit = (limit - 1) / 2;
+        int newerLimit = limit - 1 - olderLimit;
+
+        List<Message> newer = messageRepositoryCustom.findAfter(conversationId, cursor, newerLimit + 1);
+        List<Message> older = messageRepositoryCustom.findBefore(conversationId, cursor, olderLimit + 1);
+
+        List<Message> page = new ArrayList<>(newer.subList(0, Math.min(newerLimit, newer.size())));
+        Collections.reverse(page);
+        page.add(anchor);
+        page.addAll(older.subList(0, Math.min(olderLimit, older.size())));
+        return toCursorResponse(page, limit, older.size() > olderLimit, newer.size() > newerLimit);
+    }
+
+    private CursorResponse<MessageResponse> toCursorResponse(List<Message> page, int pageSize,
+                                                             boolean hasNext, boolean hasPrevious) {
+        return CursorResponse.<MessageResponse>builder()
+                .pageSize(pageSize)
+                .hasNext(hasNext)
+                .hasPrevious(hasPrevious)
+                .nextCursor(hasNext && !page.isEmpty() ? MessageCursor.of(page.getLast()).encode() : null)
+                .previousCursor(hasPrevious && !page.isEmpty() ? MessageCursor.of(page.getFirst()).encode() : null)
+                .data(page.stream().map(messageMapper::toResponse).toList())
+                .build();
+    }
+
+    private ConversationMember getActiveMember(String conversationId, String userId) {
+        return conversationMemberRepository
+                .findByConversationIdAndUserIdAndIsActiveTrue(conversationId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException(MessageError.CONVERSATION_MEMBER_NOT_FOUND, conversationId));
+    }
+}
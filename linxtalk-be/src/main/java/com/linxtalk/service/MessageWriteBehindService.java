@@ -0,0 +1,351 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.MessageTailCache;
+import com.linxtalk.dto.response.MessageStatusResponse;
+import com.linxtalk.entity.Message;
+import com.linxtalk.exception.LimitExceededException;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
+import com.linxtalk.repository.custom.ConversationRepositoryCustom;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import com.linxtalk.utils.MessageError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.linxtalk.utils.Constant.MESSAGE_STATUS_QUEUE;
+
+/**
+ * Write-behind persistence for sent messages.
+ * Messages are partitioned into lanes by conversation, and each lane is drained by a single writer thread,
+ * so messages of one conversation are always written in send order. In batched mode a writer groups
+ * messages into one insertMany until the batch size or the latency budget of the oldest message is reached.
+ * In single mode every message is inserted on its own.
+ * Failed writes are retried with exponential backoff until they succeed, so a database outage only
+ * backs the lanes up; senders are then throttled by the full lanes. A message the database rejects
+ * on its own is dropped and its sender receives a FAILED status.
+ */
+@Service
+@Slf4j
+public class MessageWriteBehindService {
+
+    private static final String MODE_BATCHED = "batched";
+
+    private final MessageRepositoryCustom messageRepositoryCustom;
+    private final ConversationRepositoryCustom conversationRepositoryCustom;
+    private final ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private final MessageTailCache messageTailCache;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final List<BlockingQueue<PendingMessage>> lanes;
+    private final List<Thread> writers = new ArrayList<>();
+    private final boolean batched;
+    private final int batchSize;
+    private final long maxLatencyNanos;
+    private final long offerTimeoutMs;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer persistLatency;
+    private final Counter failedMessages;
+    private final Counter retries;
+    private volatile boolean running = true;
+
+    public MessageWriteBehindService(MessageRepositoryCustom messageRepositoryCustom,
+                                     ConversationRepositoryCustom conversationRepositoryCustom,
+                                     ConversationMemberRepositoryCustom conversationMemberRepositoryCustom,
+                                     MessageTailCache messageTailCache,
+                                     SimpMessagingTemplate messagingTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${message.write.mode:batched}") String mode,
+                                     @Value("${message.write.lanes:4}") int laneCount,
+                                     @Value("${message.write.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${message.write.batch-size:500}") int batchSize,
+                                     @Value("${message.write.max-latency-ms:10}") long maxLatencyMs,
+                                     @Value("${message.write.offer-timeout-ms:200}") long offerTimeoutMs,
+                                     @Value("${message.write.max-retries:3}") int maxRetries,
+                                     @Value("${message.write.retry-backoff-ms:100}") long retryBackoffMs,
+                                     @Value("${message.write.max-retry-backoff-ms:5000}") long maxRetryBackoffMs) {
+        this.messageRepositoryCustom = messageRepositoryCustom;
+        this.conversationRepositoryCustom = conversationRepositoryCustom;
+        this.conversationMemberRepositoryCustom = conversationMemberRepositoryCustom;
+        this.messageTailCache = messageTailCache;
+        this.messagingTemplate = messagingTemplate;
+        this.batched = MODE_BATCHED.equalsIgnoreCase(mode);
+        this.batchSize = batched ? batchSize : 1;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+        this.lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            BlockingQueue<PendingMessage> lane = new ArrayBlockingQueue<>(queueCapacity);
+            lanes.add(lane);
+            Gauge.builder("message.write.queue.size", lane, BlockingQueue::size)
+                    .description("Messages waiting to be persisted")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        this.batchSizeSummary = DistributionSummary.builder("message.write.batch.size")
+                .description("Number of messages per insert")
+                .tag("mode", batched ? MODE_BATCHED : "single")
+                .register(meterRegistry);
+        this.persistLatency = Timer.builder("message.write.latency")
+                .description("Time between a message being accepted and persisted")
+                .tag("mode", batched ? MODE_BATCHED : "single")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.failedMessages = Counter.builder("message.write.failures")
+                .description("Messages rejected by the database, or still unwritten at shutdown")
+                .register(meterRegistry);
+        this.retries = Counter.builder("message.write.retries")
+                .description("Write attempts retried after a failure")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < lanes.size(); i++) {
+            BlockingQueue<PendingMessage> lane = lanes.get(i);
+            writers.add(Thread.ofPlatform()
+                    .name("message-writer-" + i)
+                    .daemon(true)
+                    .start(() -> runWriter(lane)));
+        }
+        log.info("Message writer started with {} lanes in {} mode", lanes.size(), batched ? MODE_BATCHED : "single");
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Queues a message for persistence. Blocks up to the offer timeout when the lane is full.
+     * @param message The message, with ID and timestamps already assigned.
+     * @throws LimitExceededException if the lane stays full, so the sender can retry.
+     */
+    public void enqueue(Message message) {
+        BlockingQueue<PendingMessage> lane = lanes.get(Math.floorMod(message.getConversationId().hashCode(), lanes.size()));
+        try {
+            if (lane.offer(new PendingMessage(message, System.nanoTime()), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.warn("Message writer lane is full. Rejecting message for conversation {}", message.getConversationId());
+        throw new LimitExceededException(MessageError.MESSAGE_SEND_OVERLOADED);
+    }
+
+    private void runWriter(BlockingQueue<PendingMessage> lane) {
+        while (running || !lane.isEmpty()) {
+            List<PendingMessage> batch = new ArrayList<>(batchSize);
+            try {
+                PendingMessage first = lane.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                long deadline = first.acceptedAtNanos() + maxLatencyNanos;
+                while (batch.size() < batchSize) {
+                    lane.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) break;
+                    PendingMessage next = lane.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Only shutdown stops a writer; whatever was already drained is still written below
+                log.warn("Message writer interrupted with {} drained messages", batch.size());
+            }
+
+            if (batch.isEmpty()) continue;
+            try {
+                write(batch);
+            } catch (Exception e) {
+                log.error("Message writer failed on {} messages", batch.size(), e);
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        List<Message> messages = batch.stream().map(PendingMessage::message).toList();
+        List<Message> unwritten = persist(messages);
+        if (!unwritten.isEmpty()) {
+            failedMessages.increment(unwritten.size());
+            log.error("Dropping {} messages that could not be persisted: {}", unwritten.size(),
+                    unwritten.stream().map(Message::getId).toList());
+            notifyFailed(unwritten);
+        }
+
+        // Dropped messages are settled too: reloading the tail can no longer miss them
+        messageTailCache.markPersisted(messages, unwritten);
+
+        Set<String> unwrittenIds = unwritten.stream().map(Message::getId).collect(Collectors.toSet());
+        List<PendingMessage> written = batch.stream()
+                .filter(pending -> !unwrittenIds.contains(pending.message().getId()))
+                .toList();
+        if (written.isEmpty()) return;
+
+        long now = System.nanoTime();
+        batchSizeSummary.record(written.size());
+        written.forEach(pending -> persistLatency.record(now - pending.acceptedAtNanos(), TimeUnit.NANOSECONDS));
+        updateConversations(written.stream().map(PendingMessage::message).toList());
+    }
+
+    /**
+     * Writes the messages, retrying with exponential backoff until the database accepts them.
+     * Messages the database rejects because of their content are isolated and not retried.
+     * Once the service is shutting down, retrying stops after {@code maxRetries} attempts.
+     * @return The messages that could not be persisted.
+     */
+    private List<Message> persist(List<Message> messages) {
+        try {
+            messageRepositoryCustom.insertAll(messages);
+            return List.of();
+        } catch (Exception e) {
+            log.warn("insertMany of {} messages failed, retrying", messages.size(), e);
+        }
+
+        List<Message> remaining = messages;
+        List<Message> rejected = new ArrayList<>();
+        long backoffMs = retryBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            retries.increment();
+            try {
+                // Saves are upserts by the preassigned ID, so repeating a partially applied write is safe
+                messageRepositoryCustom.saveAll(remaining);
+                return rejected;
+            } catch (Exception e) {
+                if (!isRetryable(e)) {
+                    remaining = isolateRejected(remaining, rejected);
+                    if (remaining.isEmpty()) return rejected;
+                } else {
+                    log.warn("Retry {} of {} messages failed", attempt, remaining.size(), e);
+                }
+            }
+
+            if (!running && attempt >= maxRetries) {
+                rejected.addAll(remaining);
+                return rejected;
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                // Keep retrying; the loop only gives up once shutting down
+                log.warn("Message writer interrupted while backing off");
+            }
+            backoffMs = Math.min(backoffMs * 2, maxRetryBackoffMs);
+        }
+    }
+
+    /**
+     * Saves the messages one by one to find the ones the database rejects.
+     * @param rejected Collects the rejected messages.
+     * @return The messages that failed for a retryable reason.
+     */
+    private List<Message> isolateRejected(List<Message> messages, List<Message> rejected) {
+        List<Message> retryable = new ArrayList<>();
+        for (Message message : messages) {
+            try {
+                messageRepositoryCustom.saveAll(List.of(message));
+            } catch (Exception e) {
+                if (isRetryable(e)) {
+                    retryable.add(message);
+                } else {
+                    log.error("Message {} was rejected by the database", message.getId(), e);
+                    rejected.add(message);
+                }
+            }
+        }
+        return retryable;
+    }
+
+    /**
+     * Errors caused by the message itself are not retried; everything else, like a lost connection
+     * or a timeout, is expected to clear up.
+     */
+    private static boolean isRetryable(Exception e) {
+        return e instanceof DataAccessException
+                && !(e instanceof DataIntegrityViolationException)
+                && !(e instanceof InvalidDataAccessApiUsageException);
+    }
+
+    private void notifyFailed(List<Message> unwritten) {
+        // senderId -> conversationId -> messageIds
+        Map<String, Map<String, List<String>>> idsBySender = new LinkedHashMap<>();
+        for (Message message : unwritten) {
+            idsBySender.computeIfAbsent(message.getSenderId(), key -> new LinkedHashMap<>())
+                    .computeIfAbsent(message.getConversationId(), key -> new ArrayList<>())
+                    .add(message.getId());
+        }
+
+        idsBySender.forEach((senderId, idsByConversation) -> idsByConversation.forEach((conversationId, messageIds) -> {
+            try {
+                messagingTemplate.convertAndSendToUser(senderId, MESSAGE_STATUS_QUEUE, MessageStatusResponse.builder()
+                        .conversationId(conversationId)
+                        .status(Message.MessageStatus.FAILED)
+                        .messageIds(messageIds)
+                        .build());
+            } catch (Exception e) {
+                log.error("Failed to notify sender {} of {} failed messages", senderId, messageIds.size(), e);
+            }
+            // The cached tail already holds the failed messages
+            messageTailCache.invalidate(conversationId);
+        }));
+    }
+
+    private void updateConversations(List<Message> messages) {
+        Map<String, Message> lastMessageByConversationId = new LinkedHashMap<>();
+        messages.forEach(message -> lastMessageByConversationId.put(message.getConversationId(), message));
+
+        Map<String, Map<String, Integer>> sentCountBySenderByConversationId = new LinkedHashMap<>();
+        messages.forEach(message -> sentCountBySenderByConversationId
+                .computeIfAbsent(message.getConversationId(), key -> new HashMap<>())
+                .merge(message.getSenderId(), 1, Integer::sum));
+
+        // Increments go first: they move lastMessageAt together with the counter
+        try {
+            conversationMemberRepositoryCustom.bulkIncrementUnreadCount(sentCountBySenderByConversationId, lastMessageByConversationId);
+        } catch (Exception e) {
+            // Drift is repaired by UnreadCountReconciliationService
+            log.error("Failed to increment unread counts of {} conversations", sentCountBySenderByConversationId.size(), e);
+        }
+
+        try {
+            conversationRepositoryCustom.bulkUpdateLastMessage(lastMessageByConversationId);
+            conversationMemberRepositoryCustom.bulkUpdateLastMessage(lastMessageByConversationId);
+        } catch (Exception e) {
+            log.error("Failed to update last message of {} conversations", lastMessageByConversationId.size(), e);
+        }
+    }
+
+    private record PendingMessage(Message message, long acceptedAtNanos) {
+    }
+}
@@ -0,0 +1,135 @@
+package com.linxtalk.service;
+
+import com.linxtalk.entity.Friend;
+import com.linxtalk.repository.custom.FriendRepositoryCustom;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.linxtalk.utils.Constant.FRIEND_INDEX_BUILD_KEY_PREFIX;
+import static com.linxtalk.utils.Constant.FRIEND_INDEX_KEY_PREFIX;
+import static com.linxtalk.utils.Constant.PRESENCE_ONLINE_KEY_PREFIX;
+import static com.linxtalk.utils.Constant.PRESENCE_ONLINE_USERS_KEY;
+
+/**
+ * Per-user Redis index of friend IDs scored by interaction score.
+ * The index is built lazily from the friends collection and dropped whenever a friendship changes,
+ * so it never has to be patched incrementally. A build claims a token first and only stores the index
+ * if no invalidation removed the token in the meantime, so a stale index is never cached.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OnlineFriendIndexService {
+
+    private static final long INDEX_TTL_SECONDS = 24 * 60 * 60;
+    private static final int SCAN_CHUNK_SIZE = 200;
+    private static final long BUILD_TOKEN_TTL_SECONDS = 60;
+    private static final int MAX_BUILD_ATTEMPTS = 2;
+
+    private final StringRedisTemplate redisTemplate;
+    private final FriendRepositoryCustom friendRepositoryCustom;
+    private final PresenceService presenceService;
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> onlineFriendsScript;
+    private final RedisScript<Long> friendIndexBuildScript;
+
+    /**
+     * Get the IDs of the top online friends of a user, highest interaction score first.
+     * Ties on interaction score are ordered by descending friend ID.
+     * @param userId The ID of the user.
+     * @param limit Maximum number of online friends to return.
+     * @return {@code List<String>} of friend IDs.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getTopOnlineFriendIds(String userId, int limit) {
+        if (limit <= 0) return Collections.emptyList();
+
+        String indexKey = FRIEND_INDEX_KEY_PREFIX + userId;
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(indexKey))) {
+                List<Friend> friends = Collections.emptyList();
+                boolean stored = false;
+                for (int attempt = 1; attempt <= MAX_BUILD_ATTEMPTS && !stored; attempt++) {
+                    // The token is claimed before reading, so an invalidation after the read discards this build
+                    String token = claimBuild(userId);
+                    friends = friendRepositoryCustom.getFriendScores(userId);
+                    if (friends.isEmpty()) return Collections.emptyList();
+                    stored = storeIndex(userId, token, friends);
+                }
+                if (!stored) {
+                    // Friendships keep changing while building: answer from the friends just read
+                    return topOnline(friends, limit);
+                }
+            }
+            List<String> friendIds = redisTemplate.execute(onlineFriendsScript,
+                    List.of(indexKey, PRESENCE_ONLINE_USERS_KEY),
+                    String.valueOf(limit), String.valueOf(SCAN_CHUNK_SIZE), PRESENCE_ONLINE_KEY_PREFIX);
+            return friendIds != null ? friendIds : Collections.emptyList();
+        } catch (Exception e) {
+            log.error("Failed to read online friends for user: {}", userId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Drops the friend index of both users so it is rebuilt on the next read.
+     */
+    public void invalidate(String userId, String otherUserId) {
+        // Deleting the build tokens makes builds in progress discard what they read
+        redisTemplate.delete(List.of(
+                FRIEND_INDEX_KEY_PREFIX + userId, FRIEND_INDEX_BUILD_KEY_PREFIX + userId,
+                FRIEND_INDEX_KEY_PREFIX + otherUserId, FRIEND_INDEX_BUILD_KEY_PREFIX + otherUserId));
+    }
+
+    private String claimBuild(String userId) {
+        String token = UUID.randomUUID().toString();
+        redisTemplate.opsForValue().set(FRIEND_INDEX_BUILD_KEY_PREFIX + userId, token, Duration.ofSeconds(BUILD_TOKEN_TTL_SECONDS));
+        return token;
+    }
+
+    /**
+     * @return false when the index was invalidated since the build token was claimed, in which case nothing is stored.
+     */
+    private boolean storeIndex(String userId, String token, List<Friend> friends) {
+        List<String> args = new ArrayList<>(friends.size() * 2 + 2);
+        args.add(token);
+        args.add(String.valueOf(INDEX_TTL_SECONDS));
+        for (Friend friend : friends) {
+            args.add(String.valueOf(score(friend)));
+            args.add(friend.getFriendId());
+        }
+        Long stored = redisTemplate.execute(friendIndexBuildScript,
+                List.of(FRIEND_INDEX_KEY_PREFIX + userId, FRIEND_INDEX_BUILD_KEY_PREFIX + userId),
+                args.toArray());
+        return Long.valueOf(1).equals(stored);
+    }
+
+    private List<String> topOnline(List<Friend> friends, int limit) {
+        List<Friend> sorted = friends.stream()
+                .sorted(Comparator.comparingInt(OnlineFriendIndexService::score).reversed()
+                        .thenComparing(Friend::getFriendId, Comparator.reverseOrder()))
+                .toList();
+        Map<String, Boolean> onlineStatuses = presenceService.getOnlineStatuses(
+                sorted.stream().map(Friend::getFriendId).toList());
+        return sorted.stream()
+                .map(Friend::getFriendId)
+                .filter(friendId -> onlineStatuses.getOrDefault(friendId, false))
+                .limit(limit)
+                .toList();
+    }
+
+    private static int score(Friend friend) {
+        return friend.getInteractionScore() != null ? friend.getInteractionScore() : 0;
+    }
+}
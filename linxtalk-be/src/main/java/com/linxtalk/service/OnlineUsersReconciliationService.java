@@ -0,0 +1,108 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.ClusterJobLock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.linxtalk.utils.Constant.BACKGROUND_JOB_SCHEDULER;
+import static com.linxtalk.utils.Constant.PRESENCE_ONLINE_KEY_PREFIX;
+import static com.linxtalk.utils.Constant.PRESENCE_ONLINE_USERS_KEY;
+
+/**
+ * Repairs the online set from the self-expiring {@code presence:online:<userId>} keys.
+ * Members are only removed by the disconnect script, so a lost expiry notification or a crashed node
+ * would otherwise leave a user online forever; users online before the set existed are added.
+ * Runs on one node per interval, starting at boot.
+ */
+@Service
+@Slf4j
+public class OnlineUsersReconciliationService {
+
+    private static final String JOB_NAME = "presence-online-users";
+    private static final int SCAN_COUNT = 1000;
+    private static final int BATCH_SIZE = 500;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisScript<Long> onlineUsersReconcileScript;
+    private final ClusterJobLock clusterJobLock;
+    private final Duration lockTtl;
+    private final Counter repaired;
+
+    public OnlineUsersReconciliationService(StringRedisTemplate redisTemplate,
+                                            RedisScript<Long> onlineUsersReconcileScript,
+                                            ClusterJobLock clusterJobLock,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${presence.online-users.reconcile-interval-ms:60000}") long intervalMs) {
+        this.redisTemplate = redisTemplate;
+        this.onlineUsersReconcileScript = onlineUsersReconcileScript;
+        this.clusterJobLock = clusterJobLock;
+        this.lockTtl = Duration.ofMillis(intervalMs * 9 / 10);
+        this.repaired = Counter.builder("presence.online_users.reconcile.repaired")
+                .description("Online set members added or removed by reconciliation")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${presence.online-users.reconcile-interval-ms:60000}", scheduler = BACKGROUND_JOB_SCHEDULER)
+    public void reconcile() {
+        if (!clusterJobLock.tryAcquire(JOB_NAME, lockTtl)) return;
+
+        try {
+            long changed = 0;
+            // Stale members: in the set without an online key
+            ScanOptions memberOptions = ScanOptions.scanOptions().count(SCAN_COUNT).build();
+            try (Cursor<String> members = redisTemplate.opsForSet().scan(PRESENCE_ONLINE_USERS_KEY, memberOptions)) {
+                changed += reconcileAll(members, "");
+            }
+            // Missing members: an online key without a set member
+            ScanOptions keyOptions = ScanOptions.scanOptions().match(PRESENCE_ONLINE_KEY_PREFIX + "*").count(SCAN_COUNT).build();
+            try (Cursor<String> keys = redisTemplate.scan(keyOptions)) {
+                changed += reconcileAll(keys, PRESENCE_ONLINE_KEY_PREFIX);
+            }
+            repaired.increment(changed);
+            if (changed > 0) {
+                log.info("Repaired {} online set members", changed);
+            }
+        } catch (Exception e) {
+            log.error("Failed to reconcile the online set", e);
+        }
+    }
+
+    private long reconcileAll(Cursor<String> cursor, String prefix) {
+        long changed = 0;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        while (cursor.hasNext()) {
+            batch.add(cursor.next().substring(prefix.length()));
+            if (batch.size() >= BATCH_SIZE) {
+                changed += reconcileBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            changed += reconcileBatch(batch);
+        }
+        return changed;
+    }
+
+    /**
+     * The check and the fix run in one script, so a user connecting or disconnecting meanwhile is not misclassified.
+     */
+    private long reconcileBatch(List<String> userIds) {
+        List<String> args = new ArrayList<>(userIds.size() + 1);
+        args.add(PRESENCE_ONLINE_KEY_PREFIX);
+        args.addAll(userIds);
+        Long changed = redisTemplate.execute(onlineUsersReconcileScript, List.of(PRESENCE_ONLINE_USERS_KEY), args.toArray());
+        return changed != null ? changed : 0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.linxtalk.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import static com.linxtalk.utils.Constant.PAGE_COUNT_KEY_PREFIX;
+
+/**
+ * Totals for paged lists, cached in Redis so paging itself never has to run a count.
+ * Counts are only computed when a client asks for them, kept per user and list in a hash with a short TTL and dropped by the services
+ * that change the counted rows; between the two a total may briefly be approximate.
+ */
+@Service
+@Slf4j
+public class PageCountService {
+
+    public static final String SCOPE_CONVERSATIONS = "conversations";
+    public static final String SCOPE_FRIENDS = "friends";
+    public static final String SCOPE_FRIEND_REQUESTS = "friend-requests";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration ttl;
+
+    public PageCountService(StringRedisTemplate redisTemplate,
+                            @Value("${paging.count-cache.ttl-ms:60000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofMillis(ttlMs);
+    }
+
+    /**
+     * Get a cached total, counting it with {@code counter} on a miss.
+     * @param scope The counted list, e.g. {@link #SCOPE_FRIENDS}.
+     * @param userId The ID of the user owning the list.
+     * @param filter The filter applied to the list, or {@code null}.
+     * @param counter Counts the list.
+     * @return The total.
+     */
+    public long getCount(String scope, String userId, Object filter, LongSupplier counter) {
+        String key = key(scope, userId);
+        String field = filter != null ? filter.toString() : "all";
+        try {
+            Object cached = redisTemplate.opsForHash().get(key, field);
+            if (cached != null) {
+                return Long.parseLong(cached.toString());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read cached count {} {}", key, field, e);
+        }
+
+        long count = counter.getAsLong();
+        try {
+            redisTemplate.opsForHash().put(key, field, String.valueOf(count));
+            redisTemplate.expire(key, ttl);
+        } catch (Exception e) {
+            log.warn("Failed to cache count {} {}", key, field, e);
+        }
+        return count;
+    }
+
+    /**
+     * Drops every cached total of a list, whatever the filter, for some users.
+     * @param scope The counted list.
+     * @param userIds The IDs of the users whose totals changed.
+     */
+    public void evict(String scope, String... userIds) {
+        try {
+            redisTemplate.delete(Arrays.stream(userIds).map(userId -> key(scope, userId)).toList());
+        } catch (Exception e) {
+            log.warn("Failed to evict {} counts of {}", scope, Arrays.toString(userIds), e);
+        }
+    }
+
+    private static String key(String scope, String userId) {
+        return PAGE_COUNT_KEY_PREFIX + scope + ":" + userId;
+    }
+}
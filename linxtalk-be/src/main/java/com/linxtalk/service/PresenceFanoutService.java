@@ -0,0 +1,85 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.EncodedPayloadConverter;
+import com.linxtalk.dto.response.PresenceResponse;
+import com.linxtalk.event.PresenceChangeEvent;
+import com.linxtalk.repository.custom.FriendRepositoryCustom;
+import com.linxtalk.utils.EncodedPayload;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.linxtalk.utils.Constant.PRESENCE_QUEUE;
+
+/**
+ * Pushes presence changes to online friends over {@code /user/queue/presence}.
+ * Changes are coalesced per user within a window (only the latest state is kept),
+ * and every recipient receives at most one frame per window listing all changed friends.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceFanoutService {
+
+    private final FriendRepositoryCustom friendRepositoryCustom;
+    private final PresenceService presenceService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final EncodedPayloadConverter encodedPayloadConverter;
+
+    private final Map<String, PresenceChangeEvent> pendingChanges = new ConcurrentHashMap<>();
+
+    public void record(PresenceChangeEvent event) {
+        pendingChanges.put(event.getUserId(), event);
+    }
+
+    @Scheduled(fixedDelayString = "${presence.fanout.window-ms:2000}")
+    public void flush() {
+        if (pendingChanges.isEmpty()) return;
+
+        List<PresenceChangeEvent> changes = new ArrayList<>();
+        Iterator<Map.Entry<String, PresenceChangeEvent>> iterator = pendingChanges.entrySet().iterator();
+        while (iterator.hasNext()) {
+            changes.add(iterator.next().getValue());
+            iterator.remove();
+        }
+
+        try {
+            // One $in query for every changed user, so a reconnect storm costs one query per window
+            Map<String, List<String>> friendIdsByUserId = friendRepositoryCustom.getFriendIdsByUserIds(
+                    changes.stream().map(PresenceChangeEvent::getUserId).toList());
+            Set<String> candidateRecipients = new HashSet<>();
+            friendIdsByUserId.values().forEach(candidateRecipients::addAll);
+
+            Map<String, Boolean> onlineStatuses = presenceService.getOnlineStatuses(new ArrayList<>(candidateRecipients));
+
+            Map<String, List<PresenceResponse>> deltasByRecipient = new HashMap<>();
+            for (PresenceChangeEvent change : changes) {
+                PresenceResponse delta = PresenceResponse.builder()
+                        .userId(change.getUserId())
+                        .isOnline(change.isOnline())
+                        .lastSeenAt(change.getLastSeenAt())
+                        .build();
+                for (String friendId : friendIdsByUserId.getOrDefault(change.getUserId(), List.of())) {
+                    if (onlineStatuses.getOrDefault(friendId, false)) {
+                        deltasByRecipient.computeIfAbsent(friendId, k -> new ArrayList<>()).add(delta);
+                    }
+                }
+            }
+
+            // Recipients whose friends changed the same way share one encoded body
+            Map<List<PresenceResponse>, EncodedPayload> encodedByDeltas = new HashMap<>();
+            deltasByRecipient.forEach((recipientId, deltas) ->
+                    messagingTemplate.convertAndSendToUser(recipientId, PRESENCE_QUEUE,
+                            encodedByDeltas.computeIfAbsent(deltas, encodedPayloadConverter::encode)));
+
+            log.debug("Pushed {} presence changes to {} recipients", changes.size(), deltasByRecipient.size());
+        } catch (Exception e) {
+            log.error("Failed to push {} presence changes", changes.size(), e);
+        }
+    }
+}
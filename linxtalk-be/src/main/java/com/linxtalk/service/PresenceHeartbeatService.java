@@ -0,0 +1,89 @@
+package com.linxtalk.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.linxtalk.utils.Constant.PRESENCE_TTL_SECONDS;
+
+/**
+ * Coalesces STOMP heartbeats so the inbound channel never talks to Redis.
+ * Sessions seen since the last flush are refreshed together in one pipelined batch.
+ */
+@Service
+@Slf4j
+public class PresenceHeartbeatService {
+
+    private final PresenceService presenceService;
+    private final Map<String, String> seenSessions = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSize;
+    private final Timer flushLatency;
+
+    public PresenceHeartbeatService(PresenceService presenceService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${presence.heartbeat.flush-interval-ms:15000}") long flushIntervalMs) {
+        // A session must be refreshed at least twice per TTL, otherwise it can expire between two flushes.
+        long maxFlushIntervalMs = PRESENCE_TTL_SECONDS * 1000L / 2;
+        if (flushIntervalMs <= 0 || flushIntervalMs > maxFlushIntervalMs) {
+            throw new IllegalStateException("presence.heartbeat.flush-interval-ms must be between 1 and " + maxFlushIntervalMs);
+        }
+        this.presenceService = presenceService;
+        this.batchSize = DistributionSummary.builder("presence.heartbeat.flush.batch.size")
+                .description("Number of sessions refreshed per heartbeat flush")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("presence.heartbeat.flush.latency")
+                .description("Time spent refreshing a heartbeat batch in Redis")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records that a session sent a heartbeat. Cheap enough to run on the inbound channel thread.
+     * @param userId The ID of the user.
+     * @param sessionId The ID of the session.
+     */
+    public void markSeen(String userId, String sessionId) {
+        if (userId == null || sessionId == null) return;
+        seenSessions.put(sessionId, userId);
+    }
+
+    /**
+     * Drops a pending heartbeat for a session that has disconnected.
+     * @param sessionId The ID of the session.
+     */
+    public void forget(String sessionId) {
+        if (sessionId == null) return;
+        seenSessions.remove(sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${presence.heartbeat.flush-interval-ms:15000}")
+    public void flush() {
+        if (seenSessions.isEmpty()) return;
+
+        Map<String, String> batch = new HashMap<>();
+        Iterator<Map.Entry<String, String>> iterator = seenSessions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, String> entry = iterator.next();
+            batch.put(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+
+        batchSize.record(batch.size());
+        flushLatency.record(() -> presenceService.refreshSessionHeartbeats(batch));
+        log.debug("Refreshed heartbeat for {} sessions", batch.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
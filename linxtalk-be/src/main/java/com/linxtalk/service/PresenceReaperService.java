@@ -0,0 +1,87 @@
+package com.linxtalk.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.linxtalk.utils.Constant.PRESENCE_OFFLINE_DEADLINE_KEY;
+import static com.linxtalk.utils.Constant.PRESENCE_SESSION_DEADLINE_KEY;
+
+/**
+ * Presence expiry engine used instead of Redis keyspace notifications.
+ * Deadlines live in sorted sets scored by expiry time on the Redis clock; every node polls them, but entries are
+ * popped atomically by a Lua script so each expiry is processed exactly once cluster-wide.
+ */
+@Service
+@ConditionalOnProperty(name = "presence.expiry.mode", havingValue = "reaper")
+@Slf4j
+public class PresenceReaperService {
+
+    private final StringRedisTemplate redisTemplate;
+    private final PresenceService presenceService;
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> presenceReapScript;
+    private final int batchSize;
+
+    @SuppressWarnings("rawtypes")
+    public PresenceReaperService(StringRedisTemplate redisTemplate,
+                                 PresenceService presenceService,
+                                 RedisScript<List> presenceReapScript,
+                                 @Value("${presence.reaper.batch-size:500}") int batchSize) {
+        this.redisTemplate = redisTemplate;
+        this.presenceService = presenceService;
+        this.presenceReapScript = presenceReapScript;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${presence.reaper.interval-ms:1000}")
+    public void reap() {
+        reapExpiredSessions();
+        reapPendingOfflineUsers();
+    }
+
+    private void reapExpiredSessions() {
+        List<String> due;
+        do {
+            due = popDue(PRESENCE_SESSION_DEADLINE_KEY);
+            for (String member : due) {
+                // Member format: <sessionId>:<userId>
+                int separator = member.lastIndexOf(':');
+                if (separator <= 0) continue;
+                String sessionId = member.substring(0, separator);
+                String userId = member.substring(separator + 1);
+                log.info("Session heartbeat expired for user: {}, session: {}. Triggering cleanup.", userId, sessionId);
+                presenceService.removeUserPresenceBySessionExpire(userId, sessionId);
+            }
+        } while (due.size() == batchSize);
+    }
+
+    private void reapPendingOfflineUsers() {
+        List<String> due;
+        do {
+            due = popDue(PRESENCE_OFFLINE_DEADLINE_KEY);
+            for (String userId : due) {
+                log.info("Pending offline deadline reached for user: {}. Finalizing DB update.", userId);
+                presenceService.performOfflineDatabaseUpdate(userId);
+            }
+        } while (due.size() == batchSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> popDue(String deadlineKey) {
+        try {
+            List<String> due = redisTemplate.execute(presenceReapScript, List.of(deadlineKey), String.valueOf(batchSize));
+            return due != null ? due : Collections.emptyList();
+        } catch (Exception e) {
+            log.error("Failed to pop due presence deadlines from {}", deadlineKey, e);
+            return Collections.emptyList();
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.linxtalk.service;
 
-import com.linxtalk.repository.UserRepository;
+import com.linxtalk.component.OnlineStatusCache;
+import com.linxtalk.event.PresenceChangeEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 import static com.linxtalk.utils.Constant.*;
 
@@ -20,28 +24,44 @@ import static com.linxtalk.utils.Constant.*;
 public class PresenceService {
 
     private final StringRedisTemplate redisTemplate;
-    private final UserRepository userRepository;
+    private final LastSeenWriteBehindService lastSeenWriteBehindService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OnlineStatusCache onlineStatusCache;
+    private final RedisScript<Long> presenceConnectScript;
+    private final RedisScript<Long> presenceDisconnectScript;
+    private final RedisScript<Long> presenceHeartbeatScript;
+
+    @Value("${presence.expiry.mode:keyspace}")
+    private String expiryMode;
 
     /**
-     * Gets the online status for a collection of user IDs efficiently using Redis pipelining.
+     * Gets the online status for a collection of user IDs.
+     * Statuses are served from the local OnlineStatusCache first; only misses go to Redis, using pipelining.
      * @param userIds The collection of user IDs to check.
      * @return A map where the key is the userId and the value is true if online, false otherwise.
      */
     public Map<String, Boolean> getOnlineStatuses(List<String> userIds) {
         if (userIds == null || userIds.isEmpty()) return Collections.emptyMap();
 
+        Map<String, Boolean> statusMap = new HashMap<>(onlineStatusCache.getAllPresent(userIds));
+        List<String> missedUserIds = userIds.stream()
+                .filter(userId -> !statusMap.containsKey(userId))
+                .distinct()
+                .toList();
+        if (missedUserIds.isEmpty()) return statusMap;
+
         try {
             List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
 
-                for (String userId : userIds) {
+                for (String userId : missedUserIds) {
                     byte[] onlineKey = (PRESENCE_ONLINE_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
                     connection.keyCommands().exists(onlineKey);
                 }
                 return null;
             });
 
-            Map<String, Boolean> statusMap = new HashMap<>();
-            for (int i = 0; i < userIds.size(); i++) {
+            Map<String, Boolean> fetchedStatuses = new HashMap<>();
+            for (int i = 0; i < missedUserIds.size(); i++) {
                 Object result = results.get(i);
                 boolean isOnline = false;
                 if(result instanceof Boolean resultBoolean) {
@@ -50,17 +70,20 @@ public class PresenceService {
                 if(result instanceof Long resultLong) {
                     isOnline = resultLong > 0;
                 }
-                statusMap.put(userIds.get(i), isOnline);
+                fetchedStatuses.put(missedUserIds.get(i), isOnline);
             }
+            onlineStatusCache.putAll(fetchedStatuses);
+            statusMap.putAll(fetchedStatuses);
             return statusMap;
         } catch (Exception e) {
             log.error("Failed to fetch online statuses for batch", e);
-            return Collections.emptyMap();
+            return statusMap;
         }
     }
 
     /**
-     * Updates the user's online status in Redis and refreshes lastSeenAt in MongoDB.
+     * Updates the user's online status in Redis.
+     * All presence keys are written by one Lua script so a connect is a single round trip.
      * @param userId The ID of the user.
      * @param sessionId The ID of the current session.
      */
@@ -68,16 +91,17 @@ public class PresenceService {
         if (userId == null || sessionId == null) return;
 
         try {
-            String userKey = PRESENCE_USER_KEY_PREFIX + userId;
-            String sessionKey = PRESENCE_SESSION_KEY_PREFIX + sessionId + ":" + userId;
-            String offlineKey = PRESENCE_OFFLINE_KEY + userId;
-            String onlineKey = PRESENCE_ONLINE_KEY_PREFIX + userId;
-
-            redisTemplate.opsForSet().add(userKey, sessionId);
-            redisTemplate.opsForValue().set(sessionKey, "ONLINE", PRESENCE_TTL_SECONDS, TimeUnit.SECONDS);
-            redisTemplate.opsForValue().set(onlineKey, "1",  PRESENCE_TTL_SECONDS, TimeUnit.SECONDS);
-            redisTemplate.delete(offlineKey);
+            Long firstSession = redisTemplate.execute(presenceConnectScript,
+                    presenceKeys(userId, sessionId),
+                    sessionId, String.valueOf(PRESENCE_TTL_SECONDS), userId,
+                    reaperFlag(), String.valueOf(System.currentTimeMillis()), PRESENCE_INVALIDATION_CHANNEL);
 
+            if (Long.valueOf(1).equals(firstSession)) {
+                eventPublisher.publishEvent(PresenceChangeEvent.builder()
+                        .userId(userId)
+                        .online(true)
+                        .build());
+            }
             log.debug("User {} session {} is now online", userId, sessionId);
         } catch (Exception e) {
             log.error("Failed to update presence for user: {}", userId, e);
@@ -85,22 +109,37 @@ public class PresenceService {
     }
 
     /**
-     * Refreshes the session heartbeat TTL in Redis.
-     * Called on every STOMP heartbeat to keep the session alive.
-     * Only refreshes the session key TTL — no redundant writes.
-     * @param userId The ID of the user.
-     * @param sessionId The ID of the current session.
+     * Refreshes the TTL of a batch of live sessions in one pipelined round trip,
+     * plus one script call that pushes back their deadlines in reaper mode.
+     * Called by the PresenceHeartbeatService with the sessions seen since the last flush.
+     * @param sessionUsers Map of sessionId to userId.
      */
-    public void refreshSessionHeartbeat(String userId, String sessionId) {
-        if (userId == null || sessionId == null) return;
+    public void refreshSessionHeartbeats(Map<String, String> sessionUsers) {
+        if (sessionUsers == null || sessionUsers.isEmpty()) return;
 
         try {
-            String sessionKey = PRESENCE_SESSION_KEY_PREFIX + sessionId + ":" + userId;
-            String onlineKey = PRESENCE_ONLINE_KEY_PREFIX + userId;
-            redisTemplate.expire(onlineKey, PRESENCE_TTL_SECONDS, TimeUnit.SECONDS);
-            redisTemplate.expire(sessionKey, PRESENCE_TTL_SECONDS, TimeUnit.SECONDS);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                Set<String> refreshedUsers = new HashSet<>();
+                for (Map.Entry<String, String> entry : sessionUsers.entrySet()) {
+                    String sessionKey = PRESENCE_SESSION_KEY_PREFIX + entry.getKey() + ":" + entry.getValue();
+                    connection.keyCommands().expire(sessionKey.getBytes(StandardCharsets.UTF_8), PRESENCE_TTL_SECONDS);
+                    if (refreshedUsers.add(entry.getValue())) {
+                        String onlineKey = PRESENCE_ONLINE_KEY_PREFIX + entry.getValue();
+                        connection.keyCommands().expire(onlineKey.getBytes(StandardCharsets.UTF_8), PRESENCE_TTL_SECONDS);
+                    }
+                }
+                return null;
+            });
+
+            if (isReaperMode()) {
+                // Deadlines are computed from the Redis clock inside the script
+                List<String> args = new ArrayList<>(sessionUsers.size() + 1);
+                args.add(String.valueOf(PRESENCE_TTL_SECONDS));
+                sessionUsers.forEach((sessionId, userId) -> args.add(sessionId + ":" + userId));
+                redisTemplate.execute(presenceHeartbeatScript, List.of(PRESENCE_SESSION_DEADLINE_KEY), args.toArray());
+            }
         } catch (Exception e) {
-            log.error("Failed to refresh heartbeat for user: {}, session: {}", userId, sessionId, e);
+            log.error("Failed to refresh heartbeat for {} sessions", sessionUsers.size(), e);
         }
     }
 
@@ -113,20 +152,12 @@ public class PresenceService {
         if (userId == null || sessionId == null) return;
 
         try {
-            String userKey = PRESENCE_USER_KEY_PREFIX + userId;
-            String sessionKey = PRESENCE_SESSION_KEY_PREFIX + sessionId + ":" + userId;
-            
-            redisTemplate.delete(sessionKey);
-            redisTemplate.opsForSet().remove(userKey, sessionId);
-            
-            Long remainingSessions = redisTemplate.opsForSet().size(userKey);
-            
-            if (remainingSessions == null || remainingSessions == 0) {
-                redisTemplate.delete(userKey);
-                redisTemplate.delete(PRESENCE_ONLINE_KEY_PREFIX + userId);
-                String offlineKey = PRESENCE_OFFLINE_KEY + userId;
-                redisTemplate.opsForValue().set(offlineKey, "OFFLINE", 60, TimeUnit.SECONDS);
-                
+            Long result = redisTemplate.execute(presenceDisconnectScript,
+                    presenceKeys(userId, sessionId),
+                    sessionId, String.valueOf(PRESENCE_OFFLINE_TTL_SECONDS), "0", userId,
+                    reaperFlag(), String.valueOf(System.currentTimeMillis()), PRESENCE_INVALIDATION_CHANNEL);
+
+            if (Long.valueOf(1).equals(result)) {
                 log.info("User {} disconnected all sessions. Pending offline event scheduled.", userId);
             }
         } catch (Exception e) {
@@ -136,7 +167,9 @@ public class PresenceService {
 
     /**
      * Removes a specific session from the user's online status in Redis.
-     * This is called by the RedisKeyExpirationListener when a session heartbeat expires.
+     * This is called by the RedisKeyExpirationListener (or the PresenceReaperService) when a session heartbeat expires.
+     * The script only schedules the offline event if the session was still registered,
+     * so a concurrent disconnect of the same session cannot schedule it twice.
      * @param userId The ID of the user.
      * @param sessionId The ID of the session to remove.
      */
@@ -144,23 +177,12 @@ public class PresenceService {
         if (userId == null || sessionId == null) return;
 
         try {
-            String userKey = PRESENCE_USER_KEY_PREFIX + userId;
-            Long removed = redisTemplate.opsForSet().remove(userKey, sessionId);
-
-            if (removed == null || removed == 0) {
-                return;
-            }
-
-            Long remainingSessions = redisTemplate.opsForSet().size(userKey);
-
-            if (remainingSessions == null || remainingSessions == 0) {
-                redisTemplate.delete(userKey);
-                
-                redisTemplate.delete(PRESENCE_ONLINE_KEY_PREFIX + userId);
-
-                String offlineKey = PRESENCE_OFFLINE_KEY + userId;
-                redisTemplate.opsForValue().set(offlineKey, "OFFLINE", 60, TimeUnit.SECONDS);
+            Long result = redisTemplate.execute(presenceDisconnectScript,
+                    presenceKeys(userId, sessionId),
+                    sessionId, String.valueOf(PRESENCE_OFFLINE_TTL_SECONDS), "1", userId,
+                    reaperFlag(), String.valueOf(System.currentTimeMillis()), PRESENCE_INVALIDATION_CHANNEL);
 
+            if (Long.valueOf(1).equals(result)) {
                 log.info("Session {} expired for user {}. Pending offline event scheduled.", sessionId, userId);
             }
         } catch (Exception e) {
@@ -170,7 +192,8 @@ public class PresenceService {
 
     /**
      * Finalizes the offline status in the database.
-     * This is called by the RedisKeyExpirationListener when a pending key expires.
+     * This is called by the RedisKeyExpirationListener when a pending key expires,
+     * or by the PresenceReaperService when the pending offline deadline is due.
      * @param userId The ID of the user.
      */
     public void performOfflineDatabaseUpdate(String userId) {
@@ -179,8 +202,14 @@ public class PresenceService {
             Boolean isOnline = redisTemplate.hasKey(onlineKey);
 
             if (Boolean.FALSE.equals(isOnline)) {
-                userRepository.updateLastSeenAt(userId, Instant.now().minusSeconds(60));
-                log.info("User {} is now officially offline. Database updated.", userId);
+                Instant lastSeenAt = Instant.now().minusSeconds(PRESENCE_OFFLINE_TTL_SECONDS);
+                lastSeenWriteBehindService.enqueue(userId, lastSeenAt);
+                eventPublisher.publishEvent(PresenceChangeEvent.builder()
+                        .userId(userId)
+                        .online(false)
+                        .lastSeenAt(lastSeenAt)
+                        .build());
+                log.info("User {} is now officially offline. Database update queued.", userId);
             } else {
                 log.info("User {} reconnected before event firing. Skipping database update.", userId);
             }
@@ -188,4 +217,42 @@ public class PresenceService {
             log.error("Error performing offline database update for user: {}", userId, e);
         }
     }
+
+    /**
+     * Claims the finalization of a user's pending offline transition for this node.
+     * Keyspace notifications reach every node, so only the claiming node runs {@link #performOfflineDatabaseUpdate}
+     * and friends receive one offline delta instead of one per node.
+     * @param userId The ID of the user.
+     * @return {@code true} if this node won the claim.
+     */
+    public boolean claimOfflineTransition(String userId) {
+        try {
+            // Shorter than the offline grace period, so the next offline transition of the user can be claimed again
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(PRESENCE_OFFLINE_CLAIM_KEY_PREFIX + userId, "1",
+                    Duration.ofSeconds(PRESENCE_OFFLINE_TTL_SECONDS / 2));
+            return Boolean.TRUE.equals(claimed);
+        } catch (Exception e) {
+            log.error("Failed to claim offline transition for user: {}", userId, e);
+            return true;
+        }
+    }
+
+    private List<String> presenceKeys(String userId, String sessionId) {
+        return List.of(
+                PRESENCE_USER_KEY_PREFIX + userId,
+                PRESENCE_SESSION_KEY_PREFIX + sessionId + ":" + userId,
+                PRESENCE_ONLINE_KEY_PREFIX + userId,
+                PRESENCE_OFFLINE_KEY + userId,
+                PRESENCE_SESSION_DEADLINE_KEY,
+                PRESENCE_OFFLINE_DEADLINE_KEY,
+                PRESENCE_ONLINE_USERS_KEY);
+    }
+
+    private boolean isReaperMode() {
+        return PRESENCE_EXPIRY_MODE_REAPER.equals(expiryMode);
+    }
+
+    private String reaperFlag() {
+        return isReaperMode() ? "1" : "0";
+    }
 }
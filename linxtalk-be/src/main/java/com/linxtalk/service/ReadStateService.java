@@ -0,0 +1,252 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.MessageTailCache;
+import com.linxtalk.dto.response.MessageReadCountResponse;
+import com.linxtalk.dto.response.MessageReaderResponse;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.Message;
+import com.linxtalk.exception.ResourceNotFoundException;
+import com.linxtalk.repository.MessageRepository;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom.ReadWatermark;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import com.linxtalk.utils.MessageCursor;
+import com.linxtalk.utils.MessageError;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks how far each member has read a conversation as a single watermark on {@link ConversationMember}
+ * instead of appending receipts to every message.
+ * Read events are coalesced per member and flushed periodically, keeping only the furthest position.
+ * A flush recounts the unread messages of its members in parallel on a dedicated pool, off the scheduler thread;
+ * watermarks that fail to be counted or written go back to the pending set for the next flush.
+ * Per-message receipts are derived from the watermarks at query time.
+ */
+@Service
+@Slf4j
+public class ReadStateService {
+
+    private static final Comparator<MessageCursor> POSITION_ORDER =
+            Comparator.comparing(MessageCursor::createdAt).thenComparing(MessageCursor::id);
+
+    private final ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private final MessageRepository messageRepository;
+    private final MessageRepositoryCustom messageRepositoryCustom;
+    private final MessageTailCache messageTailCache;
+    private final int unreadCountCap;
+    private final int maxReaders;
+    private final DistributionSummary flushSize;
+    private final ExecutorService countExecutor;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    // Key: conversationId:userId
+    private final Map<String, PendingRead> pending = new ConcurrentHashMap<>();
+
+    public ReadStateService(ConversationMemberRepositoryCustom conversationMemberRepositoryCustom,
+                            MessageRepository messageRepository,
+                            MessageRepositoryCustom messageRepositoryCustom,
+                            MessageTailCache messageTailCache,
+                            MeterRegistry meterRegistry,
+                            @Value("${message.unread.reconcile.count-cap:999}") int unreadCountCap,
+                            @Value("${message.read.max-readers:500}") int maxReaders,
+                            @Value("${message.read.count-parallelism:8}") int countParallelism) {
+        this.conversationMemberRepositoryCustom = conversationMemberRepositoryCustom;
+        this.messageRepository = messageRepository;
+        this.messageRepositoryCustom = messageRepositoryCustom;
+        this.messageTailCache = messageTailCache;
+        this.unreadCountCap = unreadCountCap;
+        this.maxReaders = maxReaders;
+        this.flushSize = DistributionSummary.builder("message.read.flush.size")
+                .description("Read watermarks written per flush")
+                .register(meterRegistry);
+        this.countExecutor = Executors.newFixedThreadPool(countParallelism,
+                Thread.ofPlatform().name("read-state-count-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Records that a member has read a conversation up to and including a message.
+     * The watermark only moves forward and is persisted on the next flush.
+     * @param conversationId The ID of the conversation.
+     * @param userId The ID of the member.
+     * @param messageId The ID of the last read message.
+     */
+    public void markRead(String conversationId, String userId, String messageId) {
+        Message message = findMessage(conversationId, messageId);
+        enqueue(new PendingRead(conversationId, userId, MessageCursor.of(message)));
+    }
+
+    /**
+     * Starts a flush on the count pool unless the previous one is still running.
+     */
+    @Scheduled(fixedDelayString = "${message.read.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty() || !flushing.compareAndSet(false, true)) return;
+        flushPending().whenComplete((ignored, e) -> flushing.set(false));
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        // Let a running flush finish, then write what is left
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!flushing.compareAndSet(false, true) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        try {
+            flushPending().get(10, TimeUnit.SECONDS);
+        } finally {
+            countExecutor.shutdown();
+        }
+    }
+
+    private CompletableFuture<Void> flushPending() {
+        List<PendingRead> reads = new ArrayList<>();
+        for (String key : new ArrayList<>(pending.keySet())) {
+            PendingRead read = pending.remove(key);
+            if (read != null) reads.add(read);
+        }
+        if (reads.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        List<CompletableFuture<ReadWatermark>> counts = reads.stream()
+                .map(read -> CompletableFuture.supplyAsync(() -> toWatermark(read), countExecutor))
+                .toList();
+        return CompletableFuture.allOf(counts.toArray(CompletableFuture[]::new)).handle((ignored, e) -> {
+            List<ReadWatermark> watermarks = new ArrayList<>();
+            List<PendingRead> written = new ArrayList<>();
+            for (int i = 0; i < reads.size(); i++) {
+                CompletableFuture<ReadWatermark> count = counts.get(i);
+                if (count.isCompletedExceptionally()) {
+                    enqueue(reads.get(i));
+                } else if (count.join() != null) {
+                    watermarks.add(count.join());
+                    written.add(reads.get(i));
+                }
+            }
+            if (e != null) {
+                log.error("Failed to count unread messages of {} members", reads.size() - written.size(), e);
+            }
+
+            try {
+                conversationMemberRepositoryCustom.bulkUpdateReadWatermarks(watermarks);
+                flushSize.record(watermarks.size());
+            } catch (Exception writeError) {
+                log.error("Failed to flush {} read watermarks, retrying on the next flush", watermarks.size(), writeError);
+                written.forEach(this::enqueue);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Counts the unread messages after the new watermark up to the lastMessageAt the stored counter covers,
+     * so the difference can be applied on top of increments that land afterwards.
+     * @return The watermark, or {@code null} when the member is no longer active.
+     */
+    private ReadWatermark toWatermark(PendingRead read) {
+        ConversationMember state = conversationMemberRepositoryCustom.getUnreadState(read.conversationId(), read.userId());
+        if (state == null) return null;
+
+        MessageCursor position = read.position();
+        int unreadCount = state.getLastMessageAt() == null ? 0 : (int) messageRepositoryCustom.countUnread(
+                read.conversationId(), read.userId(), position.createdAt(), state.getLastMessageAt(), unreadCountCap);
+        int stored = state.getUnreadCount() != null ? state.getUnreadCount() : 0;
+        return new ReadWatermark(read.conversationId(), read.userId(), position.id(), position.createdAt(),
+                unreadCount - stored);
+    }
+
+    private void enqueue(PendingRead read) {
+        pending.merge(read.conversationId() + ":" + read.userId(), read,
+                (current, next) -> POSITION_ORDER.compare(next.position(), current.position()) > 0 ? next : current);
+    }
+
+    /**
+     * Get how many members, other than the sender, have read each message.
+     * @param conversationId The ID of the conversation.
+     * @param messageIds The IDs of the messages.
+     * @return The read count of every message found in the conversation.
+     */
+    public List<MessageReadCountResponse> getReadCounts(String conversationId, Collection<String> messageIds) {
+        List<ConversationMember> watermarks = conversationMemberRepositoryCustom.getReadWatermarks(conversationId);
+        Map<String, Instant> lastReadAtByUserId = new HashMap<>();
+        watermarks.forEach(member -> lastReadAtByUserId.put(member.getUserId(), member.getLastReadAt()));
+        long[] sortedReadAt = watermarks.stream()
+                .map(ConversationMember::getLastReadAt)
+                .filter(Objects::nonNull)
+                .mapToLong(Instant::toEpochMilli)
+                .sorted()
+                .toArray();
+
+        return messageRepository.findAllById(messageIds).stream()
+                .filter(message -> Objects.equals(message.getConversationId(), conversationId))
+                .map(message -> {
+                    long sentAt = message.getCreatedAt().toEpochMilli();
+                    int readCount = sortedReadAt.length - lowerBound(sortedReadAt, sentAt);
+                    Instant senderReadAt = lastReadAtByUserId.get(message.getSenderId());
+                    if (senderReadAt != null && senderReadAt.toEpochMilli() >= sentAt) {
+                        readCount--;
+                    }
+                    return MessageReadCountResponse.builder()
+                            .messageId(message.getId())
+                            .readCount(readCount)
+                            .build();
+                })
+                .toList();
+    }
+
+    /**
+     * Get the members, other than the sender, whose watermark is at or past a message, earliest reader first.
+     * @param conversationId The ID of the conversation.
+     * @param messageId The ID of the message.
+     * @return {@code List<MessageReaderResponse>}
+     */
+    public List<MessageReaderResponse> getReaders(String conversationId, String messageId) {
+        Message message = findMessage(conversationId, messageId);
+        return conversationMemberRepositoryCustom.getReaders(conversationId, message.getCreatedAt(), maxReaders).stream()
+                .filter(member -> !Objects.equals(member.getUserId(), message.getSenderId()))
+                .map(member -> MessageReaderResponse.builder()
+                        .userId(member.getUserId())
+                        .displayName(member.getDisplayName())
+                        .avatarUrl(member.getAvatarUrl())
+                        .readAt(member.getLastReadAt())
+                        .build())
+                .toList();
+    }
+
+    private Message findMessage(String conversationId, String messageId) {
+        // A message that was just sent may still be waiting in the write-behind queue, but it is in the tail cache
+        return messageTailCache.find(conversationId, messageId)
+                .or(() -> messageRepository.findById(messageId))
+                .filter(message -> Objects.equals(message.getConversationId(), conversationId))
+                .orElseThrow(() -> new ResourceNotFoundException(MessageError.MESSAGE_NOT_FOUND, messageId));
+    }
+
+    private static int lowerBound(long[] sorted, long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) return -index - 1;
+        while (index > 0 && sorted[index - 1] == value) index--;
+        return index;
+    }
+
+    private record PendingRead(String conversationId, String userId, MessageCursor position) {
+    }
+}
@@ -1,33 +1,197 @@
 package com.linxtalk.service;
 
 import com.linxtalk.security.JwtUtil;
-import lombok.RequiredArgsConstructor;
+import com.linxtalk.security.VerifiedClaims;
+import com.linxtalk.utils.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.TimeUnit;
 
+import static com.linxtalk.utils.Constant.BACKGROUND_JOB_SCHEDULER;
+import static com.linxtalk.utils.Constant.TOKEN_BLACKLIST_CHANNEL;
+
+/**
+ * Revoked tokens, stored in Redis under {@code blacklist:<token id>} until they expire.
+ * A node-local Bloom filter of revoked token IDs sits in front of Redis, so only filter hits pay for a Redis lookup.
+ * The filter is built from Redis on startup and whenever the blacklist channel is (re)subscribed, so revocations
+ * published while the subscription was down are not missed, and is updated through the channel whenever any node
+ * revokes a token. It is also rebuilt periodically to drop expired entries, at least once per access token lifetime.
+ * Until the first build succeeds every check goes to Redis.
+ * Nodes running a version from before the filter write {@code blacklist:<token>} without publishing it; while such
+ * nodes are running, {@code jwt.blacklist.check-legacy-keys} makes every check look that key up as well.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class TokenBlacklistService {
 
     private static final String BLACKLIST_PREFIX = "blacklist:";
+    private static final int SCAN_COUNT = 1000;
 
     private final StringRedisTemplate redisTemplate;
     private final JwtUtil jwtUtil;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final long rebuildIntervalMs;
+    private final boolean checkLegacyKeys;
+    private final Counter filterHits;
+    private final Counter filterMisses;
+    private volatile BloomFilter filter;
+    // Filter being rebuilt, which also receives revocations made during the scan
+    private volatile BloomFilter building;
+    private volatile boolean rebuildRequested;
+    private volatile long lastBuiltAt;
+
+    public TokenBlacklistService(StringRedisTemplate redisTemplate,
+                                 JwtUtil jwtUtil,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${jwt.blacklist.bloom.expected-insertions:100000}") long expectedInsertions,
+                                 @Value("${jwt.blacklist.bloom.false-positive-probability:0.01}") double falsePositiveProbability,
+                                 @Value("${jwt.blacklist.bloom.rebuild-interval-ms:3600000}") long rebuildIntervalMs,
+                                 @Value("${jwt.access-token-expiration}") long accessTokenExpiration,
+                                 @Value("${jwt.blacklist.check-legacy-keys:false}") boolean checkLegacyKeys) {
+        this.redisTemplate = redisTemplate;
+        this.jwtUtil = jwtUtil;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        // A revocation the filter missed must be picked up before the token would have expired anyway
+        this.rebuildIntervalMs = Math.min(rebuildIntervalMs, accessTokenExpiration);
+        this.checkLegacyKeys = checkLegacyKeys;
+        this.filterHits = Counter.builder("jwt.blacklist.filter")
+                .description("Blacklist checks by Bloom filter result")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.filterMisses = Counter.builder("jwt.blacklist.filter")
+                .description("Blacklist checks by Bloom filter result")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
 
     public void blacklist(String token) {
-        long remainingMs = jwtUtil.getRemainingExpiration(token);
+        VerifiedClaims claims = jwtUtil.verify(token);
+        long remainingMs = claims.expiresAt().toEpochMilli() - System.currentTimeMillis();
         if (remainingMs > 0) {
             redisTemplate.opsForValue().set(
-                    BLACKLIST_PREFIX + token,
+                    BLACKLIST_PREFIX + claims.tokenId(),
                     "revoked",
                     remainingMs,
                     TimeUnit.MILLISECONDS);
+            onRevoked(claims.tokenId());
+            redisTemplate.convertAndSend(TOKEN_BLACKLIST_CHANNEL, claims.tokenId());
         }
     }
 
     public boolean isBlacklisted(String token) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey(BLACKLIST_PREFIX + token));
+        return isBlacklisted(token, jwtUtil.verify(token));
+    }
+
+    /**
+     * @param token The compact token, only read when legacy keys are checked.
+     * @param claims The verified claims of {@code token}.
+     */
+    public boolean isBlacklisted(String token, VerifiedClaims claims) {
+        if (checkLegacyKeys && Boolean.TRUE.equals(redisTemplate.hasKey(BLACKLIST_PREFIX + token))) {
+            return true;
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(claims.tokenId())) {
+            filterMisses.increment();
+            return false;
+        }
+        filterHits.increment();
+        return Boolean.TRUE.equals(redisTemplate.hasKey(BLACKLIST_PREFIX + claims.tokenId()));
+    }
+
+    /**
+     * Adds a token revoked on any node to the local filter.
+     * @param tokenId The ID of the revoked token.
+     */
+    public void onRevoked(String tokenId) {
+        BloomFilter current = filter;
+        if (current != null) current.put(tokenId);
+        BloomFilter next = building;
+        if (next != null) next.put(tokenId);
+    }
+
+    /**
+     * Asks for a rebuild on the next check, e.g. after the blacklist channel was (re)subscribed.
+     */
+    public void requestRebuild() {
+        rebuildRequested = true;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.blacklist.bloom.rebuild-check-ms:1000}", scheduler = BACKGROUND_JOB_SCHEDULER)
+    public void rebuildIfDue() {
+        if (rebuildRequested || System.currentTimeMillis() - lastBuiltAt >= rebuildIntervalMs) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the filter from the keys in Redis, dropping tokens that have expired since the last build.
+     * Keys written before tokens carried an ID hold the full token and are migrated to the hashed key.
+     */
+    public synchronized void rebuild() {
+        rebuildRequested = false;
+        long startedAt = System.currentTimeMillis();
+        BloomFilter next = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        building = next;
+        int count = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(BLACKLIST_PREFIX + "*").count(SCAN_COUNT).build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String tokenId = keys.next().substring(BLACKLIST_PREFIX.length());
+                if (tokenId.indexOf('.') >= 0) {
+                    tokenId = migrateLegacyKey(tokenId);
+                    if (tokenId == null) continue;
+                }
+                next.put(tokenId);
+                count++;
+            }
+            filter = next;
+            lastBuiltAt = startedAt;
+            log.info("Token blacklist filter rebuilt with {} revoked tokens", count);
+        } catch (Exception e) {
+            log.error("Failed to rebuild token blacklist filter", e);
+            rebuildRequested = true;
+        } finally {
+            building = null;
+        }
+    }
+
+    private String migrateLegacyKey(String token) {
+        String legacyKey = BLACKLIST_PREFIX + token;
+        Long ttlMs = redisTemplate.getExpire(legacyKey, TimeUnit.MILLISECONDS);
+        if (ttlMs == null || ttlMs <= 0) return null;
+
+        String tokenId = tokenIdOf(token);
+        redisTemplate.opsForValue().set(BLACKLIST_PREFIX + tokenId, "revoked", ttlMs, TimeUnit.MILLISECONDS);
+        redisTemplate.delete(legacyKey);
+        return tokenId;
+    }
+
+    /**
+     * The ID a check looks the token up by: its jti when it carries one, e.g. a token issued by a newer node
+     * and revoked by an older one, otherwise the SHA-256 of the token.
+     */
+    private String tokenIdOf(String token) {
+        try {
+            return jwtUtil.verify(token).tokenId();
+        } catch (Exception e) {
+            return JwtUtil.hash(token);
+        }
     }
 }
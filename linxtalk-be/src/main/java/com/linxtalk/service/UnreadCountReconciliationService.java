@@ -0,0 +1,209 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.ClusterJobLock;
+import com.linxtalk.entity.Conversation;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.Message;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
+import com.linxtalk.repository.custom.ConversationRepositoryCustom;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.linxtalk.utils.Constant.BACKGROUND_JOB_SCHEDULER;
+import static com.linxtalk.utils.Constant.UNREAD_RECONCILE_CHECKPOINT_KEY;
+
+/**
+ * Repairs drift in the incrementally maintained unread counters, e.g. after a failed bulk increment.
+ * Each run walks the conversations that received messages since the previous run, in (lastMessage.sentAt, _id)
+ * order from a checkpoint kept in Redis, so runs resume where the last one stopped, across restarts and on
+ * whichever node takes the job lock. A conversation is recounted as a whole: one read of its members and one
+ * read of its recent messages, counted per member in memory, so a message to a large group costs one step
+ * rather than one per member. Counts are capped since badges stop at the cap anyway.
+ * A run stops after half the interval, and a checkpoint older than the lookback skips forward to it,
+ * so a backlog never grows without bound.
+ * A member is only recounted up to its lastMessageAt, which moves together with its increments,
+ * and the repair is skipped if either changed meanwhile, so a concurrent increment is never double counted.
+ */
+@Service
+@Slf4j
+public class UnreadCountReconciliationService {
+
+    private static final String JOB_NAME = "unread-count-reconcile";
+    private static final char SEPARATOR = '_';
+
+    private final ConversationRepositoryCustom conversationRepositoryCustom;
+    private final ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private final MessageRepositoryCustom messageRepositoryCustom;
+    private final StringRedisTemplate redisTemplate;
+    private final ClusterJobLock clusterJobLock;
+    private final int batchSize;
+    private final int countCap;
+    private final int messageWindow;
+    private final Duration lookback;
+    private final Duration lockTtl;
+    private final Duration runBudget;
+    private final Counter repaired;
+
+    public UnreadCountReconciliationService(ConversationRepositoryCustom conversationRepositoryCustom,
+                                            ConversationMemberRepositoryCustom conversationMemberRepositoryCustom,
+                                            MessageRepositoryCustom messageRepositoryCustom,
+                                            StringRedisTemplate redisTemplate,
+                                            ClusterJobLock clusterJobLock,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${message.unread.reconcile.batch-size:100}") int batchSize,
+                                            @Value("${message.unread.reconcile.count-cap:999}") int countCap,
+                                            @Value("${message.unread.reconcile.message-window:2000}") int messageWindow,
+                                            @Value("${message.unread.reconcile.lookback-ms:3600000}") long lookbackMs,
+                                            @Value("${message.unread.reconcile.interval-ms:300000}") long intervalMs) {
+        this.conversationRepositoryCustom = conversationRepositoryCustom;
+        this.conversationMemberRepositoryCustom = conversationMemberRepositoryCustom;
+        this.messageRepositoryCustom = messageRepositoryCustom;
+        this.redisTemplate = redisTemplate;
+        this.clusterJobLock = clusterJobLock;
+        this.batchSize = batchSize;
+        this.countCap = countCap;
+        this.messageWindow = messageWindow;
+        this.lookback = Duration.ofMillis(lookbackMs);
+        this.lockTtl = Duration.ofMillis(intervalMs * 9 / 10);
+        this.runBudget = Duration.ofMillis(intervalMs / 2);
+        this.repaired = Counter.builder("message.unread.reconcile.repaired")
+                .description("Unread counters corrected by reconciliation")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${message.unread.reconcile.interval-ms:300000}", scheduler = BACKGROUND_JOB_SCHEDULER)
+    public void reconcile() {
+        if (!clusterJobLock.tryAcquire(JOB_NAME, lockTtl)) return;
+
+        try {
+            Instant deadline = Instant.now().plus(runBudget);
+            Checkpoint checkpoint = loadCheckpoint();
+            int conversationCount = 0;
+            int fixed = 0;
+            List<Conversation> conversations;
+            do {
+                conversations = conversationRepositoryCustom
+                        .getWithMessagesAfter(checkpoint.sentAt(), checkpoint.conversationId(), batchSize);
+                for (Conversation conversation : conversations) {
+                    fixed += reconcile(conversation.getId());
+                }
+                if (!conversations.isEmpty()) {
+                    Conversation last = conversations.getLast();
+                    checkpoint = new Checkpoint(last.getLastMessage().getSentAt(), last.getId());
+                    saveCheckpoint(checkpoint);
+                    conversationCount += conversations.size();
+                }
+            } while (conversations.size() == batchSize && Instant.now().isBefore(deadline));
+
+            repaired.increment(fixed);
+            log.debug("Reconciled unread counts of {} conversations, {} members repaired", conversationCount, fixed);
+        } catch (Exception e) {
+            log.error("Failed to reconcile unread counts", e);
+        }
+    }
+
+    /**
+     * Recounts every active member of a conversation from one window of its newest messages.
+     * @return The number of counters repaired.
+     */
+    private int reconcile(String conversationId) {
+        List<ConversationMember> members = conversationMemberRepositoryCustom.getUnreadStates(conversationId);
+        // The window covering every member: from the earliest watermark up to the latest lastMessageAt
+        boolean any = false;
+        Instant readFrom = null;
+        Instant upTo = null;
+        for (ConversationMember member : members) {
+            if (member.getLastMessageAt() == null) continue;
+            Instant memberReadFrom = readFromOf(member);
+            if (!any) {
+                readFrom = memberReadFrom;
+                upTo = member.getLastMessageAt();
+                any = true;
+                continue;
+            }
+            if (readFrom != null && (memberReadFrom == null || memberReadFrom.isBefore(readFrom))) {
+                readFrom = memberReadFrom;
+            }
+            if (member.getLastMessageAt().isAfter(upTo)) {
+                upTo = member.getLastMessageAt();
+            }
+        }
+        if (!any) return 0;
+
+        List<Message> messages = messageRepositoryCustom.findSendersBetween(conversationId, readFrom, upTo, messageWindow);
+        // When the window is full, only messages after its oldest one are known to all be in it
+        Instant windowStart = messages.size() < messageWindow ? null : messages.getLast().getCreatedAt();
+
+        int fixed = 0;
+        for (ConversationMember member : members) {
+            if (member.getLastMessageAt() == null) continue;
+            Instant memberReadFrom = readFromOf(member);
+            int actual = countUnread(messages, member.getUserId(), memberReadFrom, member.getLastMessageAt());
+            boolean counted = windowStart == null || actual >= countCap
+                    || memberReadFrom != null && !memberReadFrom.isBefore(windowStart);
+            int stored = member.getUnreadCount() != null ? member.getUnreadCount() : 0;
+            if (counted && Math.min(stored, countCap) != actual
+                    && conversationMemberRepositoryCustom.compareAndSetUnreadCount(
+                            member.getId(), stored, member.getLastMessageAt(), actual)) {
+                fixed++;
+            }
+        }
+        return fixed;
+    }
+
+    /**
+     * Counts the messages sent by others in (after, upTo], stopping at the cap.
+     * @param messages Newest first.
+     */
+    private int countUnread(List<Message> messages, String userId, Instant after, Instant upTo) {
+        int count = 0;
+        for (Message message : messages) {
+            if (after != null && !message.getCreatedAt().isAfter(after)) break;
+            if (message.getCreatedAt().isAfter(upTo) || userId.equals(message.getSenderId())) continue;
+            if (++count >= countCap) break;
+        }
+        return count;
+    }
+
+    private static Instant readFromOf(ConversationMember member) {
+        return member.getLastReadAt() != null ? member.getLastReadAt() : member.getJoinedAt();
+    }
+
+    private Checkpoint loadCheckpoint() {
+        Instant oldest = Instant.now().minus(lookback);
+        String value = redisTemplate.opsForValue().get(UNREAD_RECONCILE_CHECKPOINT_KEY);
+        if (value != null) {
+            int separator = value.indexOf(SEPARATOR);
+            if (separator > 0) {
+                Instant sentAt = Instant.ofEpochMilli(Long.parseLong(value.substring(0, separator)));
+                if (!sentAt.isBefore(oldest)) {
+                    return new Checkpoint(sentAt, value.substring(separator + 1));
+                }
+                log.warn("Unread count reconciliation fell behind by more than {}, skipping to it", lookback);
+            }
+        }
+        return new Checkpoint(oldest, null);
+    }
+
+    private void saveCheckpoint(Checkpoint checkpoint) {
+        redisTemplate.opsForValue().set(UNREAD_RECONCILE_CHECKPOINT_KEY,
+                checkpoint.sentAt().toEpochMilli() + String.valueOf(SEPARATOR) + checkpoint.conversationId());
+    }
+
+    /**
+     * Position of the last conversation reconciled, in (lastMessage.sentAt, _id) order.
+     * @param conversationId {@code null} before the first run, to start at {@code sentAt} inclusive.
+     */
+    private record Checkpoint(Instant sentAt, String conversationId) {
+    }
+}
@@ -3,6 +3,10 @@ package com.linxtalk.utils;
 public class Constant {
 
     public static final String WEBSOCKET_MAPPING = "/ws";
+    public static final String WEBSOCKET_RELAY_CHANNEL = "websocket:relay";
+    public static final String WEBSOCKET_USER_NODES_KEY_PREFIX = "websocket:user-nodes:";
+
+    public static final String BACKGROUND_JOB_SCHEDULER = "backgroundJobScheduler";
 
     public static final String REQUEST_MAPPING = "/api/v1";
 
@@ -24,10 +28,50 @@ public class Constant {
 
     public static final String PRESENCE_ONLINE_KEY_PREFIX = "presence:online:";
 
+    public static final String PRESENCE_OFFLINE_CLAIM_KEY_PREFIX = "presence:offline-claim:";
+
     public static final int PRESENCE_TTL_SECONDS = 60;
 
+    public static final int PRESENCE_OFFLINE_TTL_SECONDS = 60;
+
+    public static final String PRESENCE_SESSION_DEADLINE_KEY = "presence:deadline:session";
+
+    public static final String PRESENCE_OFFLINE_DEADLINE_KEY = "presence:deadline:offline";
+
+    public static final String PRESENCE_EXPIRY_MODE_REAPER = "reaper";
+
+    public static final String PRESENCE_ONLINE_USERS_KEY = "presence:online-users";
+
+    public static final String PRESENCE_QUEUE = "/queue/presence";
+
+    public static final String PRESENCE_INVALIDATION_CHANNEL = "presence:invalidate";
+
+    public static final String FRIEND_INDEX_KEY_PREFIX = "friends:user:";
+
+    public static final String FRIEND_INDEX_BUILD_KEY_PREFIX = "friends:build:";
+
     public static final String CONVERSATION = REQUEST_MAPPING + "/conversations";
 
     public static final String CONVERSATION_MEMBER = REQUEST_MAPPING + "/conversation-members";
 
+    public static final String MESSAGE_QUEUE = "/queue/messages";
+
+    public static final String MESSAGE_FANOUT_CHANNEL = "websocket:fanout";
+
+    public static final String CONVERSATION_MEMBERS_INVALIDATION_CHANNEL = "conversation:members:invalidate";
+
+    public static final String MESSAGE_ACK_QUEUE = "/queue/message-ack";
+
+    public static final String MESSAGE_ERROR_QUEUE = "/queue/errors";
+
+    public static final String MESSAGE_STATUS_QUEUE = "/queue/message-status";
+
+    public static final String MESSAGE_TAIL_INVALIDATION_CHANNEL = "message:tail:invalidate";
+
+    public static final String UNREAD_RECONCILE_CHECKPOINT_KEY = "unread:reconcile:checkpoint";
+
+    public static final String PAGE_COUNT_KEY_PREFIX = "count:";
+
+    public static final String TOKEN_BLACKLIST_CHANNEL = "token:blacklist";
+
 }
@@ -0,0 +1,21 @@
+package com.linxtalk.utils;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Keyset page. {@code data} is ordered newest first; {@code nextCursor} continues towards older items
+ * and {@code previousCursor} towards newer ones.
+ */
+@Data
+@Builder
+public class CursorResponse<T> {
+    private int pageSize;
+    private String nextCursor;
+    private String previousCursor;
+    private boolean hasNext;
+    private boolean hasPrevious;
+    private List<T> data;
+}
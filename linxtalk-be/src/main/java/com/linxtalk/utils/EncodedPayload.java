@@ -0,0 +1,8 @@
+package com.linxtalk.utils;
+
+/**
+ * A payload already serialized to JSON. STOMP sends it as is, so a body going to many sessions
+ * or destinations is serialized once and every frame shares the same bytes.
+ */
+public record EncodedPayload(byte[] bytes) {
+}
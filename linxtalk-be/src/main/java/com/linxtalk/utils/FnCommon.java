@@ -1,9 +1,14 @@
 package com.linxtalk.utils;
 
 import com.linxtalk.exception.ResourceNotFoundException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.util.List;
+
 public class FnCommon {
     public static String getUserId(){
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -11,4 +16,13 @@ public class FnCommon {
             return userId;
         } else throw new ResourceNotFoundException(MessageError.USER_NOT_FOUND);
     }
+
+    /**
+     * Build a slice from rows fetched with a limit of {@code pageSize + 1}; the extra row only signals a next page.
+     */
+    public static <T> Slice<T> toSlice(List<T> rows, Pageable pageable) {
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<T> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
 }
@@ -0,0 +1,41 @@
+package com.linxtalk.utils;
+
+import com.linxtalk.entity.Message;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position of a message in a conversation history, ordered by (createdAt, _id).
+ * Exposed to clients as an opaque URL-safe string.
+ */
+public record MessageCursor(Instant createdAt, String id) {
+
+    private static final char SEPARATOR = '_';
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getCreatedAt(), message.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt.toEpochMilli() + String.valueOf(SEPARATOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            String id = raw.substring(separator + 1);
+            if (separator <= 0 || !ObjectId.isValid(id)) {
+                throw new IllegalArgumentException(MessageError.MESSAGE_CURSOR_INVALID);
+            }
+            return new MessageCursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))), id);
+        } catch (IllegalArgumentException e) {
+            // Also covers malformed Base64 and NumberFormatException
+            throw new IllegalArgumentException(MessageError.MESSAGE_CURSOR_INVALID);
+        }
+    }
+}
@@ -5,6 +5,7 @@ public class MessageError {
     public static final String DUPLICATE_USERNAME = "duplicate.username";
     public static final String DUPLICATE_EMAIL = "duplicate.email";
     public static final String INVALID_CREDENTIALS = "invalid.credentials";
+    public static final String AUTH_OVERLOADED = "auth.overloaded";
     public static final String INVALID_REFRESH_TOKEN = "invalid.refresh.token";
     public static final String SESSION_EXPIRED = "session.expired";
     public static final String USERNAME_NOT_FOUND = "username.not.found";
@@ -18,4 +19,10 @@ public class MessageError {
     public static final String CONVERSATION_NAME_REQUIRED = "conversation.name.required";
     public static final String CONVERSATION_PARTICIPANTS_INVALID = "conversation.participants.invalid";
     public static final String CONVERSATION_MEMBER_NOT_FOUND = "conversation.member.not.found";
+    public static final String SYNC_TOKEN_INVALID = "sync.token.invalid";
+    public static final String MESSAGE_TYPE_INVALID = "message.type.invalid";
+    public static final String MESSAGE_SEND_OVERLOADED = "message.send.overloaded";
+    public static final String MESSAGE_CURSOR_INVALID = "message.cursor.invalid";
+    public static final String MESSAGE_NOT_FOUND = "message.not.found";
+    public static final String MESSAGE_STATUS_INVALID = "message.status.invalid";
 }
@@ -20,7 +20,13 @@ public class MessageSuccess {
     public static final String GET_FRIENDS_SUCCESS = "friend.list.success";
     public static final String CREATE_CONVERSATION_SUCCESS = "conversation.created.success";
     public static final String GET_CONVERSATIONS_SUCCESS = "conversation.list.success";
+    public static final String SYNC_CONVERSATIONS_SUCCESS = "conversation.sync.success";
     public static final String GET_ONLINE_FRIENDS_SUCCESS = "online.friend.list.success";
     public static final String UPDATE_CONVERSATION_MEMBER_SUCCESS = "conversation.member.updated.success";
     public static final String DELETE_CONVERSATION_MEMBER_SUCCESS = "conversation.member.deleted.success";
+    public static final String MARK_CONVERSATION_READ_SUCCESS = "conversation.member.read.success";
+    public static final String SEND_MESSAGE_SUCCESS = "message.sent.success";
+    public static final String GET_MESSAGES_SUCCESS = "message.list.success";
+    public static final String GET_MESSAGE_READ_COUNTS_SUCCESS = "message.read.count.success";
+    public static final String GET_MESSAGE_READERS_SUCCESS = "message.reader.list.success";
 }
@@ -2,6 +2,7 @@ package com.linxtalk.utils;
 
 import lombok.Builder;
 import lombok.Data;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 @Data
@@ -9,9 +10,30 @@ import java.util.List;
 public class PageResponse<T> {
     private int pageSize;
     private int pageNumber;
-    private long totalElements;
-    private int totalPages;
+    // null when the total was not requested
+    private Long totalElements;
+    private Integer totalPages;
     private boolean hasNext;
     private boolean hasPrevious;
     private List<T> data;
+
+    /**
+     * Build a page from a slice, which is fetched without counting.
+     * @param slice The fetched slice.
+     * @param data The mapped content.
+     * @param totalElements The total, or {@code null} when unknown.
+     */
+    public static <T> PageResponse<T> of(Slice<?> slice, List<T> data, Long totalElements) {
+        return PageResponse.<T>builder()
+                .pageSize(slice.getSize())
+                .pageNumber(slice.getNumber())
+                .totalElements(totalElements)
+                .totalPages(totalElements != null && slice.getSize() > 0
+                        ? (int) Math.ceil((double) totalElements / slice.getSize())
+                        : null)
+                .hasNext(slice.hasNext())
+                .hasPrevious(slice.hasPrevious())
+                .data(data)
+                .build();
+    }
 }
@@ -0,0 +1,48 @@
+package com.linxtalk.utils;
+
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position up to which a client has synced, in (updatedAt, _id) order of its member rows,
+ * exposed as an opaque URL-safe string.
+ * @param id ID of the last row returned when the previous sync stopped at a page boundary,
+ *           or {@code null} when it covered everything up to {@code syncedAt}.
+ */
+public record SyncToken(Instant syncedAt, String id) {
+
+    private static final char SEPARATOR = '_';
+
+    public SyncToken(Instant syncedAt) {
+        this(syncedAt, null);
+    }
+
+    public String encode() {
+        String raw = id != null
+                ? syncedAt.toEpochMilli() + String.valueOf(SEPARATOR) + id
+                : String.valueOf(syncedAt.toEpochMilli());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SyncToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            // Tokens issued before paging on _id only hold the time
+            if (separator < 0) {
+                return new SyncToken(Instant.ofEpochMilli(Long.parseLong(raw)));
+            }
+            String id = raw.substring(separator + 1);
+            if (separator == 0 || !ObjectId.isValid(id)) {
+                throw new IllegalArgumentException(MessageError.SYNC_TOKEN_INVALID);
+            }
+            return new SyncToken(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))), id);
+        } catch (IllegalArgumentException e) {
+            // Also covers malformed Base64 and NumberFormatException
+            throw new IllegalArgumentException(MessageError.SYNC_TOKEN_INVALID);
+        }
+    }
+}
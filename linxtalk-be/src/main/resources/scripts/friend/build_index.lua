@@ -0,0 +1,18 @@
+-- Stores a freshly built friend index, unless the index was invalidated while it was being built.
+-- The builder claims KEYS[2] with its token before reading the friends; invalidation deletes it.
+-- KEYS[1] = friends:user:<userId>            (zset of friend ids scored by interaction score)
+-- KEYS[2] = friends:build:<userId>           (token of the build in progress)
+-- ARGV[1] = build token
+-- ARGV[2] = index ttl in seconds
+-- ARGV[3..n] = score, friendId pairs
+-- Returns 1 when the index was stored, 0 when the build is stale.
+if redis.call('GET', KEYS[2]) ~= ARGV[1] then
+    return 0
+end
+redis.call('DEL', KEYS[1])
+for i = 3, #ARGV, 2 do
+    redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+redis.call('DEL', KEYS[2])
+return 1
@@ -0,0 +1,33 @@
+-- Returns the top online friends of a user, highest interaction score first.
+-- Walks the friend zset in descending score order and stops as soon as enough online friends are found.
+-- Members of the online set whose presence:online key is gone are stale (lost disconnect or crashed node)
+-- and are removed instead of being returned.
+-- KEYS[1] = friends:user:<userId>            (zset of friend ids scored by interaction score)
+-- KEYS[2] = presence:online-users            (set of online user ids)
+-- ARGV[1] = maximum number of online friends to return
+-- ARGV[2] = number of friends read per ZREVRANGE call
+-- ARGV[3] = presence:online: key prefix
+local limit = tonumber(ARGV[1])
+local chunk = tonumber(ARGV[2])
+local result = {}
+local start = 0
+while #result < limit do
+    local friendIds = redis.call('ZREVRANGE', KEYS[1], start, start + chunk - 1)
+    if #friendIds == 0 then
+        break
+    end
+    for _, friendId in ipairs(friendIds) do
+        if redis.call('SISMEMBER', KEYS[2], friendId) == 1 then
+            if redis.call('EXISTS', ARGV[3] .. friendId) == 1 then
+                result[#result + 1] = friendId
+                if #result >= limit then
+                    break
+                end
+            else
+                redis.call('SREM', KEYS[2], friendId)
+            end
+        end
+    end
+    start = start + chunk
+end
+return result
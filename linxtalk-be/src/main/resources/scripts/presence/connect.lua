@@ -0,0 +1,35 @@
+-- Marks a session as online.
+-- KEYS[1] = presence:user:<userId>           (set of session ids)
+-- KEYS[2] = presence:session:<sessionId>:<userId>
+-- KEYS[3] = presence:online:<userId>
+-- KEYS[4] = presence:offline:<userId>
+-- KEYS[5] = presence:deadline:session        (zset of session deadlines, reaper mode)
+-- KEYS[6] = presence:deadline:offline        (zset of pending offline deadlines, reaper mode)
+-- KEYS[7] = presence:online-users            (set of online user ids)
+-- ARGV[1] = sessionId
+-- ARGV[2] = presence ttl in seconds
+-- ARGV[3] = userId
+-- ARGV[4] = '1' when the reaper tracks deadlines, '0' otherwise
+-- ARGV[5] = current time of the calling node in milliseconds, used for the invalidation lag metric
+-- ARGV[6] = invalidation channel, published to as <userId>:<time> when the user comes online
+-- Returns 1 when this is the first live session of the user, 0 otherwise.
+-- Deadlines use the Redis clock so that clock skew between nodes does not move them
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local wasOnline = redis.call('EXISTS', KEYS[3])
+local added = redis.call('SADD', KEYS[1], ARGV[1])
+redis.call('SET', KEYS[2], 'ONLINE', 'EX', ARGV[2])
+redis.call('SET', KEYS[3], '1', 'EX', ARGV[2])
+redis.call('DEL', KEYS[4])
+redis.call('SADD', KEYS[7], ARGV[3])
+if ARGV[4] == '1' then
+    redis.call('ZADD', KEYS[5], now + tonumber(ARGV[2]) * 1000, ARGV[1] .. ':' .. ARGV[3])
+    redis.call('ZREM', KEYS[6], ARGV[3])
+end
+if wasOnline == 0 then
+    redis.call('PUBLISH', ARGV[6], ARGV[3] .. ':' .. ARGV[5])
+end
+if added == 1 and redis.call('SCARD', KEYS[1]) == 1 then
+    return 1
+end
+return 0
@@ -0,0 +1,39 @@
+-- Removes a session and schedules the pending offline event when it was the last one.
+-- KEYS[1] = presence:user:<userId>           (set of session ids)
+-- KEYS[2] = presence:session:<sessionId>:<userId>
+-- KEYS[3] = presence:online:<userId>
+-- KEYS[4] = presence:offline:<userId>
+-- KEYS[5] = presence:deadline:session        (zset of session deadlines, reaper mode)
+-- KEYS[6] = presence:deadline:offline        (zset of pending offline deadlines, reaper mode)
+-- KEYS[7] = presence:online-users            (set of online user ids)
+-- ARGV[1] = sessionId
+-- ARGV[2] = offline grace period in seconds
+-- ARGV[3] = '1' when the session must still be registered (session expire), '0' otherwise
+-- ARGV[4] = userId
+-- ARGV[5] = '1' when the reaper tracks deadlines, '0' otherwise
+-- ARGV[6] = current time of the calling node in milliseconds, used for the invalidation lag metric
+-- ARGV[7] = invalidation channel, published to as <userId>:<time> when the user goes offline
+-- Returns -1 when the session was already gone, 1 when the user has no session left, 0 otherwise.
+-- Deadlines use the Redis clock so that clock skew between nodes does not move them
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+redis.call('DEL', KEYS[2])
+if ARGV[5] == '1' then
+    redis.call('ZREM', KEYS[5], ARGV[1] .. ':' .. ARGV[4])
+end
+local removed = redis.call('SREM', KEYS[1], ARGV[1])
+if ARGV[3] == '1' and removed == 0 then
+    return -1
+end
+if redis.call('SCARD', KEYS[1]) > 0 then
+    return 0
+end
+redis.call('DEL', KEYS[1])
+redis.call('DEL', KEYS[3])
+redis.call('SREM', KEYS[7], ARGV[4])
+redis.call('SET', KEYS[4], 'OFFLINE', 'EX', ARGV[2])
+redis.call('PUBLISH', ARGV[7], ARGV[4] .. ':' .. ARGV[6])
+if ARGV[5] == '1' then
+    redis.call('ZADD', KEYS[6], now + tonumber(ARGV[2]) * 1000, ARGV[4])
+end
+return 1
@@ -0,0 +1,12 @@
+-- Pushes back the deadlines of live sessions in reaper mode. Sessions already reaped are not re-added.
+-- KEYS[1] = presence:deadline:session        (zset of session deadlines)
+-- ARGV[1] = presence ttl in seconds
+-- ARGV[2..n] = session deadline members, <sessionId>:<userId>
+-- Deadlines use the Redis clock so that clock skew between nodes does not move them
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local deadline = now + tonumber(ARGV[1]) * 1000
+for i = 2, #ARGV do
+    redis.call('ZADD', KEYS[1], 'XX', deadline, ARGV[i])
+end
+return #ARGV - 1
@@ -0,0 +1,11 @@
+-- Atomically pops the entries of a deadline zset that are due, so each one is handled by exactly one node.
+-- Due entries are selected with the Redis clock, the same clock the deadlines were written with.
+-- KEYS[1] = deadline zset
+-- ARGV[1] = maximum number of entries to pop
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now, 'LIMIT', 0, ARGV[1])
+if #due > 0 then
+    redis.call('ZREM', KEYS[1], unpack(due))
+end
+return due
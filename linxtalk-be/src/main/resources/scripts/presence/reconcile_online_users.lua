@@ -0,0 +1,15 @@
+-- Repairs the online set for a batch of users from their presence:online keys, which expire on their own.
+-- Adds users that are online but missing (e.g. online before the set existed) and removes stale members.
+-- KEYS[1] = presence:online-users            (set of online user ids)
+-- ARGV[1] = presence:online: key prefix
+-- ARGV[2..n] = user ids
+-- Returns the number of members added or removed.
+local changed = 0
+for i = 2, #ARGV do
+    if redis.call('EXISTS', ARGV[1] .. ARGV[i]) == 1 then
+        changed = changed + redis.call('SADD', KEYS[1], ARGV[i])
+    else
+        changed = changed + redis.call('SREM', KEYS[1], ARGV[i])
+    end
+end
+return changed
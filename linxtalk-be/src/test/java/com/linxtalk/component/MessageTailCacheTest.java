@@ -0,0 +1,174 @@
+package com.linxtalk.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.linxtalk.entity.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.linxtalk.utils.Constant.MESSAGE_TAIL_INVALIDATION_CHANNEL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class MessageTailCacheTest {
+
+    private static final String CONVERSATION_ID = "conversation-1";
+
+    private StringRedisTemplate redisTemplate;
+    private ObjectMapper objectMapper;
+    private MessageTailCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        cache = newCache();
+    }
+
+    @Test
+    void settledTailIsCached() {
+        cache.get(CONVERSATION_ID, loader(List.of()));
+        cache.get(CONVERSATION_ID, loader(List.of()));
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void tailIsNotCachedWhileAnAcceptedMessageAwaitsTheWriter() {
+        Message message = message();
+        cache.append(message);
+
+        cache.get(CONVERSATION_ID, loader(List.of()));
+        cache.get(CONVERSATION_ID, loader(List.of()));
+        assertThat(loads.get()).isEqualTo(2);
+
+        cache.markPersisted(List.of(message), List.of());
+        cache.get(CONVERSATION_ID, loader(List.of(message)));
+        MessageTailCache.Tail tail = cache.get(CONVERSATION_ID, loader(List.of(message)));
+
+        assertThat(loads.get()).isEqualTo(3);
+        assertThat(tail.messages()).containsExactly(message);
+    }
+
+    @Test
+    void loadRacingWithAnAppendIsNotCached() {
+        Message message = message();
+        cache.get(CONVERSATION_ID, () -> {
+            loads.incrementAndGet();
+            cache.append(message);
+            cache.markPersisted(List.of(message), List.of());
+            return List.of();
+        });
+
+        cache.get(CONVERSATION_ID, loader(List.of(message)));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void loadRacingWithARemoteInvalidationIsNotCached() {
+        cache.get(CONVERSATION_ID, () -> {
+            loads.incrementAndGet();
+            cache.onInvalidation("other-node:" + CONVERSATION_ID);
+            return List.of();
+        });
+
+        cache.get(CONVERSATION_ID, loader(List.of()));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void appendUpdatesTheCachedTailAndPersistingSendsTheMessageToOtherNodes() {
+        cache.get(CONVERSATION_ID, loader(List.of()));
+        Message message = message();
+
+        cache.append(message);
+        cache.markPersisted(List.of(message), List.of());
+
+        assertThat(cache.find(CONVERSATION_ID, message.getId())).contains(message);
+        assertThat(published()).contains(":" + CONVERSATION_ID + ":append:", message.getId());
+    }
+
+    @Test
+    void droppedMessagesAreNotSentToOtherNodes() {
+        Message message = message();
+        cache.append(message);
+
+        cache.markPersisted(List.of(message), List.of(message));
+
+        verify(redisTemplate, never()).convertAndSend(eq(MESSAGE_TAIL_INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    void messagesPersistedOnAnotherNodeAreMergedIntoTheCachedTail() {
+        Message older = message();
+        cache.get(CONVERSATION_ID, loader(List.of(older)));
+        MessageTailCache other = newCache();
+        Message newer = message();
+        other.append(newer);
+        other.markPersisted(List.of(newer), List.of());
+
+        cache.onInvalidation(published());
+        cache.onInvalidation(published());
+        MessageTailCache.Tail tail = cache.get(CONVERSATION_ID, loader(List.of()));
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(tail.messages()).extracting(Message::getId).containsExactly(newer.getId(), older.getId());
+    }
+
+    @Test
+    void unreadableUpdateDropsTheTail() {
+        cache.get(CONVERSATION_ID, loader(List.of()));
+
+        cache.onInvalidation("other-node:" + CONVERSATION_ID + ":ARCHIVED:m1");
+        cache.onInvalidation("other-node:" + CONVERSATION_ID + ":append:not json");
+        cache.get(CONVERSATION_ID, loader(List.of()));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private MessageTailCache newCache() {
+        return new MessageTailCache(redisTemplate, objectMapper, new SimpleMeterRegistry(), 50, 1 << 20, 60000);
+    }
+
+    private String published() {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, atLeastOnce()).convertAndSend(eq(MESSAGE_TAIL_INVALIDATION_CHANNEL), captor.capture());
+        return captor.getValue();
+    }
+
+    private Supplier<List<Message>> loader(List<Message> messages) {
+        return () -> {
+            loads.incrementAndGet();
+            return messages;
+        };
+    }
+
+    private static Message message() {
+        return Message.builder()
+                .id(new ObjectId().toHexString())
+                .conversationId(CONVERSATION_ID)
+                .senderId("sender-1")
+                .content("hello")
+                .createdAt(Instant.now())
+                .build();
+    }
+}
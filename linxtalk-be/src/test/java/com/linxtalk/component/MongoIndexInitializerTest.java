@@ -0,0 +1,153 @@
+package com.linxtalk.component;
+
+import com.linxtalk.entity.Conversation;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.DeviceToken;
+import com.linxtalk.entity.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the initializer against mocked index operations holding the indexes of an older deployment,
+ * both at a regular startup and as a migration run.
+ */
+class MongoIndexInitializerTest {
+
+    private MongoTemplate mongoTemplate;
+    private IndexOperations messageIndexes;
+    private IndexOperations memberIndexes;
+    private IndexOperations deviceTokenIndexes;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        doReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()))
+                .when(mongoTemplate).getConverter();
+        messageIndexes = mock(IndexOperations.class);
+        memberIndexes = mock(IndexOperations.class);
+        deviceTokenIndexes = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(Message.class)).thenReturn(messageIndexes);
+        when(mongoTemplate.indexOps(Conversation.class)).thenReturn(mock(IndexOperations.class));
+        when(mongoTemplate.indexOps(ConversationMember.class)).thenReturn(memberIndexes);
+        when(mongoTemplate.indexOps(DeviceToken.class)).thenReturn(deviceTokenIndexes);
+    }
+
+    @Test
+    void startupOnlyCreatesMissingIndexes() {
+        when(messageIndexes.getIndexInfo()).thenReturn(List.of(
+                index("_id_", false, false, "_id"),
+                index("conversation_timestamp", false, false, "conversationId", "-createdAt")));
+        when(memberIndexes.getIndexInfo()).thenReturn(List.of(
+                index("user_updated", false, false, "userId", "updatedAt")));
+        when(deviceTokenIndexes.getIndexInfo()).thenReturn(List.of(index("refreshToken_1", false, false, "refreshToken")));
+
+        new MongoIndexInitializer(mongoTemplate, false).createIndexes();
+
+        verify(messageIndexes, never()).dropIndex(anyString());
+        verify(memberIndexes, never()).dropIndex(anyString());
+        verify(deviceTokenIndexes, never()).dropIndex(anyString());
+        assertThat(createdNames(messageIndexes)).contains("conversation_timestamp_id");
+        assertThat(createdNames(memberIndexes)).contains("user_inbox", "user_updated_id");
+        // Mismatched, so creating it would fail with IndexOptionsConflict
+        verify(deviceTokenIndexes, never()).createIndex(any());
+    }
+
+    @Test
+    void migrationDropsReplacedIndexes() {
+        when(messageIndexes.getIndexInfo()).thenReturn(List.of(
+                index("_id_", false, false, "_id"),
+                index("conversation_timestamp", false, false, "conversationId", "-createdAt")));
+        when(memberIndexes.getIndexInfo()).thenReturn(List.of(
+                index("active_last_message", false, false, "isActive", "lastMessageAt"),
+                index("user_updated", false, false, "userId", "updatedAt")));
+        when(deviceTokenIndexes.getIndexInfo()).thenReturn(List.of());
+
+        new MongoIndexInitializer(mongoTemplate, true).createIndexes();
+
+        verify(messageIndexes).dropIndex("conversation_timestamp");
+        verify(memberIndexes).dropIndex("active_last_message");
+        verify(memberIndexes).dropIndex("user_updated");
+        assertThat(createdNames(messageIndexes)).contains("conversation_timestamp_id");
+        assertThat(createdNames(memberIndexes))
+                .contains("user_inbox", "conversation_last_read", "user_updated_id")
+                .doesNotContain("active_last_message_id");
+    }
+
+    @Test
+    void migrationDropsAnIndexWhoseOptionsChangedBeforeRecreatingIt() {
+        when(messageIndexes.getIndexInfo()).thenReturn(List.of());
+        when(memberIndexes.getIndexInfo()).thenReturn(List.of());
+        // Created by hand before refreshToken became sparse, under MongoDB's default name
+        when(deviceTokenIndexes.getIndexInfo()).thenReturn(List.of(index("refreshToken_1", false, false, "refreshToken")));
+
+        new MongoIndexInitializer(mongoTemplate, true).createIndexes();
+
+        InOrder inOrder = inOrder(deviceTokenIndexes);
+        inOrder.verify(deviceTokenIndexes).dropIndex("refreshToken_1");
+        inOrder.verify(deviceTokenIndexes).createIndex(argThat((IndexDefinition index) ->
+                index.getIndexKeys().containsKey("refreshToken") && index.getIndexOptions().getBoolean("sparse", false)));
+    }
+
+    @Test
+    void indexesAlreadyAsDeclaredAreKept() {
+        when(messageIndexes.getIndexInfo()).thenReturn(List.of(
+                index("conversation_timestamp_id", false, false, "conversationId", "-createdAt", "-_id")));
+        when(memberIndexes.getIndexInfo()).thenReturn(List.of(
+                index("user_updated_id", false, false, "userId", "updatedAt", "_id")));
+        when(deviceTokenIndexes.getIndexInfo()).thenReturn(List.of(index("refreshToken_1", false, true, "refreshToken")));
+
+        new MongoIndexInitializer(mongoTemplate, true).createIndexes();
+
+        verify(messageIndexes, never()).dropIndex(anyString());
+        verify(memberIndexes, never()).dropIndex(anyString());
+        verify(deviceTokenIndexes, never()).dropIndex(anyString());
+    }
+
+    @Test
+    void failureOnOneCollectionDoesNotStopTheOthers() {
+        when(messageIndexes.getIndexInfo()).thenThrow(new IllegalStateException("down"));
+        when(memberIndexes.getIndexInfo()).thenReturn(List.of());
+        when(deviceTokenIndexes.getIndexInfo()).thenReturn(List.of());
+
+        new MongoIndexInitializer(mongoTemplate, false).createIndexes();
+
+        assertThat(createdNames(memberIndexes)).contains("user_inbox");
+    }
+
+    private static List<String> createdNames(IndexOperations indexOperations) {
+        List<String> names = new ArrayList<>();
+        mockingDetails(indexOperations).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("createIndex"))
+                .forEach(invocation -> names.add(((IndexDefinition) invocation.getArgument(0)).getIndexOptions().getString("name")));
+        return names;
+    }
+
+    /**
+     * @param keys Field names, prefixed with {@code -} for descending.
+     */
+    private static IndexInfo index(String name, boolean unique, boolean sparse, String... keys) {
+        List<IndexField> fields = new ArrayList<>();
+        for (String key : keys) {
+            fields.add(key.startsWith("-")
+                    ? IndexField.create(key.substring(1), Sort.Direction.DESC)
+                    : IndexField.create(key, Sort.Direction.ASC));
+        }
+        return new IndexInfo(fields, name, unique, sparse, null);
+    }
+}
@@ -0,0 +1,224 @@
+package com.linxtalk.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fppt.jedismock.RedisServer;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.linxtalk.utils.Constant.WEBSOCKET_USER_NODES_KEY_PREFIX;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs three relay nodes against one in-memory Redis and checks where broker messages end up.
+ */
+class RedisBrokerRelayTest {
+
+    private static final String USER_ID = "user-1";
+    private static final String USER_DESTINATION = "/user/" + USER_ID + "/queue/messages";
+    private static final long DELIVERY_TIMEOUT_MS = 2000;
+    private static final long SILENCE_MS = 300;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+    private final List<RedisMessageListenerContainer> containers = new ArrayList<>();
+    private Node nodeA;
+    private Node nodeB;
+    private Node nodeC;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redisServer = RedisServer.newRedisServer();
+        redisServer.start();
+        // The in-memory server speaks RESP2 only
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()),
+                LettuceClientConfiguration.builder()
+                        .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+                        .build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        nodeA = startNode();
+        nodeB = startNode();
+        nodeC = startNode();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (RedisMessageListenerContainer container : containers) {
+            container.destroy();
+        }
+        containers.clear();
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    @Test
+    void userMessageIsOnlyForwardedToTheNodeOwningTheUser() {
+        nodeA.relay().registerSession(USER_ID, "s1");
+
+        nodeB.relay().preSend(message(USER_DESTINATION), mock(MessageChannel.class));
+
+        verify(nodeA.template(), timeout(DELIVERY_TIMEOUT_MS)).send(eq(USER_DESTINATION), argThat(
+                (Message<?> relayed) -> Boolean.TRUE.equals(relayed.getHeaders().get(RedisBrokerRelay.RELAYED_HEADER))));
+        verify(nodeC.template(), after(SILENCE_MS).never()).send(anyString(), any(Message.class));
+        verify(nodeB.template(), never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void userMessageReachesEveryNodeWithASessionOfTheUser() {
+        nodeA.relay().registerSession(USER_ID, "s1");
+        nodeC.relay().registerSession(USER_ID, "s2");
+
+        nodeB.relay().preSend(message(USER_DESTINATION), mock(MessageChannel.class));
+
+        verify(nodeA.template(), timeout(DELIVERY_TIMEOUT_MS)).send(eq(USER_DESTINATION), any(Message.class));
+        verify(nodeC.template(), timeout(DELIVERY_TIMEOUT_MS)).send(eq(USER_DESTINATION), any(Message.class));
+    }
+
+    @Test
+    void userMessageForALocalOnlyUserIsNotPublished() {
+        nodeA.relay().registerSession(USER_ID, "s1");
+
+        nodeA.relay().preSend(message(USER_DESTINATION), mock(MessageChannel.class));
+
+        verify(nodeB.template(), after(SILENCE_MS).never()).send(anyString(), any(Message.class));
+        verify(nodeC.template(), never()).send(anyString(), any(Message.class));
+        verify(nodeA.template(), never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void topicMessageIsBroadcastToEveryOtherNode() {
+        String destination = "/topic/conversation.1";
+
+        nodeB.relay().preSend(message(destination), mock(MessageChannel.class));
+
+        verify(nodeA.template(), timeout(DELIVERY_TIMEOUT_MS)).send(eq(destination), any(Message.class));
+        verify(nodeC.template(), timeout(DELIVERY_TIMEOUT_MS)).send(eq(destination), any(Message.class));
+        verify(nodeB.template(), after(SILENCE_MS).never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void relayedMessageIsNotRelayedAgain() {
+        nodeA.relay().registerSession(USER_ID, "s1");
+        Message<byte[]> relayed = MessageBuilder.fromMessage(message(USER_DESTINATION))
+                .setHeader(RedisBrokerRelay.RELAYED_HEADER, true)
+                .build();
+
+        nodeB.relay().preSend(relayed, mock(MessageChannel.class));
+
+        verify(nodeA.template(), after(SILENCE_MS).never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void nodeStopsOwningTheUserWhenTheLastSessionLeaves() {
+        nodeA.relay().registerSession(USER_ID, "s1");
+        nodeA.relay().registerSession(USER_ID, "s2");
+        String key = WEBSOCKET_USER_NODES_KEY_PREFIX + USER_ID;
+
+        nodeA.relay().unregisterSession(USER_ID, "s1");
+        assertThat(redisTemplate.opsForSet().isMember(key, nodeA.relay().getNodeId())).isTrue();
+
+        nodeA.relay().unregisterSession(USER_ID, "s2");
+        assertThat(redisTemplate.opsForSet().isMember(key, nodeA.relay().getNodeId())).isFalse();
+
+        nodeB.relay().preSend(message(USER_DESTINATION), mock(MessageChannel.class));
+        verify(nodeA.template(), after(SILENCE_MS).never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void usersAreGroupedByTheOtherNodesOwningThem() {
+        nodeA.relay().registerSession("user-1", "s1");
+        nodeB.relay().registerSession("user-1", "s2");
+        nodeB.relay().registerSession("user-2", "s3");
+        nodeC.relay().registerSession("user-3", "s4");
+
+        Map<String, List<String>> usersByNode = nodeA.relay().remoteNodesOf(List.of("user-1", "user-2", "user-3", "user-4"));
+
+        assertThat(usersByNode).containsOnlyKeys(nodeB.relay().getNodeId(), nodeC.relay().getNodeId());
+        assertThat(usersByNode.get(nodeB.relay().getNodeId())).containsExactly("user-1", "user-2");
+        assertThat(usersByNode.get(nodeC.relay().getNodeId())).containsExactly("user-3");
+    }
+
+    @Test
+    void ownershipRefreshRestoresALostEntry() {
+        nodeA.relay().registerSession(USER_ID, "s1");
+        String key = WEBSOCKET_USER_NODES_KEY_PREFIX + USER_ID;
+        redisTemplate.delete(key);
+
+        nodeA.relay().refreshOwnership();
+
+        assertThat(redisTemplate.opsForSet().isMember(key, nodeA.relay().getNodeId())).isTrue();
+        assertThat(redisTemplate.getExpire(key)).isPositive();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node startNode() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(template);
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.afterPropertiesSet();
+        containers.add(container);
+
+        RedisBrokerRelay relay = new RedisBrokerRelay(redisTemplate, container, new ObjectMapper(), provider);
+        ReflectionTestUtils.setField(relay, "ownershipRefreshMs", 60000L);
+        relay.subscribe();
+        // Starting after the listeners are registered waits for the subscriptions to be confirmed
+        container.start();
+        return new Node(relay, template);
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage("{\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private record Node(RedisBrokerRelay relay, SimpMessagingTemplate template) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.linxtalk.repository.custom;
+
+import com.linxtalk.entity.Message;
+import com.linxtalk.utils.MessageCursor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checks the history queries stay keyset queries: no skip, and a sort matching the conversation_timestamp_id index,
+ * so the cost of a page does not grow with its depth.
+ */
+class MessageRepositoryCustomTest {
+
+    private static final String CONVERSATION_ID = "conversation-1";
+
+    private MongoTemplate mongoTemplate;
+    private MessageRepositoryCustom repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        repository = new MessageRepositoryCustom(mongoTemplate);
+    }
+
+    @Test
+    void findBeforeSeeksPastTheCursorWithoutSkipping() {
+        MessageCursor cursor = new MessageCursor(Instant.ofEpochMilli(1_700_000_000_000L), new ObjectId().toHexString());
+
+        repository.findBefore(CONVERSATION_ID, cursor, 51);
+
+        Query query = capturedQuery();
+        assertThat(query.getSkip()).isZero();
+        assertThat(query.getLimit()).isEqualTo(51);
+        assertThat(query.getSortObject()).isEqualTo(new Document("createdAt", -1).append("_id", -1));
+        assertThat(query.getQueryObject().toJson()).contains("\"$lt\"").doesNotContain("\"$gt\"");
+    }
+
+    @Test
+    void findAfterSeeksPastTheCursorInAscendingOrder() {
+        MessageCursor cursor = new MessageCursor(Instant.ofEpochMilli(1_700_000_000_000L), new ObjectId().toHexString());
+
+        repository.findAfter(CONVERSATION_ID, cursor, 21);
+
+        Query query = capturedQuery();
+        assertThat(query.getSkip()).isZero();
+        assertThat(query.getLimit()).isEqualTo(21);
+        assertThat(query.getSortObject()).isEqualTo(new Document("createdAt", 1).append("_id", 1));
+        assertThat(query.getQueryObject().toJson()).contains("\"$gt\"").doesNotContain("\"$lt\"");
+    }
+
+    @Test
+    void newestPageHasNoBound() {
+        repository.findBefore(CONVERSATION_ID, null, 51);
+
+        assertThat(capturedQuery().getQueryObject()).isEqualTo(new Document("conversationId", CONVERSATION_ID));
+    }
+
+    private Query capturedQuery() {
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(Message.class));
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,87 @@
+package com.linxtalk.repository.custom;
+
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.Friend;
+import com.linxtalk.entity.FriendRequest;
+import com.linxtalk.enumeration.FriendRequestStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the conversation, friend and friend request pages cost one find each: no count query,
+ * and one extra row to tell whether a next page exists.
+ */
+class SlicePagingQueriesTest {
+
+    private static final Pageable PAGE = PageRequest.of(2, 20);
+
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+    }
+
+    @Test
+    void conversationsArePagedWithoutCounting() {
+        when(mongoTemplate.find(any(Query.class), eq(ConversationMember.class)))
+                .thenReturn(rows(ConversationMember.builder().build(), PAGE.getPageSize() + 1));
+
+        Slice<ConversationMember> slice = new ConversationMemberRepositoryCustom(mongoTemplate)
+                .getConversations("user-1", null, true, PAGE);
+
+        assertSingleFind(ConversationMember.class);
+        assertThat(slice.getContent()).hasSize(PAGE.getPageSize());
+        assertThat(slice.hasNext()).isTrue();
+    }
+
+    @Test
+    void friendsArePagedWithoutCounting() {
+        when(mongoTemplate.find(any(Query.class), eq(Friend.class)))
+                .thenReturn(rows(Friend.builder().build(), PAGE.getPageSize()));
+
+        Slice<Friend> slice = new FriendRepositoryCustom(mongoTemplate).getFriends("user-1", null, PAGE);
+
+        assertSingleFind(Friend.class);
+        assertThat(slice.getContent()).hasSize(PAGE.getPageSize());
+        assertThat(slice.hasNext()).isFalse();
+    }
+
+    @Test
+    void friendRequestsArePagedWithoutCounting() {
+        when(mongoTemplate.find(any(Query.class), eq(FriendRequest.class)))
+                .thenReturn(rows(FriendRequest.builder().build(), 3));
+
+        Slice<FriendRequest> slice = new FriendRequestRepositoryCustom(mongoTemplate)
+                .getFriendRequests(null, "user-1", FriendRequestStatus.PENDING, PAGE);
+
+        assertSingleFind(FriendRequest.class);
+        assertThat(slice.getContent()).hasSize(3);
+        assertThat(slice.hasNext()).isFalse();
+    }
+
+    private <T> void assertSingleFind(Class<T> entityClass) {
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(entityClass));
+        verify(mongoTemplate, never()).count(any(Query.class), any(Class.class));
+        assertThat(captor.getValue().getLimit()).isEqualTo(PAGE.getPageSize() + 1);
+        assertThat(captor.getValue().getSkip()).isEqualTo(PAGE.getOffset());
+    }
+
+    private static <T> List<T> rows(T row, int count) {
+        return new ArrayList<>(Collections.nCopies(count, row));
+    }
+}
@@ -0,0 +1,90 @@
+package com.linxtalk.security;
+
+import com.linxtalk.enumeration.TokenType;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks tokens are verified once and then served from the claims cache.
+ */
+class JwtUtilTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final int TOKENS = 100;
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtUtil = new JwtUtil(SECRET, 900_000, 2_592_000_000L, 100_000, meterRegistry);
+    }
+
+    @Test
+    void repeatedRequestsWithTheSameTokenAreServedFromTheCache() {
+        String token = jwtUtil.generateAccessToken("user-1");
+
+        VerifiedClaims first = jwtUtil.verify(token);
+        // What the filter asks for on every request
+        String userId = jwtUtil.extractUserId(token);
+        boolean expired = jwtUtil.isTokenExpired(token);
+        boolean access = jwtUtil.isAccessToken(token);
+
+        assertThat(jwtUtil.verify(token)).isSameAs(first);
+        assertThat(userId).isEqualTo("user-1");
+        assertThat(expired).isFalse();
+        assertThat(access).isTrue();
+        assertThat(first.type()).isEqualTo(TokenType.ACCESS_TOKEN);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "jwt.claims").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = jwtUtil.generateAccessToken("user-1");
+        jwtUtil.verify(token);
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"sub\":\"user-2\",\"type\":\"access\"}".getBytes()) + "." + parts[2];
+
+        assertThatThrownBy(() -> jwtUtil.verify(forged)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = Jwts.builder()
+                .subject("user-1")
+                .expiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+
+        assertThatThrownBy(() -> jwtUtil.verify(token)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void everyDistinctTokenIsVerifiedOnlyOnce() {
+        List<String> tokens = new ArrayList<>(TOKENS);
+        for (int i = 0; i < TOKENS; i++) {
+            tokens.add(jwtUtil.generateAccessToken("user-" + i));
+        }
+
+        tokens.forEach(jwtUtil::verify);
+        tokens.forEach(jwtUtil::verify);
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "jwt.claims").tag("result", "miss").functionCounter().count()).isEqualTo(TOKENS);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "jwt.claims").tag("result", "hit").functionCounter().count()).isEqualTo(TOKENS);
+    }
+}
@@ -0,0 +1,184 @@
+package com.linxtalk.service;
+
+import com.linxtalk.dto.request.RefreshTokenRequest;
+import com.linxtalk.dto.response.AuthResponse;
+import com.linxtalk.entity.DeviceToken;
+import com.linxtalk.entity.User;
+import com.linxtalk.exception.AuthenticationException;
+import com.linxtalk.mapper.AuthMapper;
+import com.linxtalk.repository.DeviceTokenRepository;
+import com.linxtalk.repository.UserRepository;
+import com.linxtalk.security.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Drives refresh token rotation against an in-memory device token with the same compare-and-set
+ * as the repository update.
+ */
+class AuthServiceTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String USER_ID = new ObjectId().toHexString();
+    private static final int PARALLEL_REFRESHES = 8;
+
+    private final AtomicReference<DeviceToken> stored = new AtomicReference<>();
+    private JwtUtil jwtUtil;
+    private DeviceTokenRepository deviceTokenRepository;
+    private AuthService service;
+    private String refreshToken;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 900_000, 2_592_000_000L, 1000, new SimpleMeterRegistry());
+        deviceTokenRepository = mock(DeviceTokenRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(User.builder().id(USER_ID).username("user").build()));
+        service = new AuthService(userRepository, deviceTokenRepository, mock(PasswordHashingService.class), jwtUtil,
+                mock(TokenBlacklistService.class), mock(GoogleIdTokenService.class), new AuthMapper());
+        ReflectionTestUtils.setField(service, "refreshTokenReuseGraceMs", 10_000L);
+
+        Instant issuedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        Instant expiresAt = issuedAt.plusMillis(jwtUtil.getRefreshTokenExpiration());
+        String deviceTokenId = new ObjectId().toHexString();
+        refreshToken = jwtUtil.generateRefreshToken(USER_ID, deviceTokenId, 1, issuedAt, expiresAt);
+        stored.set(DeviceToken.builder()
+                .id(deviceTokenId)
+                .userId(USER_ID)
+                .deviceId("device-1")
+                .rotation(1)
+                .refreshTokenHash(JwtUtil.hash(refreshToken))
+                .rotatedAt(issuedAt)
+                .refreshTokenExpiresAt(expiresAt)
+                .build());
+
+        when(deviceTokenRepository.rotateRefreshToken(anyString(), anyLong(), anyString(), anyLong(), anyString(), any(), any()))
+                .thenAnswer(invocation -> {
+                    synchronized (stored) {
+                        DeviceToken current = stored.get();
+                        if (current == null || !current.getId().equals(invocation.getArgument(0))
+                                || current.getRotation() != invocation.<Long>getArgument(1)
+                                || !Objects.equals(current.getRefreshTokenHash(), invocation.getArgument(2))) {
+                            return 0L;
+                        }
+                        current.setPreviousRefreshTokenHash(invocation.getArgument(2));
+                        current.setRotation(invocation.<Long>getArgument(3));
+                        current.setRefreshTokenHash(invocation.getArgument(4));
+                        current.setRotatedAt(invocation.getArgument(5));
+                        current.setRefreshTokenExpiresAt(invocation.getArgument(6));
+                        return 1L;
+                    }
+                });
+        when(deviceTokenRepository.findById(anyString())).thenAnswer(invocation -> {
+            synchronized (stored) {
+                DeviceToken current = stored.get();
+                return current != null && current.getId().equals(invocation.getArgument(0))
+                        ? Optional.of(copy(current))
+                        : Optional.empty();
+            }
+        });
+        doAnswer(invocation -> {
+            stored.set(null);
+            return null;
+        }).when(deviceTokenRepository).deleteById(anyString());
+    }
+
+    @Test
+    void refreshRotatesTheToken() {
+        AuthResponse response = refresh(refreshToken);
+
+        assertThat(response.getRefreshToken()).isNotEqualTo(refreshToken);
+        assertThat(stored.get().getRotation()).isEqualTo(2);
+        assertThat(stored.get().getRefreshTokenHash()).isEqualTo(JwtUtil.hash(response.getRefreshToken()));
+    }
+
+    @Test
+    void parallelRefreshesWithTheSameTokenAllGetTheRotatedToken() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_REFRESHES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<AuthResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_REFRESHES; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return refresh(refreshToken);
+            }));
+        }
+        start.countDown();
+        List<String> refreshTokens = new ArrayList<>();
+        for (Future<AuthResponse> future : futures) {
+            refreshTokens.add(future.get(10, TimeUnit.SECONDS).getRefreshToken());
+        }
+        executor.shutdown();
+
+        assertThat(stored.get()).isNotNull();
+        assertThat(stored.get().getRotation()).isEqualTo(2);
+        assertThat(refreshTokens).containsOnly(refreshTokens.getFirst());
+        assertThat(JwtUtil.hash(refreshTokens.getFirst())).isEqualTo(stored.get().getRefreshTokenHash());
+        verify(deviceTokenRepository, never()).deleteById(anyString());
+        // The token every caller got keeps working
+        assertThat(refresh(refreshTokens.getFirst()).getRefreshToken()).isNotNull();
+    }
+
+    @Test
+    void previousTokenReplayedAfterTheGracePeriodSignsTheDeviceOut() {
+        refresh(refreshToken);
+        ReflectionTestUtils.setField(service, "refreshTokenReuseGraceMs", -1000L);
+
+        assertThatThrownBy(() -> refresh(refreshToken)).isInstanceOf(AuthenticationException.class);
+        assertThat(stored.get()).isNull();
+    }
+
+    @Test
+    void olderTokenReplayedWithinTheGracePeriodSignsTheDeviceOut() {
+        String second = refresh(refreshToken).getRefreshToken();
+        refresh(second);
+
+        assertThatThrownBy(() -> refresh(refreshToken)).isInstanceOf(AuthenticationException.class);
+        assertThat(stored.get()).isNull();
+    }
+
+    @Test
+    void signedOutDeviceCannotRefresh() {
+        stored.set(null);
+
+        assertThatThrownBy(() -> refresh(refreshToken)).isInstanceOf(AuthenticationException.class);
+    }
+
+    private static DeviceToken copy(DeviceToken deviceToken) {
+        return DeviceToken.builder()
+                .id(deviceToken.getId())
+                .userId(deviceToken.getUserId())
+                .deviceId(deviceToken.getDeviceId())
+                .rotation(deviceToken.getRotation())
+                .refreshTokenHash(deviceToken.getRefreshTokenHash())
+                .previousRefreshTokenHash(deviceToken.getPreviousRefreshTokenHash())
+                .rotatedAt(deviceToken.getRotatedAt())
+                .refreshTokenExpiresAt(deviceToken.getRefreshTokenExpiresAt())
+                .build();
+    }
+
+    private AuthResponse refresh(String token) {
+        return service.refreshToken(RefreshTokenRequest.builder().refreshToken(token).build());
+    }
+}
@@ -0,0 +1,98 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.MessageTailCache;
+import com.linxtalk.dto.response.MessageStatusResponse;
+import com.linxtalk.entity.Message;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+import static com.linxtalk.utils.Constant.MESSAGE_STATUS_QUEUE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Flushes acknowledgements against a mocked repository.
+ */
+class DeliveryStatusServiceTest {
+
+    private MessageRepositoryCustom messageRepositoryCustom;
+    private MessageTailCache messageTailCache;
+    private SimpMessagingTemplate messagingTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private DeliveryStatusService service;
+
+    @BeforeEach
+    void setUp() {
+        messageRepositoryCustom = mock(MessageRepositoryCustom.class);
+        messageTailCache = mock(MessageTailCache.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new DeliveryStatusService(messageRepositoryCustom, messageTailCache, messagingTemplate, meterRegistry);
+    }
+
+    @Test
+    void senderReadDoesNotHideAnotherMembersDelivery() {
+        when(messageRepositoryCustom.findStatusByIdIn(anyCollection()))
+                .thenReturn(List.of(message("m1", "conversation-1", "sender-1")));
+
+        service.acknowledge("conversation-1", "member-2", List.of("m1"), Message.MessageStatus.DELIVERED);
+        service.acknowledge("conversation-1", "sender-1", List.of("m1"), Message.MessageStatus.READ);
+        service.flush();
+
+        verify(messageRepositoryCustom).updateStatus(eq(List.of("m1")), anyCollection(), eq(Message.MessageStatus.DELIVERED));
+        verify(messageRepositoryCustom, never()).updateStatus(anyCollection(), anyCollection(), eq(Message.MessageStatus.READ));
+        verify(messagingTemplate).convertAndSendToUser(eq("sender-1"), eq(MESSAGE_STATUS_QUEUE),
+                argThat((MessageStatusResponse response) -> response.getStatus() == Message.MessageStatus.DELIVERED));
+    }
+
+    @Test
+    void ackThroughAnotherConversationIsDropped() {
+        when(messageRepositoryCustom.findStatusByIdIn(anyCollection()))
+                .thenReturn(List.of(message("m1", "conversation-1", "sender-1")));
+
+        service.acknowledge("conversation-2", "member-2", List.of("m1"), Message.MessageStatus.READ);
+        service.flush();
+
+        verify(messageRepositoryCustom, never()).updateStatus(anyCollection(), anyCollection(), any());
+        verifyNoInteractions(messagingTemplate, messageTailCache);
+        assertThat(meterRegistry.get("message.status.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void ackThroughAnotherConversationDoesNotDropTheRealOne() {
+        when(messageRepositoryCustom.findStatusByIdIn(anyCollection()))
+                .thenReturn(List.of(message("m1", "conversation-1", "sender-1")));
+
+        service.acknowledge("conversation-2", "member-3", List.of("m1"), Message.MessageStatus.READ);
+        service.acknowledge("conversation-1", "member-2", List.of("m1"), Message.MessageStatus.DELIVERED);
+        service.flush();
+
+        verify(messageRepositoryCustom).updateStatus(eq(List.of("m1")), anyCollection(), eq(Message.MessageStatus.DELIVERED));
+    }
+
+    @Test
+    void cachedTailIsUpdatedInPlace() {
+        when(messageRepositoryCustom.findStatusByIdIn(anyCollection()))
+                .thenReturn(List.of(message("m1", "conversation-1", "sender-1")));
+
+        service.acknowledge("conversation-1", "member-2", List.of("m1"), Message.MessageStatus.READ);
+        service.flush();
+
+        verify(messageTailCache).updateStatus("conversation-1", List.of("m1"), Message.MessageStatus.READ);
+        verify(messageTailCache, never()).invalidate(anyString());
+    }
+
+    private static Message message(String id, String conversationId, String senderId) {
+        return Message.builder()
+                .id(id)
+                .conversationId(conversationId)
+                .senderId(senderId)
+                .status(Message.MessageStatus.SENT)
+                .build();
+    }
+}
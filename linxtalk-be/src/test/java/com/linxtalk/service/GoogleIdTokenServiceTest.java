@@ -0,0 +1,160 @@
+package com.linxtalk.service;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.linxtalk.exception.AuthenticationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Verifies ID tokens signed with a local key against a stub certs endpoint, without reaching Google.
+ */
+class GoogleIdTokenServiceTest {
+
+    private static final String CLIENT_ID = "linxtalk-test.apps.googleusercontent.com";
+    private static final String CERTS_URL = "https://certs.stub.local/oauth2/v1/certs";
+
+    private final AtomicInteger certsRequests = new AtomicInteger();
+    private String certsJson;
+    private PrivateKey signingKey;
+    private long maxAgeSeconds;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        certsJson = readResource("/google/certs.json");
+        String pem = readResource("/google/stub-signing-key.pem")
+                .replaceAll("-----[A-Z ]+-----", "")
+                .replaceAll("\\s", "");
+        signingKey = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(pem)));
+        maxAgeSeconds = 3600;
+    }
+
+    @Test
+    void tokenSignedWithAPublishedKeyIsVerified() throws Exception {
+        GoogleIdTokenService service = startService(600_000);
+
+        GoogleIdToken.Payload payload = service.verify(sign(signingKey, CLIENT_ID));
+
+        assertThat(payload.getSubject()).isEqualTo("google-user-1");
+        assertThat(payload.getEmail()).isEqualTo("user@example.com");
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() throws Exception {
+        GoogleIdTokenService service = startService(600_000);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        String forged = sign(generator.generateKeyPair().getPrivate(), CLIENT_ID);
+
+        assertThatThrownBy(() -> service.verify(forged)).isInstanceOf(AuthenticationException.class);
+    }
+
+    @Test
+    void tokenForAnotherClientIsRejected() throws Exception {
+        GoogleIdTokenService service = startService(600_000);
+        String token = sign(signingKey, "someone-else.apps.googleusercontent.com");
+
+        assertThatThrownBy(() -> service.verify(token)).isInstanceOf(AuthenticationException.class);
+    }
+
+    @Test
+    void steadyStateLoginsDoNotFetchKeys() throws Exception {
+        GoogleIdTokenService service = startService(600_000);
+        String token = sign(signingKey, CLIENT_ID);
+
+        for (int i = 0; i < 100; i++) {
+            service.verify(token);
+        }
+        service.refreshIfExpiring();
+
+        // Only the fetch made on startup
+        assertThat(certsRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void keysAreRefreshedAheadOfExpiry() {
+        maxAgeSeconds = 600;
+        GoogleIdTokenService service = startService(900_000);
+
+        service.refreshIfExpiring();
+
+        assertThat(certsRequests.get()).isEqualTo(2);
+    }
+
+    private GoogleIdTokenService startService(long refreshAheadMs) {
+        GooglePublicKeysManager publicKeysManager = new GooglePublicKeysManager.Builder(stubTransport(), GsonFactory.getDefaultInstance())
+                .setPublicCertsEncodedUrl(CERTS_URL)
+                .build();
+        GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(publicKeysManager)
+                .setAudience(List.of(CLIENT_ID))
+                .build();
+        GoogleIdTokenService service = new GoogleIdTokenService(verifier, publicKeysManager, new SimpleMeterRegistry(), refreshAheadMs);
+        service.init();
+        return service;
+    }
+
+    private MockHttpTransport stubTransport() {
+        return new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                assertThat(url).isEqualTo(CERTS_URL);
+                certsRequests.incrementAndGet();
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() {
+                        return new MockLowLevelHttpResponse()
+                                .setStatusCode(200)
+                                .setContentType(Json.MEDIA_TYPE)
+                                .addHeader("Cache-Control", "public, max-age=" + maxAgeSeconds)
+                                .setContent(certsJson);
+                    }
+                };
+            }
+        };
+    }
+
+    private static String sign(PrivateKey key, String audience) throws Exception {
+        JsonWebSignature.Header header = new JsonWebSignature.Header()
+                .setAlgorithm("RS256")
+                .setKeyId("stub-key-1");
+        long now = System.currentTimeMillis() / 1000;
+        GoogleIdToken.Payload payload = new GoogleIdToken.Payload()
+                .setEmail("user@example.com");
+        payload.setIssuer("https://accounts.google.com")
+                .setAudience(audience)
+                .setSubject("google-user-1")
+                .setIssuedAtTimeSeconds(now)
+                .setExpirationTimeSeconds(now + 3600);
+        return JsonWebSignature.signUsingRsaSha256(key, GsonFactory.getDefaultInstance(), header, payload);
+    }
+
+    private static String readResource(String path) throws IOException {
+        try (InputStream in = GoogleIdTokenServiceTest.class.getResourceAsStream(path)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
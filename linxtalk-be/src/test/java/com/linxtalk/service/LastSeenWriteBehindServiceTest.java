@@ -0,0 +1,74 @@
+package com.linxtalk.service;
+
+import com.linxtalk.repository.UserRepository;
+import com.linxtalk.repository.custom.UserRepositoryCustom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks failed lastSeenAt flushes are kept and retried, with the newest value per user winning.
+ */
+class LastSeenWriteBehindServiceTest {
+
+    private static final Instant EARLIER = Instant.parse("2026-01-01T10:00:00Z");
+    private static final Instant LATER = Instant.parse("2026-01-01T10:05:00Z");
+
+    private UserRepositoryCustom userRepositoryCustom;
+    private SimpleMeterRegistry meterRegistry;
+    private LastSeenWriteBehindService service;
+
+    @BeforeEach
+    void setUp() {
+        userRepositoryCustom = mock(UserRepositoryCustom.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // No backoff, so every flush retries the failed updates
+        service = new LastSeenWriteBehindService(mock(UserRepository.class), userRepositoryCustom, meterRegistry,
+                100, 100, 500, 2, 0, 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedFlushIsRetriedWithTheNewestValueOfEachUser() {
+        doThrow(new DataAccessResourceFailureException("down"))
+                .doThrow(new DataAccessResourceFailureException("still down"))
+                .doNothing()
+                .when(userRepositoryCustom).bulkUpdateLastSeenAt(anyMap());
+        service.enqueue("user-1", EARLIER);
+        service.enqueue("user-2", EARLIER);
+        service.flush();
+
+        // Flushed while the retry is pending, so it joins the failed updates
+        service.enqueue("user-1", LATER);
+        service.flush();
+        service.flush();
+
+        ArgumentCaptor<Map<String, Instant>> written = ArgumentCaptor.forClass(Map.class);
+        verify(userRepositoryCustom, times(3)).bulkUpdateLastSeenAt(written.capture());
+        assertThat(written.getAllValues().getLast()).containsOnly(Map.entry("user-1", LATER), Map.entry("user-2", EARLIER));
+        assertThat(meterRegistry.get("presence.last_seen.dropped").counter().count()).isZero();
+    }
+
+    @Test
+    void updatesAreDroppedOnceTheRetriesAreExhausted() {
+        doThrow(new DataAccessResourceFailureException("down")).when(userRepositoryCustom).bulkUpdateLastSeenAt(anyMap());
+        service.enqueue("user-1", EARLIER);
+
+        for (int i = 0; i < 4; i++) {
+            service.flush();
+        }
+
+        // The first attempt plus two retries
+        verify(userRepositoryCustom, times(3)).bulkUpdateLastSeenAt(anyMap());
+        assertThat(meterRegistry.get("presence.last_seen.dropped").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,127 @@
+package com.linxtalk.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linxtalk.component.ConversationMembershipCache;
+import com.linxtalk.component.EncodedPayloadConverter;
+import com.linxtalk.component.RedisBrokerRelay;
+import com.linxtalk.dto.response.MessageStatusResponse;
+import com.linxtalk.entity.Message;
+import com.linxtalk.utils.EncodedPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks a broadcast is serialized once: every recipient frame carries the very same body array,
+ * so the per-recipient cost is the frame headers only.
+ */
+class MessageFanoutServiceTest {
+
+    private static final int MEMBERS = 200;
+
+    private ObjectMapper objectMapper;
+    private SimpMessagingTemplate messagingTemplate;
+    private StringRedisTemplate redisTemplate;
+    private ConversationMembershipCache conversationMembershipCache;
+    private SimpUserRegistry simpUserRegistry;
+    private MessageFanoutService service;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = spy(new ObjectMapper());
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        when(messagingTemplate.getUserDestinationPrefix()).thenReturn("/user/");
+
+        Set<String> memberIds = new LinkedHashSet<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            memberIds.add("member-" + i);
+        }
+        conversationMembershipCache = mock(ConversationMembershipCache.class);
+        when(conversationMembershipCache.getMemberIds("conversation-1")).thenReturn(memberIds);
+        simpUserRegistry = mock(SimpUserRegistry.class);
+        when(simpUserRegistry.getUser(anyString())).thenReturn(mock(SimpUser.class));
+
+        redisTemplate = mock(StringRedisTemplate.class);
+        service = newService(null);
+    }
+
+    @Test
+    void everyRecipientFrameSharesTheEncodedBody() throws Exception {
+        EncodedPayload payload = new EncodedPayloadConverter(objectMapper).encode(MessageStatusResponse.builder()
+                .conversationId("conversation-1")
+                .status(Message.MessageStatus.READ)
+                .messageIds(List.of("m1"))
+                .build());
+        clearInvocations(objectMapper);
+
+        service.fanout("conversation-1", payload);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<org.springframework.messaging.Message<byte[]>> captor =
+                ArgumentCaptor.forClass(org.springframework.messaging.Message.class);
+        verify(messagingTemplate, times(MEMBERS)).send(anyString(), captor.capture());
+        assertThat(captor.getAllValues()).allSatisfy(frame -> assertThat(frame.getPayload()).isSameAs(payload.bytes()));
+        verify(objectMapper, never()).writeValueAsBytes(any());
+        verify(objectMapper, never()).writeValueAsString(any());
+    }
+
+    @Test
+    void relayPublishesOnlyToTheNodesOfTheMembersWithTheirRecipients() throws Exception {
+        RedisBrokerRelay relay = mock(RedisBrokerRelay.class);
+        when(relay.getNodeId()).thenReturn("node-a");
+        when(relay.remoteNodesOf(anyCollection())).thenReturn(Map.of("node-b", List.of("member-1", "member-2")));
+        service = newService(relay);
+
+        service.fanout("conversation-1", new EncodedPayloadConverter(objectMapper).encode(List.of("m1")));
+
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq("websocket:fanout:node-b"), published.capture());
+        MessageFanoutService.FanoutEnvelope envelope =
+                objectMapper.readValue(published.getValue(), MessageFanoutService.FanoutEnvelope.class);
+        assertThat(envelope.recipientIds()).containsExactly("member-1", "member-2");
+    }
+
+    @Test
+    void receivingNodeDispatchesToTheRecipientsWithoutLoadingMembers() throws Exception {
+        byte[] body = objectMapper.writeValueAsBytes(new MessageFanoutService.FanoutEnvelope(
+                "node-a", "conversation-1", List.of("member-1"), new byte[]{1}));
+        clearInvocations(conversationMembershipCache);
+
+        service.onMessage(new org.springframework.data.redis.connection.DefaultMessage(new byte[0], body), null);
+
+        verify(messagingTemplate).send(eq("/user/member-1/queue/messages"), any());
+        verifyNoInteractions(conversationMembershipCache);
+    }
+
+    @Test
+    void converterWritesTheEncodedBodyWithoutCopying() {
+        EncodedPayloadConverter converter = new EncodedPayloadConverter(objectMapper);
+        EncodedPayload payload = converter.encode(List.of("m1", "m2"));
+
+        assertThat(converter.toMessage(payload, null).getPayload()).isSameAs(payload.bytes());
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageFanoutService newService(RedisBrokerRelay relay) {
+        ObjectProvider<RedisBrokerRelay> relayProvider = mock(ObjectProvider.class);
+        when(relayProvider.getIfAvailable()).thenReturn(relay);
+        return new MessageFanoutService(conversationMembershipCache, simpUserRegistry, messagingTemplate,
+                redisTemplate, mock(RedisMessageListenerContainer.class), objectMapper, relayProvider,
+                new SimpleMeterRegistry());
+    }
+}
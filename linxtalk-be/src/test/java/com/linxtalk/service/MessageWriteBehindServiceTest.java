@@ -0,0 +1,225 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.MessageTailCache;
+import com.linxtalk.dto.response.MessageStatusResponse;
+import com.linxtalk.entity.Message;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
+import com.linxtalk.repository.custom.ConversationRepositoryCustom;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.linxtalk.utils.Constant.MESSAGE_STATUS_QUEUE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Drives the writer lanes with mocked repositories: a load run checking nothing is lost or reordered,
+ * the same load in single and batched mode, plus the retry, rejection and interruption paths.
+ */
+class MessageWriteBehindServiceTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int CONVERSATIONS_PER_PRODUCER = 25;
+    private static final int MESSAGES_PER_PRODUCER = 5000;
+    private static final int COMPARISON_MESSAGES_PER_PRODUCER = 250;
+
+    private MessageRepositoryCustom messageRepositoryCustom;
+    private ConversationRepositoryCustom conversationRepositoryCustom;
+    private ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private SimpMessagingTemplate messagingTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private MessageWriteBehindService service;
+
+    @BeforeEach
+    void setUp() {
+        messageRepositoryCustom = mock(MessageRepositoryCustom.class);
+        conversationRepositoryCustom = mock(ConversationRepositoryCustom.class);
+        conversationMemberRepositoryCustom = mock(ConversationMemberRepositoryCustom.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = startService("batched");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    void persistsEveryMessageInSendOrderUnderLoad() throws Exception {
+        Queue<Message> persisted = new ConcurrentLinkedQueue<>();
+        doAnswer(invocation -> {
+            // Simulates the round trip of an insertMany
+            TimeUnit.MILLISECONDS.sleep(1);
+            persisted.addAll(invocation.getArgument(0));
+            return null;
+        }).when(messageRepositoryCustom).insertAll(anyList());
+
+        runLoad(service, MESSAGES_PER_PRODUCER);
+
+        int total = PRODUCERS * MESSAGES_PER_PRODUCER;
+        assertThat(persisted).hasSize(total);
+        assertThat(new HashSet<>(persisted.stream().map(Message::getId).toList())).hasSize(total);
+
+        Map<String, Integer> lastSequenceByConversation = new HashMap<>();
+        for (Message message : persisted) {
+            int sequence = Integer.parseInt(message.getContent());
+            Integer previous = lastSequenceByConversation.put(message.getConversationId(), sequence);
+            assertThat(previous == null || previous < sequence)
+                    .as("messages of %s are written in send order", message.getConversationId())
+                    .isTrue();
+        }
+        assertThat(meterRegistry.get("message.write.failures").counter().count()).isZero();
+    }
+
+    @Test
+    void batchedModeWritesTheSameLoadWithFarFewerInserts() throws Exception {
+        AtomicInteger inserts = new AtomicInteger();
+        AtomicInteger inserted = new AtomicInteger();
+        doAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(1);
+            inserts.incrementAndGet();
+            inserted.addAndGet(invocation.<List<Message>>getArgument(0).size());
+            return null;
+        }).when(messageRepositoryCustom).insertAll(anyList());
+        int total = PRODUCERS * COMPARISON_MESSAGES_PER_PRODUCER;
+
+        runLoad(service, COMPARISON_MESSAGES_PER_PRODUCER);
+        int batchedInserts = inserts.getAndSet(0);
+        assertThat(inserted.getAndSet(0)).isEqualTo(total);
+
+        MessageWriteBehindService single = startService("single");
+        runLoad(single, COMPARISON_MESSAGES_PER_PRODUCER);
+
+        assertThat(inserted.get()).isEqualTo(total);
+        assertThat(inserts.get()).isEqualTo(total);
+        // Producers outpace a 1 ms insert, so lanes back up and each insertMany carries many messages
+        assertThat(batchedInserts).isLessThan(total / 4);
+    }
+
+    @Test
+    void transientFailuresAreRetriedUntilTheyPass() {
+        doThrow(new DataAccessResourceFailureException("down")).when(messageRepositoryCustom).insertAll(anyList());
+        AtomicInteger saveAttempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            // Fails for longer than max-retries, which only applies at shutdown
+            if (saveAttempts.incrementAndGet() <= 5) throw new DataAccessResourceFailureException("down");
+            return null;
+        }).when(messageRepositoryCustom).saveAll(anyList());
+
+        service.enqueue(message("conversation-1", "sender-1", "hello"));
+
+        verify(conversationRepositoryCustom, timeout(2000)).bulkUpdateLastMessage(anyMap());
+        assertThat(saveAttempts.get()).isEqualTo(6);
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+        assertThat(meterRegistry.get("message.write.failures").counter().count()).isZero();
+    }
+
+    @Test
+    void rejectedMessageIsReportedToItsSender() {
+        Message good = message("conversation-1", "sender-1", "fine");
+        Message bad = message("conversation-1", "sender-1", "invalid");
+        doThrow(new DataIntegrityViolationException("invalid")).when(messageRepositoryCustom).insertAll(anyList());
+        doAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            if (messages.stream().anyMatch(message -> message.getId().equals(bad.getId()))) {
+                throw new DataIntegrityViolationException("invalid");
+            }
+            return null;
+        }).when(messageRepositoryCustom).saveAll(anyList());
+
+        service.enqueue(good);
+        service.enqueue(bad);
+
+        verify(messagingTemplate, timeout(2000)).convertAndSendToUser(eq("sender-1"), eq(MESSAGE_STATUS_QUEUE),
+                argThat((MessageStatusResponse response) -> response.getStatus() == Message.MessageStatus.FAILED
+                        && response.getMessageIds().equals(List.of(bad.getId()))));
+        verify(conversationRepositoryCustom, timeout(2000)).bulkUpdateLastMessage(argThat(
+                (Map<String, Message> lastMessages) -> lastMessages.get("conversation-1").getId().equals(good.getId())));
+        assertThat(meterRegistry.get("message.write.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void writerKeepsRunningAfterAnInterrupt() throws InterruptedException {
+        @SuppressWarnings("unchecked")
+        List<Thread> writers = (List<Thread>) ReflectionTestUtils.getField(service, "writers");
+        writers.forEach(Thread::interrupt);
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        service.enqueue(message("conversation-1", "sender-1", "after interrupt"));
+
+        verify(messageRepositoryCustom, timeout(2000)).insertAll(anyList());
+        assertThat(writers).allMatch(Thread::isAlive);
+    }
+
+    private MessageWriteBehindService startService(String mode) {
+        MessageWriteBehindService writer = new MessageWriteBehindService(
+                messageRepositoryCustom,
+                conversationRepositoryCustom,
+                conversationMemberRepositoryCustom,
+                mock(MessageTailCache.class),
+                messagingTemplate,
+                meterRegistry,
+                mode, 4, 1000, 500, 10, 5000, 2, 5, 20);
+        writer.start();
+        return writer;
+    }
+
+    /**
+     * Sends from every producer concurrently and shuts the writer down, which waits for the lanes to drain.
+     */
+    private static void runLoad(MessageWriteBehindService writer, int messagesPerProducer) throws Exception {
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            int producerId = producer;
+            futures.add(producers.submit(() -> {
+                for (int i = 0; i < messagesPerProducer; i++) {
+                    String conversationId = "conversation-" + producerId + "-" + (i % CONVERSATIONS_PER_PRODUCER);
+                    writer.enqueue(message(conversationId, "sender-" + producerId, String.valueOf(i)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        producers.shutdown();
+        writer.shutdown();
+    }
+
+    private static Message message(String conversationId, String senderId, String content) {
+        Instant now = Instant.now();
+        return Message.builder()
+                .id(new ObjectId().toHexString())
+                .conversationId(conversationId)
+                .senderId(senderId)
+                .type(Message.MessageType.TEXT)
+                .content(content)
+                .status(Message.MessageStatus.SENT)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+}
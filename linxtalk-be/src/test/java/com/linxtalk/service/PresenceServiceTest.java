@@ -0,0 +1,195 @@
+package com.linxtalk.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.linxtalk.component.OnlineStatusCache;
+import com.linxtalk.config.RedisConfig;
+import com.linxtalk.event.PresenceChangeEvent;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.linxtalk.utils.Constant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the presence Lua scripts against an in-memory Redis to check each transition end to end.
+ */
+class PresenceServiceTest {
+
+    private static final String USER_ID = "user-1";
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+    private LastSeenWriteBehindService lastSeenWriteBehindService;
+    private ApplicationEventPublisher eventPublisher;
+    private PresenceService presenceService;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redisServer = RedisServer.newRedisServer();
+        redisServer.start();
+        // The in-memory server speaks RESP2 only
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()),
+                LettuceClientConfiguration.builder()
+                        .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+                        .build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        lastSeenWriteBehindService = mock(LastSeenWriteBehindService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        RedisConfig redisConfig = new RedisConfig();
+        presenceService = new PresenceService(
+                redisTemplate,
+                lastSeenWriteBehindService,
+                eventPublisher,
+                new OnlineStatusCache(new SimpleMeterRegistry(), 1000, 5000),
+                redisConfig.presenceConnectScript(),
+                redisConfig.presenceDisconnectScript(),
+                redisConfig.presenceHeartbeatScript());
+        ReflectionTestUtils.setField(presenceService, "expiryMode", PRESENCE_EXPIRY_MODE_REAPER);
+    }
+
+    @AfterEach
+    void flushRedis() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    @Test
+    void connectPublishesOnlineOnlyForTheFirstSession() {
+        presenceService.updateUserPresence(USER_ID, "s1");
+        presenceService.updateUserPresence(USER_ID, "s2");
+
+        verify(eventPublisher, times(1)).publishEvent(argThat(
+                (Object event) -> event instanceof PresenceChangeEvent change && change.isOnline()));
+        assertThat(redisTemplate.opsForSet().members(PRESENCE_USER_KEY_PREFIX + USER_ID)).containsExactlyInAnyOrder("s1", "s2");
+        assertThat(redisTemplate.hasKey(PRESENCE_ONLINE_KEY_PREFIX + USER_ID)).isTrue();
+        assertThat(redisTemplate.opsForSet().isMember(PRESENCE_ONLINE_USERS_KEY, USER_ID)).isTrue();
+        assertThat(redisTemplate.opsForZSet().score(PRESENCE_SESSION_DEADLINE_KEY, "s1:" + USER_ID)).isNotNull();
+    }
+
+    @Test
+    void disconnectOfOneSessionKeepsTheUserOnline() {
+        presenceService.updateUserPresence(USER_ID, "s1");
+        presenceService.updateUserPresence(USER_ID, "s2");
+
+        presenceService.removeUserPresence(USER_ID, "s1");
+
+        assertThat(redisTemplate.hasKey(PRESENCE_ONLINE_KEY_PREFIX + USER_ID)).isTrue();
+        assertThat(redisTemplate.hasKey(PRESENCE_OFFLINE_KEY + USER_ID)).isFalse();
+        assertThat(redisTemplate.opsForZSet().score(PRESENCE_OFFLINE_DEADLINE_KEY, USER_ID)).isNull();
+    }
+
+    @Test
+    void concurrentDisconnectsScheduleOfflineExactlyOnce() throws Exception {
+        presenceService.updateUserPresence(USER_ID, "s1");
+        presenceService.updateUserPresence(USER_ID, "s2");
+
+        CountDownLatch start = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            await(start);
+            presenceService.removeUserPresence(USER_ID, "s1");
+        });
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            await(start);
+            presenceService.removeUserPresenceBySessionExpire(USER_ID, "s2");
+        });
+        start.countDown();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        assertThat(redisTemplate.hasKey(PRESENCE_USER_KEY_PREFIX + USER_ID)).isFalse();
+        assertThat(redisTemplate.hasKey(PRESENCE_ONLINE_KEY_PREFIX + USER_ID)).isFalse();
+        assertThat(redisTemplate.hasKey(PRESENCE_OFFLINE_KEY + USER_ID)).isTrue();
+        assertThat(redisTemplate.opsForSet().isMember(PRESENCE_ONLINE_USERS_KEY, USER_ID)).isFalse();
+        assertThat(redisTemplate.opsForZSet().size(PRESENCE_OFFLINE_DEADLINE_KEY)).isEqualTo(1);
+    }
+
+    @Test
+    void sessionExpireOfAnAlreadyRemovedSessionIsIgnored() {
+        presenceService.updateUserPresence(USER_ID, "s1");
+        presenceService.removeUserPresence(USER_ID, "s1");
+        redisTemplate.delete(PRESENCE_OFFLINE_KEY + USER_ID);
+        redisTemplate.opsForZSet().remove(PRESENCE_OFFLINE_DEADLINE_KEY, USER_ID);
+
+        presenceService.removeUserPresenceBySessionExpire(USER_ID, "s1");
+
+        assertThat(redisTemplate.hasKey(PRESENCE_OFFLINE_KEY + USER_ID)).isFalse();
+        assertThat(redisTemplate.opsForZSet().score(PRESENCE_OFFLINE_DEADLINE_KEY, USER_ID)).isNull();
+    }
+
+    @Test
+    void reconnectCancelsThePendingOffline() {
+        presenceService.updateUserPresence(USER_ID, "s1");
+        presenceService.removeUserPresence(USER_ID, "s1");
+
+        presenceService.updateUserPresence(USER_ID, "s2");
+        presenceService.performOfflineDatabaseUpdate(USER_ID);
+
+        assertThat(redisTemplate.hasKey(PRESENCE_OFFLINE_KEY + USER_ID)).isFalse();
+        assertThat(redisTemplate.opsForZSet().score(PRESENCE_OFFLINE_DEADLINE_KEY, USER_ID)).isNull();
+        verify(lastSeenWriteBehindService, never()).enqueue(any(), any());
+    }
+
+    @Test
+    void offlineUpdateIsQueuedOnceTheUserHasNoSession() {
+        presenceService.updateUserPresence(USER_ID, "s1");
+        presenceService.removeUserPresence(USER_ID, "s1");
+
+        presenceService.performOfflineDatabaseUpdate(USER_ID);
+
+        verify(lastSeenWriteBehindService).enqueue(eq(USER_ID), any());
+        verify(eventPublisher).publishEvent(argThat(
+                (Object event) -> event instanceof PresenceChangeEvent change && !change.isOnline()));
+    }
+
+    @Test
+    void onlineStatusesReflectTheScripts() {
+        presenceService.updateUserPresence(USER_ID, "s1");
+
+        assertThat(presenceService.getOnlineStatuses(List.of(USER_ID, "user-2")))
+                .containsEntry(USER_ID, true)
+                .containsEntry("user-2", false);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
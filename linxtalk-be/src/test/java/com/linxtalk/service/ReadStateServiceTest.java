@@ -0,0 +1,123 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.MessageTailCache;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.Message;
+import com.linxtalk.repository.MessageRepository;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom.ReadWatermark;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ReadStateServiceTest {
+
+    private static final String CONVERSATION_ID = new ObjectId().toHexString();
+    private static final String USER_ID = new ObjectId().toHexString();
+    private static final Instant LAST_MESSAGE_AT = Instant.parse("2026-01-01T00:10:00Z");
+
+    private ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private MessageRepositoryCustom messageRepositoryCustom;
+    private MessageTailCache messageTailCache;
+    private ReadStateService service;
+
+    @BeforeEach
+    void setUp() {
+        conversationMemberRepositoryCustom = mock(ConversationMemberRepositoryCustom.class);
+        messageRepositoryCustom = mock(MessageRepositoryCustom.class);
+        messageTailCache = mock(MessageTailCache.class);
+        service = new ReadStateService(conversationMemberRepositoryCustom, mock(MessageRepository.class),
+                messageRepositoryCustom, messageTailCache, new SimpleMeterRegistry(), 999, 500, 4);
+        when(conversationMemberRepositoryCustom.getUnreadState(CONVERSATION_ID, USER_ID))
+                .thenReturn(ConversationMember.builder().unreadCount(5).lastMessageAt(LAST_MESSAGE_AT).build());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.shutdown();
+    }
+
+    @Test
+    void unreadCountIsAdjustedRelativeToTheStoredCounter() {
+        Message message = markRead(Instant.parse("2026-01-01T00:05:00Z"));
+        AtomicReference<String> countThread = new AtomicReference<>();
+        when(messageRepositoryCustom.countUnread(CONVERSATION_ID, USER_ID, message.getCreatedAt(), LAST_MESSAGE_AT, 999))
+                .thenAnswer(invocation -> {
+                    countThread.set(Thread.currentThread().getName());
+                    return 2L;
+                });
+
+        service.flush();
+
+        verify(conversationMemberRepositoryCustom, timeout(2000)).bulkUpdateReadWatermarks(List.of(
+                new ReadWatermark(CONVERSATION_ID, USER_ID, message.getId(), message.getCreatedAt(), -3)));
+        assertThat(countThread.get()).startsWith("read-state-count-");
+    }
+
+    @Test
+    void watermarksGoBackToPendingWhenTheWriteFails() {
+        Message message = markRead(Instant.parse("2026-01-01T00:05:00Z"));
+        when(messageRepositoryCustom.countUnread(any(), any(), any(), any(), anyInt())).thenReturn(0L);
+        doThrow(new DataAccessResourceFailureException("down")).doNothing()
+                .when(conversationMemberRepositoryCustom).bulkUpdateReadWatermarks(anyList());
+
+        service.flush();
+        verify(conversationMemberRepositoryCustom, timeout(2000)).bulkUpdateReadWatermarks(anyList());
+        awaitIdle();
+        service.flush();
+
+        verify(conversationMemberRepositoryCustom, timeout(2000).times(2)).bulkUpdateReadWatermarks(List.of(
+                new ReadWatermark(CONVERSATION_ID, USER_ID, message.getId(), message.getCreatedAt(), -5)));
+    }
+
+    @Test
+    void watermarksGoBackToPendingWhenTheCountFails() {
+        markRead(Instant.parse("2026-01-01T00:05:00Z"));
+        when(messageRepositoryCustom.countUnread(any(), any(), any(), any(), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(1L);
+
+        service.flush();
+        verify(conversationMemberRepositoryCustom, timeout(2000)).bulkUpdateReadWatermarks(List.of());
+        awaitIdle();
+        service.flush();
+
+        verify(conversationMemberRepositoryCustom, timeout(2000)).bulkUpdateReadWatermarks(argThat(
+                (List<ReadWatermark> watermarks) -> watermarks.size() == 1 && watermarks.getFirst().unreadDelta() == -4));
+    }
+
+    private Message markRead(Instant createdAt) {
+        Message message = Message.builder()
+                .id(new ObjectId().toHexString())
+                .conversationId(CONVERSATION_ID)
+                .senderId(new ObjectId().toHexString())
+                .createdAt(createdAt)
+                .build();
+        when(messageTailCache.find(CONVERSATION_ID, message.getId())).thenReturn(Optional.of(message));
+        service.markRead(CONVERSATION_ID, USER_ID, message.getId());
+        return message;
+    }
+
+    private void awaitIdle() {
+        // The flushing flag is cleared right after the write returns
+        long deadline = System.currentTimeMillis() + 2000;
+        AtomicBoolean flushing = (AtomicBoolean) ReflectionTestUtils.getField(service, "flushing");
+        while (flushing.get() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.linxtalk.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.linxtalk.listener.TokenBlacklistListener;
+import com.linxtalk.security.JwtUtil;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the blacklist against an in-memory Redis, with revocations written the way an older node writes them:
+ * straight to Redis, without publishing them on the blacklist channel.
+ */
+class TokenBlacklistServiceTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final long ACCESS_TOKEN_EXPIRATION_MS = 900_000;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+    private JwtUtil jwtUtil;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redisServer = RedisServer.newRedisServer();
+        redisServer.start();
+        // The in-memory server speaks RESP2 only
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()),
+                LettuceClientConfiguration.builder()
+                        .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+                        .build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        jwtUtil = new JwtUtil(SECRET, ACCESS_TOKEN_EXPIRATION_MS, 2_592_000_000L, 1000, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void revokedTokenIsBlacklisted() {
+        TokenBlacklistService service = startService(3_600_000, false);
+        String token = jwtUtil.generateAccessToken("user-1");
+        String other = jwtUtil.generateAccessToken("user-1");
+
+        service.blacklist(token);
+
+        assertThat(service.isBlacklisted(token)).isTrue();
+        assertThat(service.isBlacklisted(other)).isFalse();
+    }
+
+    @Test
+    void resubscribingRebuildsTheFilter() {
+        TokenBlacklistService service = startService(3_600_000, false);
+        String token = jwtUtil.generateAccessToken("user-1");
+        // Revoked while this node was not subscribed, so the filter never heard of it
+        revokeUnpublished(jwtUtil.verify(token).tokenId());
+        assertThat(service.isBlacklisted(token)).isFalse();
+
+        new TokenBlacklistListener(mock(RedisMessageListenerContainer.class), service)
+                .onChannelSubscribed("token:blacklist".getBytes(StandardCharsets.UTF_8), 1);
+        service.rebuildIfDue();
+
+        assertThat(service.isBlacklisted(token)).isTrue();
+    }
+
+    @Test
+    void rebuildIntervalIsCappedAtTheAccessTokenLifetime() throws InterruptedException {
+        TokenBlacklistService service = new TokenBlacklistService(redisTemplate, jwtUtil, new SimpleMeterRegistry(),
+                1000, 0.01, 3_600_000, 50, false);
+        service.init();
+        String token = jwtUtil.generateAccessToken("user-1");
+        revokeUnpublished(jwtUtil.verify(token).tokenId());
+
+        TimeUnit.MILLISECONDS.sleep(60);
+        service.rebuildIfDue();
+
+        assertThat(service.isBlacklisted(token)).isTrue();
+    }
+
+    @Test
+    void legacyKeyFromAnOlderNodeIsSeenRightAwayWhenChecked() {
+        TokenBlacklistService service = startService(3_600_000, true);
+        String token = jwtUtil.generateAccessToken("user-1");
+
+        redisTemplate.opsForValue().set("blacklist:" + token, "revoked", 60_000, TimeUnit.MILLISECONDS);
+
+        assertThat(service.isBlacklisted(token)).isTrue();
+    }
+
+    @Test
+    void legacyKeyIsMigratedByTheNextRebuild() {
+        TokenBlacklistService service = startService(3_600_000, false);
+        String token = jwtUtil.generateAccessToken("user-1");
+        redisTemplate.opsForValue().set("blacklist:" + token, "revoked", 60_000, TimeUnit.MILLISECONDS);
+
+        service.requestRebuild();
+        service.rebuildIfDue();
+
+        assertThat(redisTemplate.hasKey("blacklist:" + token)).isFalse();
+        assertThat(redisTemplate.hasKey("blacklist:" + jwtUtil.verify(token).tokenId())).isTrue();
+        assertThat(service.isBlacklisted(token)).isTrue();
+    }
+
+    private TokenBlacklistService startService(long rebuildIntervalMs, boolean checkLegacyKeys) {
+        TokenBlacklistService service = new TokenBlacklistService(redisTemplate, jwtUtil, new SimpleMeterRegistry(),
+                1000, 0.01, rebuildIntervalMs, ACCESS_TOKEN_EXPIRATION_MS, checkLegacyKeys);
+        service.init();
+        return service;
+    }
+
+    private void revokeUnpublished(String tokenId) {
+        redisTemplate.opsForValue().set("blacklist:" + tokenId, "revoked", 60_000, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,182 @@
+package com.linxtalk.service;
+
+import com.linxtalk.component.ClusterJobLock;
+import com.linxtalk.entity.Conversation;
+import com.linxtalk.entity.ConversationMember;
+import com.linxtalk.entity.Message;
+import com.linxtalk.repository.custom.ConversationMemberRepositoryCustom;
+import com.linxtalk.repository.custom.ConversationRepositoryCustom;
+import com.linxtalk.repository.custom.MessageRepositoryCustom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.linxtalk.utils.Constant.UNREAD_RECONCILE_CHECKPOINT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class UnreadCountReconciliationServiceTest {
+
+    private static final Instant LAST_MESSAGE_AT = Instant.now().minusSeconds(60);
+    private static final String CONVERSATION_ID = new ObjectId().toHexString();
+    private static final int MESSAGE_WINDOW = 10;
+
+    private ConversationRepositoryCustom conversationRepositoryCustom;
+    private ConversationMemberRepositoryCustom conversationMemberRepositoryCustom;
+    private MessageRepositoryCustom messageRepositoryCustom;
+    private ClusterJobLock clusterJobLock;
+    private final Map<String, String> redis = new HashMap<>();
+    private UnreadCountReconciliationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        conversationRepositoryCustom = mock(ConversationRepositoryCustom.class);
+        conversationMemberRepositoryCustom = mock(ConversationMemberRepositoryCustom.class);
+        messageRepositoryCustom = mock(MessageRepositoryCustom.class);
+        clusterJobLock = mock(ClusterJobLock.class);
+        when(clusterJobLock.tryAcquire(anyString(), any())).thenReturn(true);
+        when(conversationRepositoryCustom.getWithMessagesAfter(any(), any(), anyInt())).thenReturn(List.of());
+
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString());
+
+        service = new UnreadCountReconciliationService(conversationRepositoryCustom, conversationMemberRepositoryCustom,
+                messageRepositoryCustom, redisTemplate, clusterJobLock, new SimpleMeterRegistry(),
+                2, 999, MESSAGE_WINDOW, 3600000, 300000);
+    }
+
+    @Test
+    void checkpointMovesPastConversationsTiedOnLastMessageAt() {
+        Conversation first = conversation();
+        Conversation second = conversation();
+        when(conversationRepositoryCustom.getWithMessagesAfter(any(), isNull(), eq(2))).thenReturn(List.of(first, second));
+
+        service.reconcile();
+
+        assertThat(redis.get(UNREAD_RECONCILE_CHECKPOINT_KEY)).isEqualTo(LAST_MESSAGE_AT.toEpochMilli() + "_" + second.getId());
+        // A full page is followed by the next one in the same run
+        verify(conversationRepositoryCustom).getWithMessagesAfter(LAST_MESSAGE_AT, second.getId(), 2);
+    }
+
+    @Test
+    void checkpointOlderThanTheLookbackSkipsForward() {
+        redis.put(UNREAD_RECONCILE_CHECKPOINT_KEY, Instant.now().minusSeconds(7200).toEpochMilli() + "_" + new ObjectId());
+
+        service.reconcile();
+
+        verify(conversationRepositoryCustom).getWithMessagesAfter(
+                argThat(after -> after.isAfter(Instant.now().minusSeconds(3700))), isNull(), eq(2));
+    }
+
+    @Test
+    void membersAreRecountedFromOneReadOfTheConversation() {
+        ConversationMember reader = member(3, LAST_MESSAGE_AT.minusSeconds(30));
+        ConversationMember sender = member(0, LAST_MESSAGE_AT.minusSeconds(30));
+        givenConversation(List.of(reader, sender), List.of(
+                message(sender.getUserId(), LAST_MESSAGE_AT),
+                message(sender.getUserId(), LAST_MESSAGE_AT.minusSeconds(10)),
+                message(reader.getUserId(), LAST_MESSAGE_AT.minusSeconds(20))));
+
+        service.reconcile();
+
+        verify(messageRepositoryCustom).findSendersBetween(CONVERSATION_ID, LAST_MESSAGE_AT.minusSeconds(30), LAST_MESSAGE_AT, MESSAGE_WINDOW);
+        verify(conversationMemberRepositoryCustom).compareAndSetUnreadCount(reader.getId(), 3, LAST_MESSAGE_AT, 2);
+        verify(conversationMemberRepositoryCustom).compareAndSetUnreadCount(sender.getId(), 0, LAST_MESSAGE_AT, 1);
+        verify(messageRepositoryCustom, never()).countUnread(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void recountStopsAtTheMembersLastMessageAt() {
+        ConversationMember behind = member(5, LAST_MESSAGE_AT.minusSeconds(30));
+        behind.setLastMessageAt(LAST_MESSAGE_AT.minusSeconds(5));
+        String otherId = new ObjectId().toHexString();
+        givenConversation(List.of(behind), List.of(
+                message(otherId, LAST_MESSAGE_AT.minusSeconds(5)),
+                message(otherId, LAST_MESSAGE_AT.minusSeconds(10))));
+
+        service.reconcile();
+
+        verify(conversationMemberRepositoryCustom).compareAndSetUnreadCount(behind.getId(), 5, LAST_MESSAGE_AT.minusSeconds(5), 2);
+    }
+
+    @Test
+    void matchingCountIsLeftAlone() {
+        ConversationMember member = member(1, LAST_MESSAGE_AT.minusSeconds(30));
+        givenConversation(List.of(member), List.of(message(new ObjectId().toHexString(), LAST_MESSAGE_AT)));
+
+        service.reconcile();
+
+        verify(conversationMemberRepositoryCustom, never()).compareAndSetUnreadCount(any(), anyInt(), any(), anyInt());
+    }
+
+    @Test
+    void memberWhoseWatermarkIsBeforeAFullWindowIsNotRepaired() {
+        ConversationMember recent = member(0, LAST_MESSAGE_AT.minusSeconds(MESSAGE_WINDOW - 1));
+        ConversationMember stale = member(0, LAST_MESSAGE_AT.minusSeconds(3600));
+        String otherId = new ObjectId().toHexString();
+        List<Message> window = new ArrayList<>();
+        for (int i = 0; i < MESSAGE_WINDOW; i++) {
+            window.add(message(otherId, LAST_MESSAGE_AT.minusSeconds(i)));
+        }
+        givenConversation(List.of(recent, stale), window);
+
+        service.reconcile();
+
+        // Messages before the window are unknown, so the stale member's count cannot be told
+        verify(conversationMemberRepositoryCustom).compareAndSetUnreadCount(recent.getId(), 0, LAST_MESSAGE_AT, MESSAGE_WINDOW - 1);
+        verify(conversationMemberRepositoryCustom, never()).compareAndSetUnreadCount(eq(stale.getId()), anyInt(), any(), anyInt());
+    }
+
+    @Test
+    void skipsTheRunWithoutTheJobLock() {
+        when(clusterJobLock.tryAcquire(anyString(), any())).thenReturn(false);
+
+        service.reconcile();
+
+        verifyNoInteractions(conversationRepositoryCustom, conversationMemberRepositoryCustom, messageRepositoryCustom);
+    }
+
+    private void givenConversation(List<ConversationMember> members, List<Message> messages) {
+        Conversation conversation = conversation();
+        conversation.setId(CONVERSATION_ID);
+        when(conversationRepositoryCustom.getWithMessagesAfter(any(), isNull(), eq(2))).thenReturn(List.of(conversation));
+        when(conversationMemberRepositoryCustom.getUnreadStates(CONVERSATION_ID)).thenReturn(members);
+        when(messageRepositoryCustom.findSendersBetween(eq(CONVERSATION_ID), any(), any(), eq(MESSAGE_WINDOW))).thenReturn(messages);
+    }
+
+    private static Conversation conversation() {
+        return Conversation.builder()
+                .id(new ObjectId().toHexString())
+                .lastMessage(Conversation.LastMessage.builder().sentAt(LAST_MESSAGE_AT).build())
+                .build();
+    }
+
+    private static ConversationMember member(int unreadCount, Instant lastReadAt) {
+        return ConversationMember.builder()
+                .id(new ObjectId().toHexString())
+                .conversationId(CONVERSATION_ID)
+                .userId(new ObjectId().toHexString())
+                .unreadCount(unreadCount)
+                .lastReadAt(lastReadAt)
+                .lastMessageAt(LAST_MESSAGE_AT)
+                .build();
+    }
+
+    private static Message message(String senderId, Instant createdAt) {
+        return Message.builder().senderId(senderId).createdAt(createdAt).build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.linxtalk.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    private static final int INSERTIONS = 100_000;
+
+    @Test
+    void everyValuePutIsFound() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        List<String> values = randomValues(INSERTIONS);
+        values.forEach(filter::put);
+
+        assertThat(values).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredProbability() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        randomValues(INSERTIONS).forEach(filter::put);
+
+        long falsePositives = randomValues(INSERTIONS).stream().filter(filter::mightContain).count();
+
+        assertThat((double) falsePositives / INSERTIONS).isLessThan(0.02);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+
+        assertThat(randomValues(1000)).noneMatch(filter::mightContain);
+    }
+
+    @Test
+    void concurrentPutsAreNotLost() throws Exception {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        List<List<String>> valuesByThread = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            List<String> values = randomValues(INSERTIONS / 8);
+            valuesByThread.add(values);
+            futures.add(executor.submit(() -> values.forEach(filter::put)));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(valuesByThread).allSatisfy(values -> assertThat(values).allMatch(filter::mightContain));
+    }
+
+    private static List<String> randomValues(int count) {
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(UUID.randomUUID().toString());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,54 @@
+package com.linxtalk.utils;
+
+import com.linxtalk.entity.Message;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCursorTest {
+
+    private static final String ID = new ObjectId().toHexString();
+
+    @Test
+    void encodedCursorDecodesToTheSamePosition() {
+        MessageCursor cursor = new MessageCursor(Instant.ofEpochMilli(1_700_000_000_123L), ID);
+
+        assertThat(MessageCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String encoded = new MessageCursor(Instant.ofEpochMilli(Long.MAX_VALUE / 2), ID).encode();
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void cursorOfAMessageUsesItsCreatedAtAndId() {
+        Instant createdAt = Instant.parse("2026-01-01T00:00:00.250Z");
+        Message message = Message.builder().id(ID).createdAt(createdAt).build();
+
+        assertThat(MessageCursor.of(message)).isEqualTo(new MessageCursor(createdAt, ID));
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        for (String cursor : new String[]{"not base64!", encode("no-separator"), encode("_" + ID),
+                encode("abc_" + ID), encode("1700000000000_not-an-object-id")}) {
+            assertThatThrownBy(() -> MessageCursor.decode(cursor))
+                    .as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(MessageError.MESSAGE_CURSOR_INVALID);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.linxtalk.utils;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SyncTokenTest {
+
+    private static final String ID = new ObjectId().toHexString();
+
+    @Test
+    void pagedTokenDecodesToTheSamePosition() {
+        SyncToken token = new SyncToken(Instant.ofEpochMilli(1_700_000_000_123L), ID);
+
+        assertThat(SyncToken.decode(token.encode())).isEqualTo(token);
+    }
+
+    @Test
+    void completeTokenDecodesWithoutId() {
+        SyncToken token = new SyncToken(Instant.ofEpochMilli(1_700_000_000_123L));
+
+        assertThat(SyncToken.decode(token.encode())).isEqualTo(token);
+        assertThat(SyncToken.decode(token.encode()).id()).isNull();
+    }
+
+    @Test
+    void tokenIssuedBeforePagingOnIdIsStillAccepted() {
+        assertThat(SyncToken.decode(encode("1700000000123")))
+                .isEqualTo(new SyncToken(Instant.ofEpochMilli(1_700_000_000_123L)));
+    }
+
+    @Test
+    void encodedTokenIsUrlSafe() {
+        String encoded = new SyncToken(Instant.ofEpochMilli(Long.MAX_VALUE / 2), ID).encode();
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        for (String token : new String[]{"not base64!", encode("abc"), encode("_" + ID),
+                encode("abc_" + ID), encode("1700000000000_not-an-object-id")}) {
+            assertThatThrownBy(() -> SyncToken.decode(token))
+                    .as(token)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(MessageError.SYNC_TOKEN_INVALID);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
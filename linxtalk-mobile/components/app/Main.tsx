@@ -88,7 +88,8 @@ export default function Main() {
   // Query 3: Online Friends
   const { data: onlineFriends, isLoading: isOnlineFriendsLoading } = useQuery({
     queryKey: [QUERY_KEYS.FRIENDS_ONLINE],
-    staleTime: 60 * 1000,
+    // Kept fresh by presence frames pushed on /user/queue/presence
+    staleTime: Infinity,
     queryFn: () => {
       return get<BaseResponse<PageResponse<FriendResponse>>>(`${FRIEND}/online`)
         .then((res) => res.data.data)
@@ -26,7 +26,7 @@ export default function Main() {
         queryKey: [QUERY_KEYS.FRIENDS],
         staleTime: 30 * 1000,
         queryFn: () => {
-            return get<BaseResponse<PageResponse<FriendResponse>>>(FRIEND)
+            return get<BaseResponse<PageResponse<FriendResponse>>>(`${FRIEND}?withTotal=true`)
                 .then((res) => {
                     return res.data.data;
                 }).catch((error: Error) => {
@@ -39,7 +39,7 @@ export default function Main() {
         queryKey: [QUERY_KEYS.INCOMING_FRIEND_REQUESTS],
         staleTime: 30 * 1000,
         queryFn: () => {
-            return get<BaseResponse<PageResponse<FriendRequestResponse>>>(`${FRIEND_REQUEST}?pageSize=3`)
+            return get<BaseResponse<PageResponse<FriendRequestResponse>>>(`${FRIEND_REQUEST}?pageSize=3&withTotal=true`)
                 .then((res) => {
                     return res.data.data;
                 }).catch((error: Error) => {
@@ -104,7 +104,7 @@ export default function Main() {
         <View className="flex-row items-center justify-between">
           <View className="flex-row items-center gap-4">
             <Text className="text-xl font-bold dark:text-white">{t('friends.requests')}</Text>
-            {data?.totalElements !== undefined && data.totalElements > 0 && (
+            {data?.totalElements != null && data.totalElements > 0 && (
                 <View className="px-2 flex items-center justify-center bg-primary-400 rounded-full ">
                   <Text className="text-lg text-white font-bold">{data.totalElements}</Text>
                 </View>
@@ -186,7 +186,7 @@ export default function Main() {
                 <View className="flex-row items-center gap-4">
                     <Text className="text-xl font-bold dark:text-white">{t('friends.title')}</Text>
                 </View>
-                {friends?.totalElements !== undefined && friends.totalElements > 0 && (
+                {friends?.totalElements != null && friends.totalElements > 0 && (
                     <View className="px-2 flex items-center justify-center bg-primary-400 rounded-full ">
                     <Text className="text-lg text-white font-bold">{friends.totalElements}</Text>
                     </View>
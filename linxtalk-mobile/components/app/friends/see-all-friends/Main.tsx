@@ -33,6 +33,9 @@ export default function Main() {
         initialPageParam: 0,
         queryFn: ({pageParam}) => {
             let url = `${FRIEND}?pageNo=${pageParam}`;
+            if (pageParam === 0) {
+                url += `&withTotal=true`;
+            }
             if (sortConfig.sortBy) {
                 url += `&sortBy=${sortConfig.sortBy}&sortDir=${sortConfig.sortDir}`;
             }
@@ -6,6 +6,17 @@ import { WEBSOCKET_MAPPING } from '@/constants/api';
 import { useQueryClient } from '@tanstack/react-query';
 import { QUERY_KEYS } from '@/constants/constant';
 import {isTokenExpired} from "@/utils/fn-common";
+import { FriendResponse, PresenceResponse } from '@/constants/type';
+
+const applyPresence = (friend: FriendResponse, presenceMap: Map<string, PresenceResponse>): FriendResponse => {
+  const presence = presenceMap.get(friend.id);
+  if (!presence) return friend;
+  return {
+    ...friend,
+    isOnline: presence.isOnline,
+    lastSeenAt: presence.lastSeenAt ?? friend.lastSeenAt,
+  };
+};
 
 export const WebSocketProvider: React.FC<{ children: React.ReactNode }> = ({ children }) => {
   const { isAuthenticated, accessToken } = useAuthStore();
@@ -51,6 +62,25 @@ export const WebSocketProvider: React.FC<{ children: React.ReactNode }> = ({ chi
         queryClient.invalidateQueries({ queryKey: [QUERY_KEYS.INCOMING_FRIEND_REQUESTS_SEE_ALL] });
       }
     });
+    webSocketService.subscribe('/user/queue/presence', (data: PresenceResponse[]) => {
+      if (!Array.isArray(data) || data.length === 0) return;
+      const presenceMap = new Map(data.map((presence) => [presence.userId, presence]));
+
+      queryClient.setQueriesData({ queryKey: [QUERY_KEYS.FRIENDS] }, (oldData: any) => {
+        if (!oldData?.data) return oldData;
+        return { ...oldData, data: oldData.data.map((friend: FriendResponse) => applyPresence(friend, presenceMap)) };
+      });
+      queryClient.setQueriesData({ queryKey: [QUERY_KEYS.FRIENDS_SEE_ALL] }, (oldData: any) => {
+        if (!oldData?.pages) return oldData;
+        return {
+          ...oldData,
+          pages: oldData.pages.map((page: any) => page?.data
+            ? { ...page, data: page.data.map((friend: FriendResponse) => applyPresence(friend, presenceMap)) }
+            : page),
+        };
+      });
+      queryClient.invalidateQueries({ queryKey: [QUERY_KEYS.FRIENDS_ONLINE] });
+    });
     connectedToken.current = accessToken;
 
 
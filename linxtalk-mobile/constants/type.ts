@@ -115,6 +115,12 @@ export interface FriendResponse {
   updatedAt : string;
 }
 
+export interface PresenceResponse {
+  userId: string;
+  isOnline: boolean;
+  lastSeenAt: string | null;
+}
+
 export interface CreateFriendRequestRequest {
   receiverId: string;
   message: string;
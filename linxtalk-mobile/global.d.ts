@@ -10,8 +10,9 @@ declare global {
     interface PageResponse<T> {
         pageSize: number;
         pageNumber: number;
-        totalElements: number;
-        totalPages: number;
+        // Only returned when requested with withTotal=true
+        totalElements: number | null;
+        totalPages: number | null;
         hasNext: boolean;
         hasPrevious: boolean;
         data: T[];